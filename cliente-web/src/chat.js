@@ -212,6 +212,8 @@ class ChatApp {
                 });
                 const result = await response.json();
                 console.log('Grupo creado, respuesta:', result);
+                // Quien crea el grupo es su primer miembro
+                await this.joinGroup(groupName);
                 // El callback 'groupCreated' actualizará la lista si es necesario
             } catch (error) {
                 console.error('Error creando grupo:', error);
@@ -237,6 +239,20 @@ class ChatApp {
         this.isGroupChat = true;
         this.ui.updateChatInterface();
         this.messages.loadHistory(group);
+        // Solo los miembros reciben los mensajes del grupo en tiempo real
+        this.joinGroup(group);
+    }
+
+    async joinGroup(groupName) {
+        try {
+            await fetch(`${this.API_URL}/joinGroup`, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify({ groupName, username: this.username })
+            });
+        } catch (error) {
+            console.error('Error uniéndose al grupo:', error);
+        }
     }
 
     async loadHistory(target) {
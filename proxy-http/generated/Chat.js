@@ -73,6 +73,70 @@
 
     Slice.defineSequence(Chat, "StringSeqHelper", "Ice.StringHelper", false);
 
+    Chat.Delivery = class
+    {
+        constructor(msg = new Chat.Message(), recipients = null)
+        {
+            this.msg = msg;
+            this.recipients = recipients;
+        }
+
+        _write(ostr)
+        {
+            Chat.Message.write(ostr, this.msg);
+            Chat.StringSeqHelper.write(ostr, this.recipients);
+        }
+
+        _read(istr)
+        {
+            this.msg = Chat.Message.read(istr, this.msg);
+            this.recipients = Chat.StringSeqHelper.read(istr);
+        }
+
+        static get minWireSize()
+        {
+            return  15;
+        }
+    };
+
+    Slice.defineStruct(Chat.Delivery, false, true);
+
+    Slice.defineSequence(Chat, "DeliverySeqHelper", "Chat.Delivery", false);
+
+    Chat.HistoryDirection = Slice.defineEnum([
+        ['Older', 0], ['Newer', 1]]);
+
+    Chat.HistoryPage = class
+    {
+        constructor(messages = null, nextCursor = new Ice.Long(0, 0), hasMore = false)
+        {
+            this.messages = messages;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+
+        _write(ostr)
+        {
+            Chat.MessageSeqHelper.write(ostr, this.messages);
+            ostr.writeLong(this.nextCursor);
+            ostr.writeBool(this.hasMore);
+        }
+
+        _read(istr)
+        {
+            this.messages = Chat.MessageSeqHelper.read(istr);
+            this.nextCursor = istr.readLong();
+            this.hasMore = istr.readBool();
+        }
+
+        static get minWireSize()
+        {
+            return  10;
+        }
+    };
+
+    Slice.defineStruct(Chat.HistoryPage, false, true);
+
     Chat.ChatException = class extends Ice.UserException
     {
         constructor(reason = "", _cause = "")
@@ -123,7 +187,10 @@
     Slice.defineOperations(Chat.MessageCallback, Chat.MessageCallbackPrx, iceC_Chat_MessageCallback_ids, 0,
     {
         "onMessage": [, , , , , [[Chat.Message]], , , , ],
-        "onGroupMessage": [, , , , , [[Chat.Message], [7]], , , , ]
+        "onGroupMessage": [, , , , , [[Chat.Message], [7]], , , , ],
+        "onMessages": [, , , , , [["Chat.MessageSeqHelper"]], , , , ],
+        "deliver": [, , , , , [[Chat.Message], ["Chat.StringSeqHelper"]], , , , ],
+        "deliverBatch": [, , , , , [["Chat.DeliverySeqHelper"]], , , , ]
     });
 
     const iceC_Chat_ChatService_ids = [
@@ -149,6 +216,18 @@
         [
             Chat.ChatException
         ], , ],
+        "joinGroup": [, , , , , [[7], [7]], ,
+        [
+            Chat.ChatException
+        ], , ],
+        "leaveGroup": [, , , , , [[7], [7]], ,
+        [
+            Chat.ChatException
+        ], , ],
+        "getGroupMembers": [, , , , ["Chat.StringSeqHelper"], [[7]], ,
+        [
+            Chat.ChatException
+        ], , ],
         "sendMessage": [, , , , , [[7], [7], [7], [1]], ,
         [
             Chat.ChatException
@@ -165,6 +244,10 @@
         [
             Chat.ChatException
         ], , ],
+        "getHistoryPage": [, , , , [Chat.HistoryPage], [[7], [7], [1], [4], [1], [Chat.HistoryDirection._helper], [3]], ,
+        [
+            Chat.ChatException
+        ], , ],
         "getUsers": [, , , , ["Chat.StringSeqHelper"], , ,
         [
             Chat.ChatException
@@ -182,6 +265,76 @@
             Chat.ChatException
         ], , ]
     });
+
+    Chat.OperationStats = class
+    {
+        constructor(name = "", label = "", count = new Ice.Long(0, 0), errors = new Ice.Long(0, 0), ratePerSecond = 0.0, p50Micros = new Ice.Long(0, 0), p99Micros = new Ice.Long(0, 0), p999Micros = new Ice.Long(0, 0), maxMicros = new Ice.Long(0, 0))
+        {
+            this.name = name;
+            this.label = label;
+            this.count = count;
+            this.errors = errors;
+            this.ratePerSecond = ratePerSecond;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+            this.maxMicros = maxMicros;
+        }
+
+        _write(ostr)
+        {
+            ostr.writeString(this.name);
+            ostr.writeString(this.label);
+            ostr.writeLong(this.count);
+            ostr.writeLong(this.errors);
+            ostr.writeDouble(this.ratePerSecond);
+            ostr.writeLong(this.p50Micros);
+            ostr.writeLong(this.p99Micros);
+            ostr.writeLong(this.p999Micros);
+            ostr.writeLong(this.maxMicros);
+        }
+
+        _read(istr)
+        {
+            this.name = istr.readString();
+            this.label = istr.readString();
+            this.count = istr.readLong();
+            this.errors = istr.readLong();
+            this.ratePerSecond = istr.readDouble();
+            this.p50Micros = istr.readLong();
+            this.p99Micros = istr.readLong();
+            this.p999Micros = istr.readLong();
+            this.maxMicros = istr.readLong();
+        }
+
+        static get minWireSize()
+        {
+            return  58;
+        }
+    };
+
+    Slice.defineStruct(Chat.OperationStats, false, true);
+
+    Slice.defineSequence(Chat, "OperationStatsSeqHelper", "Chat.OperationStats", false);
+
+    const iceC_Chat_ChatMetrics_ids = [
+        "::Chat::ChatMetrics",
+        "::Ice::Object"
+    ];
+
+    Chat.ChatMetrics = class extends Ice.Object
+    {
+    };
+
+    Chat.ChatMetricsPrx = class extends Ice.ObjectPrx
+    {
+    };
+
+    Slice.defineOperations(Chat.ChatMetrics, Chat.ChatMetricsPrx, iceC_Chat_ChatMetrics_ids, 0,
+    {
+        "getOperationStats": [, , , , ["Chat.OperationStatsSeqHelper"], , , , , ],
+        "scrape": [, , , , [7], , , , , ]
+    });
     exports.Chat = Chat;
 }
 (typeof(global) !== "undefined" && typeof(global.process) !== "undefined" ? module : undefined,
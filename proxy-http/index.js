@@ -356,6 +356,42 @@ app.post('/createGroup', async (req, res) => {
     }
 });
 
+app.post('/joinGroup', async (req, res) => {
+    const { groupName, username } = req.body;
+    try {
+        console.log(`📡 [Ice RPC] joinGroup: ${username} -> ${groupName}`);
+        const result = await iceBridge.callIceMethod('joinGroup', { groupName, username });
+        res.json(result);
+    } catch (error) {
+        console.error("Error en joinGroup:", error.message);
+        res.status(500).json({ error: error.message });
+    }
+});
+
+app.post('/leaveGroup', async (req, res) => {
+    const { groupName, username } = req.body;
+    try {
+        console.log(`📡 [Ice RPC] leaveGroup: ${username} -> ${groupName}`);
+        const result = await iceBridge.callIceMethod('leaveGroup', { groupName, username });
+        res.json(result);
+    } catch (error) {
+        console.error("Error en leaveGroup:", error.message);
+        res.status(500).json({ error: error.message });
+    }
+});
+
+app.post('/getGroupMembers', async (req, res) => {
+    const { groupName } = req.body;
+    try {
+        console.log(`📡 [Ice RPC] getGroupMembers: ${groupName}`);
+        const result = await iceBridge.callIceMethod('getGroupMembers', { groupName });
+        res.json(result);
+    } catch (error) {
+        console.error("Error en getGroupMembers:", error.message);
+        res.status(500).json({ error: error.message });
+    }
+});
+
 app.post('/sendMessage', async (req, res) => {
     const { from, to, message, isGroup } = req.body;
     try {
@@ -418,6 +454,20 @@ app.post('/getHistory', async (req, res) => {
     }
 });
 
+app.post('/getHistoryPage', async (req, res) => {
+    const { target, from, isGroup, cursor, cursorIsTimestamp, direction, limit } = req.body;
+    try {
+        console.log(`📡 [Ice RPC] getHistoryPage: ${target} (cursor ${cursor ?? -1}, ${direction || 'older'})`);
+        const result = await iceBridge.callIceMethod('getHistoryPage', {
+            target, fromUser: from, isGroup, cursor, cursorIsTimestamp, direction, limit
+        });
+        res.json(result);
+    } catch (error) {
+        console.error("Error en getHistoryPage:", error.message);
+        res.status(500).json({ error: error.message });
+    }
+});
+
 // NOTA: Los endpoints principales (/register, /sendMessage, etc.) ya usan Ice RPC
 // No se necesitan endpoints duplicados en /ice/*
 
@@ -428,7 +478,7 @@ const iceSubscribedUsers = new Set();
 // Esto asegura que los callbacks Ice puedan enviar mensajes cuando lleguen
 function setupIceMessageHandler() {
     iceBridge.setMessageHandler((data) => {
-        // data tiene { type: 'newMessage', message: {...} }
+        // data tiene { type: 'newMessage', message: {...} } y, si vino por deliver, recipients
         if (data.type === 'newMessage') {
             const message = data.message;
             const targetUser = message.to;
@@ -450,7 +500,28 @@ function setupIceMessageHandler() {
             };
             
             // Enviar mensaje via WebSocket a los usuarios conectados
-            if (isGroup) {
+            if (data.recipients) {
+                // deliver: el servidor ya resolvió a quién va; se envía una vez a cada uno
+                let sentCount = 0;
+                const payload = JSON.stringify({
+                    type: 'newMessage',
+                    message: messageToSend
+                });
+                data.recipients.forEach((user) => {
+                    const ws = wsConnections.get(user);
+                    if (ws && ws.readyState === WebSocket.OPEN) {
+                        try {
+                            ws.send(payload);
+                            sentCount++;
+                        } catch (e) {
+                            console.error(`   ❌ Error enviando a ${user}:`, e.message);
+                        }
+                    } else {
+                        console.log(`   ⚠️  Usuario ${user} no está conectado (WS no disponible o cerrado)`);
+                    }
+                });
+                console.log(`✅ Mensaje enviado a ${sentCount}/${data.recipients.length} destinatarios`);
+            } else if (isGroup) {
                 // Enviar a todos los usuarios conectados
                 let sentCount = 0;
                 wsConnections.forEach((ws, user) => {
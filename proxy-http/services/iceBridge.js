@@ -222,6 +222,24 @@ class IceBridge {
                     };
                     break;
                     
+                case 'getHistoryPage':
+                    // cursor: índice del mensaje (o timestamp si cursorIsTimestamp); -1 = desde el extremo
+                    const page = await this.chatService.getHistoryPage(
+                        params.target,
+                        params.fromUser || params.from,
+                        params.isGroup || false,
+                        this.numberToLong(params.cursor !== undefined ? params.cursor : -1),
+                        params.cursorIsTimestamp || false,
+                        params.direction === 'newer' ? Chat.HistoryDirection.Newer : Chat.HistoryDirection.Older,
+                        params.limit || 0
+                    );
+                    result = {
+                        messages: page.messages.map(msg => this.messageToJson(msg)),
+                        nextCursor: page.nextCursor.high * 0x100000000 + (page.nextCursor.low >>> 0),
+                        hasMore: page.hasMore
+                    };
+                    break;
+                    
                 case 'getUsers':
                     const users = await this.chatService.getUsers();
                     result = { users: users };
@@ -232,6 +250,21 @@ class IceBridge {
                     result = { groups: groups };
                     break;
                     
+                case 'joinGroup':
+                    await this.chatService.joinGroup(params.groupName, params.username);
+                    result = { action: "GROUP_JOINED", groupName: params.groupName };
+                    break;
+                    
+                case 'leaveGroup':
+                    await this.chatService.leaveGroup(params.groupName, params.username);
+                    result = { action: "GROUP_LEFT", groupName: params.groupName };
+                    break;
+                    
+                case 'getGroupMembers':
+                    const members = await this.chatService.getGroupMembers(params.groupName);
+                    result = { groupName: params.groupName, members: members };
+                    break;
+                    
                 default:
                     throw new Error(`Método desconocido: ${method}`);
             }
@@ -250,6 +283,14 @@ class IceBridge {
         }
     }
 
+    // Convertir un número de JavaScript (entero, puede ser negativo) a Ice.Long,
+    // para los parámetros long como el cursor de getHistoryPage
+    numberToLong(value) {
+        const high = Math.floor(value / 0x100000000);
+        const low = value - high * 0x100000000;
+        return new Ice.Long(high >>> 0, low >>> 0);
+    }
+
     // Convertir mensaje Ice a JSON
     messageToJson(msg) {
         // Manejar timestamp (puede ser Ice.Long o número)
@@ -356,6 +397,59 @@ class MessageCallbackI extends Chat.MessageCallback {
             console.warn('⚠️  No hay messageHandler configurado en el bridge');
         }
     }
+
+    // Lote de mensajes que el servidor juntó mientras este cliente estaba ocupado;
+    // los de grupo traen isGroup y el nombre del grupo en 'to'
+    onMessages(msgs, current) {
+        console.log(`🔔 [Ice Callback] onMessages invocado desde servidor (${msgs.length} mensajes)`);
+
+        if (!this.bridge.messageHandler) {
+            console.warn('⚠️  No hay messageHandler configurado en el bridge');
+            return;
+        }
+        for (const msg of msgs) {
+            try {
+                this.bridge.messageHandler({
+                    type: 'newMessage',
+                    message: this.bridge.messageToJson(msg)
+                });
+            } catch (error) {
+                console.error('❌ Error procesando mensaje del lote en callback:', error);
+                console.error('   Stack:', error.stack);
+            }
+        }
+    }
+
+    // Un mensaje para varios usuarios suscritos con este callback: el servidor lo
+    // envía una sola vez y el proxy lo reparte solo a los usuarios de recipients
+    deliver(msg, recipients, current) {
+        console.log(`🔔 [Ice Callback] deliver invocado desde servidor (${recipients.length} destinatarios)`);
+        console.log('   Mensaje:', msg.from, '->', msg.to, ':', msg.content);
+
+        if (!this.bridge.messageHandler) {
+            console.warn('⚠️  No hay messageHandler configurado en el bridge');
+            return;
+        }
+        try {
+            this.bridge.messageHandler({
+                type: 'newMessage',
+                message: this.bridge.messageToJson(msg),
+                recipients: recipients
+            });
+        } catch (error) {
+            console.error('❌ Error procesando mensaje en callback:', error);
+            console.error('   Stack:', error.stack);
+        }
+    }
+
+    // Varios deliver juntos, en orden
+    deliverBatch(deliveries, current) {
+        console.log(`🔔 [Ice Callback] deliverBatch invocado desde servidor (${deliveries.length} mensajes)`);
+
+        for (const delivery of deliveries) {
+            this.deliver(delivery.msg, delivery.recipients, current);
+        }
+    }
 }
 
 module.exports = new IceBridge();
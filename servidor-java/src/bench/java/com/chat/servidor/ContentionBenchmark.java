@@ -0,0 +1,106 @@
+package com.chat.servidor;
+
+import Chat.HistoryDirection;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide el throughput de ChatServiceI con varios hilos enviando a
+ * conversaciones distintas (90% sendMessage, 10% getHistoryPage), con un solo
+ * lock para todo el servant ({@code chat.server.lockStripes=1}, equivalente a
+ * los métodos synchronized de antes) y con locks por conversación.
+ *
+ * Uso: {@code ./gradlew contentionBenchmark [-Dchat.bench.seconds=3]
+ * [-Dchat.bench.maxThreads=16]}. Corre sin fsync
+ * ({@code chat.persistence.mode=none}) para medir el servidor y no el disco,
+ * sobre un directorio de datos propio en {@code build/bench}.
+ */
+public class ContentionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.getInteger("chat.bench.seconds", 3);
+        int maxThreads = Integer.getInteger("chat.bench.maxThreads",
+                Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+        System.setProperty("chat.persistence.mode", System.getProperty("chat.persistence.mode", "none"));
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        // Sin las líneas de cada suscripción y envío, para no medir la consola
+        System.setProperty("chat.log.level", System.getProperty("chat.log.level", "WARN"));
+
+        deleteDirectory(Paths.get("data"));
+        HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+
+        PrintStream out = System.out;
+        out.println("Núcleos disponibles: " + Runtime.getRuntime().availableProcessors() +
+                ", " + seconds + " s por medición");
+        out.println(String.format("%-8s %20s %20s %10s", "hilos", "servant (ops/s)", "por conversación", "mejora"));
+        try {
+            run(256, 1, 1);     // calentamiento del JIT, no se informa
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double global = run(1, threads, seconds);
+                double striped = run(256, threads, seconds);
+                out.println(String.format("%-8d %20.0f %20.0f %9.2fx", threads, global, striped, striped / global));
+            }
+        } finally {
+            HistoryManager.close();
+        }
+    }
+
+    private static double run(int stripes, int threads, int seconds) throws Exception {
+        System.setProperty("chat.server.lockStripes", Integer.toString(stripes));
+        IceChatServer.ChatServiceI service = new IceChatServer.ChatServiceI();
+
+        LongAdder operations = new LongAdder();
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String from = "emisor" + t;
+            String to = "receptor" + t;
+            workers.add(pool.submit(() -> {
+                long i = 0;
+                while (running.get()) {
+                    if (i++ % 10 == 9) {
+                        service.getHistoryPage(to, from, false, -1, false, HistoryDirection.Older, 20, null);
+                    } else {
+                        service.sendMessageAsync(from, to, "mensaje " + i, false, null).toCompletableFuture().join();
+                    }
+                    if (measuring.get()) {
+                        operations.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        // Un segundo de calentamiento antes de medir
+        Thread.sleep(1000);
+        measuring.set(true);
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        measuring.set(false);
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+        service.shutdown();
+        return operations.sum() * 1e9 / elapsed;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.chat.servidor;
+
+import Chat.*;
+import com.zeroc.Ice.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.Exception;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga del fan-out: levanta el servidor y un cliente en el mismo
+ * proceso, unidos por TCP en loopback, suscribe N callbacks simulados (todos
+ * servidos por un único servant por defecto del cliente) y mide cuánto tarda
+ * en entregarse cada mensaje de grupo a todos, con hilos del sistema y con
+ * hilos virtuales.
+ *
+ * Uso: {@code ./gradlew fanoutLoadTest -Pjava21
+ * [-Dchat.bench.subscribers=1000,10000,50000] [-Dchat.bench.messages=5]}.
+ * Sin Java 21 solo se mide el modo con hilos del sistema.
+ */
+public class FanoutLoadTest {
+
+    private static final String GROUP = "grupo-carga";
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Arrays.stream(System.getProperty("chat.bench.subscribers", "1000,10000,50000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        int messages = Integer.getInteger("chat.bench.messages", 5);
+        long timeoutSeconds = Long.getLong("chat.bench.timeoutSeconds", 300);
+        System.setProperty("chat.persistence.mode", System.getProperty("chat.persistence.mode", "none"));
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        // Sin las líneas de cada suscripción y envío, para no medir la consola
+        System.setProperty("chat.log.level", System.getProperty("chat.log.level", "WARN"));
+
+        deleteDirectory(Paths.get("data"));
+        HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+
+        List<ServerThreads.Mode> modes = new ArrayList<>();
+        modes.add(ServerThreads.Mode.PLATFORM);
+        if (ServerThreads.virtualThreadsAvailable()) {
+            modes.add(ServerThreads.Mode.VIRTUAL);
+        }
+
+        PrintStream out = System.out;
+        if (modes.size() == 1) {
+            out.println("Hilos virtuales no disponibles en Java " + Runtime.version().feature() +
+                    ": solo se mide el modo platform (usar -Pjava21)");
+        }
+        out.println(String.format("%-10s %-14s %16s %18s %20s", "modo", "suscriptores", "mensajes",
+                "ms por mensaje", "entregas/s"));
+        try {
+            for (int subscribers : sizes) {
+                for (ServerThreads.Mode mode : modes) {
+                    double[] result = run(mode, subscribers, messages, timeoutSeconds);
+                    out.println(String.format("%-10s %-14d %16d %18.1f %20.0f",
+                            mode.name().toLowerCase(), subscribers, messages, result[0], result[1]));
+                }
+            }
+        } finally {
+            HistoryManager.close();
+        }
+    }
+
+    // Devuelve {ms por mensaje, entregas por segundo}
+    private static double[] run(ServerThreads.Mode mode, int subscribers, int messages, long timeoutSeconds)
+            throws Exception {
+        ExecutorService dispatch = null;
+        InitializationData serverInit = new InitializationData();
+        serverInit.properties = Util.createProperties();
+        serverInit.properties.setProperty("Ice.MessageSizeMax", "0");
+        if (mode == ServerThreads.Mode.VIRTUAL) {
+            ExecutorService executor = ServerThreads.newPool(mode, "chat-dispatch", 0);
+            serverInit.dispatcher = (call, connection) -> executor.execute(call);
+            dispatch = executor;
+        }
+        Communicator server = Util.initialize(serverInit);
+
+        InitializationData clientInit = new InitializationData();
+        clientInit.properties = Util.createProperties();
+        clientInit.properties.setProperty("Ice.ThreadPool.Server.Size", "8");
+        clientInit.properties.setProperty("Ice.MessageSizeMax", "0");
+        Communicator client = Util.initialize(clientInit);
+
+        IceChatServer.ChatServiceI service = new IceChatServer.ChatServiceI(mode);
+        try {
+            ObjectAdapter adapter = server.createObjectAdapterWithEndpoints("ChatAdapter", "tcp -h 127.0.0.1 -p 0");
+            ObjectPrx serviceProxy = adapter.add(service, Util.stringToIdentity("ChatService"));
+            adapter.activate();
+            ChatServicePrx chat = ChatServicePrx.uncheckedCast(
+                    client.stringToProxy(serviceProxy.toString()));
+
+            // Todos los suscriptores los atiende un único servant por defecto. Los
+            // nombres se repiten entre corridas, así cada una reemplaza las
+            // suscripciones de la anterior (las corridas van de menor a mayor)
+            LongAdder delivered = new LongAdder();
+            ObjectAdapter callbacks = client.createObjectAdapterWithEndpoints("Callbacks", "tcp -h 127.0.0.1 -p 0");
+            callbacks.addDefaultServant(new MessageCallback() {
+                @Override
+                public void onMessage(Message msg, Current current) {
+                    delivered.increment();
+                }
+
+                @Override
+                public void onGroupMessage(Message msg, String groupName, Current current) {
+                    delivered.increment();
+                }
+
+                @Override
+                public void onMessages(Message[] msgs, Current current) {
+                    delivered.add(msgs.length);
+                }
+
+                @Override
+                public void deliver(Message msg, String[] recipients, Current current) {
+                    delivered.add(recipients.length);
+                }
+
+                @Override
+                public void deliverBatch(Delivery[] deliveries, Current current) {
+                    for (Delivery delivery : deliveries) {
+                        delivered.add(delivery.recipients.length);
+                    }
+                }
+            }, "");
+            callbacks.activate();
+
+            // Los mensajes de grupo solo llegan a los miembros: todos se unen al grupo
+            if (!Arrays.asList(chat.getGroups()).contains(GROUP)) {
+                chat.createGroup(GROUP);
+            }
+            List<CompletableFuture<Void>> pending = new ArrayList<>();
+            for (int i = 0; i < subscribers; i++) {
+                MessageCallbackPrx callback = MessageCallbackPrx.uncheckedCast(
+                        callbacks.createProxy(Util.stringToIdentity("suscriptor" + i)));
+                pending.add(chat.subscribeAsync(callback, "suscriptor" + i));
+                pending.add(chat.joinGroupAsync(GROUP, "suscriptor" + i));
+                if (pending.size() >= 1000) {
+                    pending.forEach(CompletableFuture::join);
+                    pending.clear();
+                }
+            }
+            pending.forEach(CompletableFuture::join);
+
+            // Un mensaje de calentamiento abre las conexiones de callback
+            chat.sendMessage("carga", GROUP, "calentamiento", true);
+            long expected = subscribers;
+            awaitDeliveries(delivered, expected, timeoutSeconds);
+
+            long start = System.nanoTime();
+            for (int m = 0; m < messages; m++) {
+                chat.sendMessage("carga", GROUP, "mensaje " + m, true);
+            }
+            expected += (long) subscribers * messages;
+            awaitDeliveries(delivered, expected, timeoutSeconds);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return new double[] { seconds * 1000 / messages, subscribers * (double) messages / seconds };
+        } finally {
+            client.destroy();
+            server.destroy();
+            service.shutdown();
+            if (dispatch != null) {
+                dispatch.shutdownNow();
+            }
+        }
+    }
+
+    private static void awaitDeliveries(LongAdder delivered, long expected, long timeoutSeconds)
+            throws InterruptedException, java.util.concurrent.TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (delivered.sum() < expected) {
+            if (System.nanoTime() > deadline) {
+                throw new java.util.concurrent.TimeoutException("Entregas: " + delivered.sum() + " de " + expected);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
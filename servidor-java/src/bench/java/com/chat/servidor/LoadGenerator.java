@@ -0,0 +1,459 @@
+package com.chat.servidor;
+
+import Chat.*;
+import com.zeroc.Ice.*;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.Exception;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga: simula miles de clientes de chat que se conectan por
+ * Ice (TCP o WebSocket) en loopback, se registran, suscriben su callback, se
+ * unen a un grupo y envían una mezcla configurable de mensajes directos, de
+ * grupo, notas de voz y lecturas del historial.
+ *
+ * Informa, por operación, envíos por segundo, errores y latencia de la
+ * respuesta, y por tipo de mensaje la latencia de punta a punta (desde el
+ * envío hasta que llega al callback de cada destinatario) y cuántas entregas
+ * llegaron de las esperadas. El momento del envío viaja en el propio mensaje
+ * (en el texto, o en los primeros bytes del audio), así que no hace falta
+ * correlacionar nada.
+ *
+ * Sin {@code chat.load.endpoints} levanta el servidor en el mismo proceso
+ * (con {@code chat.server.threads} y los argumentos {@code --Ice.*} que se le
+ * pasen); con, por ejemplo, {@code -Dchat.load.endpoints="ws -h 10.0.0.5 -p 10000"}
+ * carga un servidor ya levantado.
+ *
+ * Uso: {@code ./gradlew loadTest [-Dchat.load.clients=2000] [-Dchat.load.seconds=30]}
+ * (ver la tabla de propiedades en el README).
+ */
+public class LoadGenerator {
+
+    enum Op { DIRECT, GROUP, AUDIO, HISTORY }
+
+    private static final String PREFIX = "carga ";
+
+    // Estadísticas de una fase; las entregas de mensajes de otra fase se ignoran
+    private static final class Stats {
+        final int phase;
+        final LatencyHistogram[] requests = new LatencyHistogram[Op.values().length];
+        final LongAdder[] errors = new LongAdder[Op.values().length];
+        final LatencyHistogram[] deliveries = new LatencyHistogram[Op.values().length];
+        final LongAdder[] received = new LongAdder[Op.values().length];
+        final LongAdder[] expected = new LongAdder[Op.values().length];
+
+        Stats(int phase) {
+            this.phase = phase;
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = new LatencyHistogram();
+                errors[i] = new LongAdder();
+                deliveries[i] = new LatencyHistogram();
+                received[i] = new LongAdder();
+                expected[i] = new LongAdder();
+            }
+        }
+
+        long totalReceived() {
+            long total = 0;
+            for (LongAdder r : received) total += r.sum();
+            return total;
+        }
+
+        long totalExpected() {
+            long total = 0;
+            for (LongAdder e : expected) total += e.sum();
+            return total;
+        }
+    }
+
+    private final int clients;
+    private final int groups;
+    private final int audioBytes;
+    private final Op[] mix = new Op[100];
+    private final String mixDescription;
+    private ChatServicePrx[] chats;
+    private volatile Stats stats = new Stats(0);
+    private volatile boolean running;
+
+    private LoadGenerator(int clients, int groups, int audioBytes, String mix) {
+        this.clients = clients;
+        this.groups = Math.max(1, Math.min(groups, clients));
+        this.audioBytes = Math.max(12, audioBytes);
+        this.mixDescription = parseMix(mix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = Integer.getInteger("chat.load.clients", 1000);
+        int connections = Math.max(1, Math.min(clients, Integer.getInteger("chat.load.connections", clients)));
+        int groups = Integer.getInteger("chat.load.groups", 10);
+        String transport = System.getProperty("chat.load.transport", "tcp");
+        String endpoints = System.getProperty("chat.load.endpoints");
+        int concurrency = Integer.getInteger("chat.load.concurrency", 64);
+        int rate = Integer.getInteger("chat.load.rate", 0);
+        int warmupSeconds = Integer.getInteger("chat.load.warmupSeconds", 5);
+        int seconds = Integer.getInteger("chat.load.seconds", 30);
+        int audioBytes = Integer.getInteger("chat.load.audioBytes", 16384);
+        String mix = System.getProperty("chat.load.mix", "direct=60,group=25,audio=5,history=10");
+
+        LoadGenerator generator = new LoadGenerator(clients, groups, audioBytes, mix);
+        Communicator server = null;
+        Communicator client = null;
+        IceChatServer.ChatServiceI service = null;
+        ExecutorService dispatch = null;
+        PrintStream out = System.out;
+        try {
+            if (endpoints == null) {
+                System.setProperty("chat.log.level", System.getProperty("chat.log.level", "WARN"));
+                deleteDirectory(Paths.get("data"));
+                HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(),
+                        ChatServer.getUsuariosRegistrados());
+
+                // Como IceChatServer.main, pero en loopback y con puerto libre
+                ServerThreads.Mode mode = ServerThreads.modeFromSystemProperties();
+                InitializationData serverInit = new InitializationData();
+                serverInit.properties = Util.createProperties(args);
+                serverInit.properties.setProperty("Ice.MessageSizeMax", "0");
+                if (mode == ServerThreads.Mode.VIRTUAL) {
+                    ExecutorService executor = ServerThreads.newPool(mode, "chat-dispatch", 0);
+                    serverInit.dispatcher = (call, connection) -> executor.execute(call);
+                    dispatch = executor;
+                }
+                server = Util.initialize(serverInit);
+                ObjectAdapter adapter = server.createObjectAdapterWithEndpoints("ChatAdapter",
+                        transport + " -h 127.0.0.1 -p 0");
+                service = new IceChatServer.ChatServiceI(mode);
+                adapter.add(new MetricsInterceptor(service, ChatService._iceOps), Util.stringToIdentity("ChatService"));
+                adapter.activate();
+                endpoints = adapter.getEndpoints()[0].toString();
+                out.println("Servidor en el mismo proceso: " + endpoints + ", hilos " + mode.name().toLowerCase());
+            }
+
+            InitializationData clientInit = new InitializationData();
+            clientInit.properties = Util.createProperties();
+            clientInit.properties.setProperty("Ice.MessageSizeMax", "0");
+            clientInit.properties.setProperty("Ice.ThreadPool.Client.Size", "4");
+            clientInit.properties.setProperty("Ice.ThreadPool.Server.Size", "4");
+            client = Util.initialize(clientInit);
+
+            out.println(String.format("Carga: %d clientes en %d conexiones %s, %d grupos, mezcla %s, %s, %d s (+%d s de calentamiento)",
+                    clients, connections, transport, generator.groups, generator.mixDescription,
+                    rate > 0 ? rate + " operaciones/s" : "concurrencia " + concurrency, seconds, warmupSeconds));
+
+            long setupStart = System.nanoTime();
+            generator.connect(client, endpoints, transport, connections);
+            out.println(String.format("Clientes conectados y suscritos en %.1f s", (System.nanoTime() - setupStart) / 1e9));
+
+            generator.run(warmupSeconds, seconds, concurrency, rate);
+            generator.report(out, seconds);
+        } finally {
+            if (client != null) client.destroy();
+            if (server != null) server.destroy();
+            if (service != null) {
+                service.shutdown();
+                HistoryManager.close();
+            }
+            if (dispatch != null) dispatch.shutdownNow();
+        }
+    }
+
+    // Registra a cada cliente, lo une a su grupo y suscribe su callback
+    private void connect(Communicator communicator, String endpoints, String transport, int connections) {
+        ObjectPrx base = communicator.stringToProxy("ChatService:" + endpoints);
+        chats = new ChatServicePrx[clients];
+        for (int i = 0; i < clients; i++) {
+            // Un connectionId distinto abre otra conexión, como un cliente más
+            chats[i] = ChatServicePrx.uncheckedCast(base.ice_connectionId("cliente" + (i % connections)));
+        }
+
+        ObjectAdapter callbacks = communicator.createObjectAdapterWithEndpoints("Callbacks",
+                transport + " -h 127.0.0.1 -p 0");
+        callbacks.addDefaultServant(new Receiver(), "");
+        callbacks.activate();
+
+        for (int g = 0; g < groups; g++) {
+            try {
+                chats[0].createGroup(groupName(g));
+            } catch (ChatException e) {
+                // Ya existe (servidor externo)
+            }
+        }
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String user = userName(i);
+            String group = groupName(i % groups);
+            MessageCallbackPrx callback = MessageCallbackPrx.uncheckedCast(
+                    callbacks.createProxy(Util.stringToIdentity(user)));
+            ChatServicePrx chat = chats[i];
+            pending.add(chat.registerUserAsync(user)
+                    .handle((r, e) -> null)
+                    .thenCompose(r -> chat.joinGroupAsync(group, user))
+                    .thenCompose(r -> chat.subscribeAsync(callback, user)));
+            if (pending.size() >= 500) {
+                pending.forEach(CompletableFuture::join);
+                pending.clear();
+            }
+        }
+        pending.forEach(CompletableFuture::join);
+    }
+
+    private void run(int warmupSeconds, int seconds, int concurrency, int rate) throws InterruptedException {
+        running = true;
+        Thread driver = null;
+        if (rate > 0) {
+            // Lazo abierto: las operaciones salen a su hora aunque las anteriores no
+            // hayan respondido, y la latencia se mide desde esa hora
+            driver = new Thread(() -> {
+                long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+                long next = System.nanoTime();
+                while (running) {
+                    long now = System.nanoTime();
+                    while (next <= now) {
+                        issue(next, null);
+                        next += interval;
+                    }
+                    LockSupport.parkNanos(Math.min(next - now, TimeUnit.MILLISECONDS.toNanos(1)));
+                }
+            }, "chat-load");
+            driver.start();
+        } else {
+            // Lazo cerrado: cada ranura envía la siguiente operación al recibir la respuesta
+            for (int i = 0; i < concurrency; i++) {
+                issue(System.nanoTime(), this::issueNext);
+            }
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        stats = new Stats(1);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running = false;
+        if (driver != null) {
+            driver.join();
+        }
+
+        // Esperar las entregas que quedaron en camino
+        Stats measured = stats;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Integer.getInteger("chat.load.drainSeconds", 10));
+        while (measured.totalReceived() < measured.totalExpected() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void issueNext(Void ignored) {
+        if (running) {
+            issue(System.nanoTime(), this::issueNext);
+        }
+    }
+
+    // Envía una operación al azar de la mezcla; al terminar llama a then (si no es null)
+    private void issue(long intended, java.util.function.Consumer<Void> then) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Op op = mix[random.nextInt(mix.length)];
+        int from = random.nextInt(clients);
+        int to = clients > 1 ? (from + 1 + random.nextInt(clients - 1)) % clients : from;
+        Stats current = stats;
+        String sender = userName(from);
+        CompletableFuture<?> sent;
+        try {
+            switch (op) {
+                case DIRECT:
+                    sent = chats[from].sendMessageAsync(sender, userName(to), content(current.phase, intended), false);
+                    current.expected[op.ordinal()].add(from == to ? 1 : 2);
+                    break;
+                case GROUP:
+                    int group = from % groups;
+                    sent = chats[from].sendMessageAsync(sender, groupName(group), content(current.phase, intended), true);
+                    current.expected[op.ordinal()].add(groupSize(group));
+                    break;
+                case AUDIO:
+                    sent = chats[from].sendAudioAsync(sender, userName(to), audio(current.phase, intended), false);
+                    current.expected[op.ordinal()].add(from == to ? 1 : 2);
+                    break;
+                default:
+                    sent = chats[from].getHistoryPageAsync(userName(to), sender, false, -1, false,
+                            HistoryDirection.Older, 50);
+                    break;
+            }
+        } catch (LocalException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((result, error) -> {
+            if (current == stats) {
+                current.requests[op.ordinal()].record(System.nanoTime() - intended);
+                if (error != null) {
+                    current.errors[op.ordinal()].increment();
+                }
+            }
+            if (then != null) {
+                then.accept(null);
+            }
+        });
+    }
+
+    // Callback de todos los clientes: cada destinatario es una entrega
+    private class Receiver implements MessageCallback {
+        @Override
+        public void onMessage(Message msg, Current current) {
+            received(msg, 1);
+        }
+
+        @Override
+        public void onGroupMessage(Message msg, String groupName, Current current) {
+            received(msg, 1);
+        }
+
+        @Override
+        public void onMessages(Message[] msgs, Current current) {
+            for (Message msg : msgs) {
+                received(msg, 1);
+            }
+        }
+
+        @Override
+        public void deliver(Message msg, String[] recipients, Current current) {
+            received(msg, recipients.length);
+        }
+
+        @Override
+        public void deliverBatch(Delivery[] deliveries, Current current) {
+            for (Delivery delivery : deliveries) {
+                received(delivery.msg, delivery.recipients.length);
+            }
+        }
+    }
+
+    private void received(Message msg, int recipients) {
+        long now = System.nanoTime();
+        Stats current = stats;
+        Op op;
+        int phase;
+        long sentAt;
+        if ("audio".equals(msg.type)) {
+            op = Op.AUDIO;
+            if (msg.data == null || msg.data.length < 12) {
+                // Llegó resumida (suscriptor degradado): cuenta pero sin latencia
+                current.received[op.ordinal()].add(recipients);
+                return;
+            }
+            ByteBuffer data = ByteBuffer.wrap(msg.data);
+            phase = data.getInt();
+            sentAt = data.getLong();
+        } else if (msg.content.startsWith(PREFIX)) {
+            op = msg.isGroup ? Op.GROUP : Op.DIRECT;
+            int space = msg.content.indexOf(' ', PREFIX.length());
+            phase = Integer.parseInt(msg.content.substring(PREFIX.length(), space));
+            sentAt = Long.parseLong(msg.content.substring(space + 1));
+        } else {
+            return;
+        }
+        if (phase != current.phase) return;
+        current.received[op.ordinal()].add(recipients);
+        for (int i = 0; i < recipients; i++) {
+            current.deliveries[op.ordinal()].record(now - sentAt);
+        }
+    }
+
+    private void report(PrintStream out, int seconds) {
+        Stats measured = stats;
+        out.println();
+        out.println(String.format("%-10s %10s %12s %9s %10s %10s %10s %10s", "operación", "envíos", "envíos/s",
+                "errores", "p50 ms", "p99 ms", "p999 ms", "máx ms"));
+        for (Op op : Op.values()) {
+            LatencyHistogram h = measured.requests[op.ordinal()];
+            if (h.getCount() == 0) continue;
+            long[] p = h.percentiles(0.5, 0.99, 0.999);
+            out.println(String.format("%-10s %10d %12.0f %8.2f%% %10.2f %10.2f %10.2f %10.2f",
+                    op.name().toLowerCase(), h.getCount(), h.getCount() / (double) seconds,
+                    100.0 * measured.errors[op.ordinal()].sum() / h.getCount(),
+                    millis(p[0]), millis(p[1]), millis(p[2]), millis(h.getMax())));
+        }
+
+        out.println();
+        out.println(String.format("%-10s %10s %12s %9s %10s %10s %10s %10s", "entrega", "recibidas", "entregas/s",
+                "llegaron", "p50 ms", "p99 ms", "p999 ms", "máx ms"));
+        for (Op op : Op.values()) {
+            long expected = measured.expected[op.ordinal()].sum();
+            if (expected == 0) continue;
+            long received = measured.received[op.ordinal()].sum();
+            LatencyHistogram h = measured.deliveries[op.ordinal()];
+            long[] p = h.percentiles(0.5, 0.99, 0.999);
+            out.println(String.format("%-10s %10d %12.0f %8.2f%% %10.2f %10.2f %10.2f %10.2f",
+                    op.name().toLowerCase(), received, received / (double) seconds, 100.0 * received / expected,
+                    millis(p[0]), millis(p[1]), millis(p[2]), millis(h.getMax())));
+        }
+    }
+
+    private String parseMix(String value) {
+        Map<Op, Integer> weights = new EnumMap<>(Op.class);
+        int total = 0;
+        for (String part : value.split(",")) {
+            String[] kv = part.trim().split("=");
+            Op op = Op.valueOf(kv[0].trim().toUpperCase());
+            int weight = Integer.parseInt(kv[1].trim());
+            weights.put(op, weight);
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Mezcla sin operaciones: " + value);
+        }
+        // Tabla de 100 casillas repartidas según los pesos
+        int filled = 0;
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<Op, Integer> entry : weights.entrySet()) {
+            int slots = (int) Math.round(100.0 * entry.getValue() / total);
+            for (int i = 0; i < slots && filled < mix.length; i++) {
+                mix[filled++] = entry.getKey();
+            }
+            if (description.length() > 0) description.append(' ');
+            description.append(entry.getKey().name().toLowerCase()).append('=').append(slots).append('%');
+        }
+        Op last = mix[Math.max(0, filled - 1)];
+        while (filled < mix.length) {
+            mix[filled++] = last;
+        }
+        return description.toString();
+    }
+
+    private int groupSize(int group) {
+        // Los clientes i con i % groups == group
+        return clients / groups + (group < clients % groups ? 1 : 0);
+    }
+
+    // La hora de envío viaja en el mensaje: la fase, y la hora en que tocaba enviarlo
+    private static String content(int phase, long sentAt) {
+        return PREFIX + phase + " " + sentAt;
+    }
+
+    private byte[] audio(int phase, long sentAt) {
+        byte[] data = new byte[audioBytes];
+        ByteBuffer.wrap(data).putInt(phase).putLong(sentAt);
+        return data;
+    }
+
+    private static String userName(int i) {
+        return "cliente" + i;
+    }
+
+    private static String groupName(int g) {
+        return "grupo-carga-" + g;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
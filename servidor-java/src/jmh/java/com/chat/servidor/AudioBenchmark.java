@@ -0,0 +1,62 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ida y vuelta de una nota de voz de {@code audioBytes}: en Base64, como iba
+ * dentro del history.json antiguo (y como se sigue leyendo al importarlo), y
+ * en el formato binario de {@link MessageCodec}, que guarda los bytes tal cual.
+ *
+ * Uso: {@code ./gradlew jmh -PjmhArgs="Audio"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AudioBenchmark {
+
+    // Unos 1 y 16 segundos de audio comprimido
+    @Param({"16384", "262144"})
+    public int audioBytes;
+
+    private byte[] audio;
+    private Message msg;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("chat.log.level", "WARN");
+        audio = new byte[audioBytes];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = (byte) (i * 31);
+        }
+        msg = new Message("ana", "beto", "[Nota de voz]", 1700000000000L, false, "audio", audio);
+        json = "{\"from\": \"ana\", \"to\": \"beto\", \"message\": \"[Nota de voz]\", " +
+                "\"timestamp\": 1700000000000, \"isGroup\": false, \"type\": \"audio\", " +
+                "\"audioData\": \"" + Base64.getEncoder().encodeToString(audio) + "\"}";
+    }
+
+    @Benchmark
+    public byte[] base64RoundTrip() {
+        return Base64.getDecoder().decode(Base64.getEncoder().encodeToString(audio));
+    }
+
+    // Lo que costaba leer cada nota de voz del history.json
+    @Benchmark
+    public Message jsonAudioMessage() throws IOException {
+        return JsonHistoryReader.parseMessage(json);
+    }
+
+    @Benchmark
+    public Message codecRoundTrip() {
+        return MessageCodec.decode(ByteBuffer.wrap(MessageCodec.encode(msg)));
+    }
+}
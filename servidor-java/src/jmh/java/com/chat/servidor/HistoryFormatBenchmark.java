@@ -0,0 +1,118 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * El historial en sus dos formatos, con {@code historySize} mensajes de texto:
+ * el history.json antiguo, que hoy solo se lee al importarlo
+ * ({@link JsonHistoryReader}, el reemplazo de {@code parseMessageFromJson} y
+ * {@code extractValue}), y el binario de {@link MessageCodec} con el que se
+ * escriben el log y se leen las páginas.
+ *
+ * Uso: {@code ./gradlew jmh -PjmhArgs="HistoryFormat"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HistoryFormatBenchmark {
+
+    @Param({"100", "10000"})
+    public int historySize;
+
+    private Message[] messages;
+    private String messageJson;
+    private byte[] historyJson;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("chat.log.level", "WARN");
+        messages = new Message[historySize];
+        int encodedSize = 0;
+        for (int i = 0; i < historySize; i++) {
+            // Algunos con comillas, saltos de línea y acentos para pasar por los escapes
+            String content = i % 10 == 0 ? "dijo \"ya voy\"\ny salió ñandú " + i : "mensaje número " + i;
+            messages[i] = new Message(i % 2 == 0 ? "ana" : "beto", i % 2 == 0 ? "beto" : "ana", content,
+                    1700000000000L + i * 1000L, false, "text", new byte[0]);
+            encodedSize += MessageCodec.encodedSize(messages[i]);
+        }
+
+        messageJson = toJson(messages[0]);
+        StringBuilder json = new StringBuilder("{\"historial\": {\"ana_beto\": [");
+        for (int i = 0; i < historySize; i++) {
+            if (i > 0) json.append(", ");
+            json.append(toJson(messages[i]));
+        }
+        json.append("]}, \"grupos\": {}}");
+        historyJson = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        encoded = ByteBuffer.allocate(encodedSize);
+        encodeHistory();
+    }
+
+    @Benchmark
+    public Message jsonParseMessage() throws IOException {
+        return JsonHistoryReader.parseMessage(messageJson);
+    }
+
+    @Benchmark
+    public void jsonReadHistory(Blackhole bh) throws IOException {
+        new JsonHistoryReader(Channels.newChannel(new ByteArrayInputStream(historyJson)))
+                .read(new JsonHistoryReader.Handler() {
+                    @Override
+                    public void message(String conversation, Message msg) {
+                        bh.consume(msg);
+                    }
+
+                    @Override
+                    public void group(String name, List<String> members) {
+                        bh.consume(members);
+                    }
+                });
+    }
+
+    @Benchmark
+    public ByteBuffer codecEncodeHistory() {
+        return encodeHistory();
+    }
+
+    @Benchmark
+    public void codecDecodeHistory(Blackhole bh) {
+        ByteBuffer in = encoded.duplicate();
+        in.flip();
+        while (in.hasRemaining()) {
+            bh.consume(MessageCodec.decode(in));
+        }
+    }
+
+    private ByteBuffer encodeHistory() {
+        encoded.clear();
+        for (Message msg : messages) {
+            MessageCodec.encode(msg, encoded);
+        }
+        return encoded;
+    }
+
+    private static String toJson(Message msg) {
+        return "{\"from\": \"" + escape(msg.from) + "\", \"to\": \"" + escape(msg.to) +
+                "\", \"message\": \"" + escape(msg.content) + "\", \"timestamp\": " + msg.timestamp +
+                ", \"isGroup\": " + msg.isGroup + ", \"type\": \"" + msg.type + "\"}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
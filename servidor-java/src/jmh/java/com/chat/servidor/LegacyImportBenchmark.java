@@ -0,0 +1,166 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Importar un history.json antiguo de {@code fileMb} MB: solo leerlo con
+ * {@link JsonHistoryReader} ({@code parse}) y el arranque completo del
+ * servidor sobre él ({@code importAndStart}: {@link HistoryManager#init}
+ * lee el JSON, guarda cada audio en el almacén de blobs, escribe los
+ * segmentos y reconstruye los índices).
+ *
+ * El archivo tiene 1000 conversaciones; uno de cada 20 mensajes es una nota de
+ * voz de 8 KiB en Base64, que es lo que más ocupa. Se genera una vez en
+ * {@code build/jmh/legacy} y se reutiliza entre ejecuciones.
+ *
+ * Uso: {@code ./gradlew jmh -PjmhArgs="LegacyImport"}
+ * ({@code -PjmhArgs="LegacyImport -p fileMb=100"} para el tamaño chico).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class LegacyImportBenchmark {
+
+    private static final int CONVERSATIONS = 1000;
+    private static final int AUDIO_EVERY = 20;
+    private static final int AUDIO_BYTES = 8192;
+
+    @Param({"100", "1000"})
+    public int fileMb;
+
+    private Path source;
+    private final Path dataDir = Paths.get("data");
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        System.setProperty("chat.persistence.mode", "none");
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        System.setProperty("chat.history.lazyLoad", "true");
+        System.setProperty("chat.log.level", "WARN");
+        source = Paths.get("legacy", "history-" + fileMb + "mb.json");
+        long target = fileMb * 1024L * 1024L;
+        if (Files.exists(source) && Files.size(source) >= target) {
+            return;
+        }
+        Files.createDirectories(source.getParent());
+        writeHistoryJson(source, target);
+    }
+
+    // Cada importación parte de data/ con solo el history.json, como al actualizar el servidor
+    @Setup(Level.Invocation)
+    public void prepareDataDirectory() throws IOException {
+        SendMessageBenchmark.deleteDirectory(dataDir);
+        Files.createDirectories(dataDir);
+        Path legacy = dataDir.resolve("history.json");
+        try {
+            Files.createLink(legacy, source.toAbsolutePath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, legacy);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeStore() {
+        HistoryManager.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        SendMessageBenchmark.deleteDirectory(dataDir);
+    }
+
+    @Benchmark
+    public long parse(Blackhole bh) throws IOException {
+        long[] messages = new long[1];
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            new JsonHistoryReader(channel).read(new JsonHistoryReader.Handler() {
+                @Override
+                public void message(String conversation, Message msg) {
+                    bh.consume(msg);
+                    messages[0]++;
+                }
+
+                @Override
+                public void group(String name, List<String> members) {
+                    bh.consume(members);
+                }
+            });
+        }
+        return messages[0];
+    }
+
+    @Benchmark
+    public int importAndStart() throws IOException {
+        Map<String, ConversationLog> conversaciones = new ConcurrentHashMap<>();
+        HistoryManager.init(conversaciones, new GroupMembership(), ConcurrentHashMap.newKeySet());
+        return conversaciones.size();
+    }
+
+    // Con el formato que escribía la versión anterior del servidor
+    private static void writeHistoryJson(Path file, long targetBytes) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        byte[] audio = new byte[AUDIO_BYTES];
+        Random random = new Random(42);
+        random.nextBytes(audio);
+        Base64.Encoder base64 = Base64.getEncoder();
+
+        // Cada conversación es una lista: se escriben de a una, repartiendo el total
+        long perConversation = targetBytes / CONVERSATIONS;
+        long timestamp = 1600000000000L;
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write("{\n  \"historial\": {\n");
+            for (int c = 0; c < CONVERSATIONS; c++) {
+                String from = "usuario" + c;
+                String to = "usuario" + (c + 1);
+                out.write(c == 0 ? "    \"" : ",\n    \"");
+                out.write(from + "_" + to + "\": [\n");
+                long written = 0;
+                for (int i = 0; written < perConversation; i++) {
+                    StringBuilder msg = new StringBuilder(256);
+                    String sender = i % 2 == 0 ? from : to;
+                    String recipient = i % 2 == 0 ? to : from;
+                    msg.append(i == 0 ? "      " : ",\n      ");
+                    msg.append("{\"from\":\"").append(sender).append("\",\"to\":\"").append(recipient);
+                    if (i % AUDIO_EVERY == AUDIO_EVERY - 1) {
+                        // Cada nota de voz distinta, para que no se deduplique en el almacén de blobs
+                        audio[0] = (byte) c;
+                        audio[1] = (byte) (c >> 8);
+                        audio[2] = (byte) i;
+                        audio[3] = (byte) (i >> 8);
+                        audio[4] = (byte) (i >> 16);
+                        msg.append("\",\"message\":\"[Nota de voz]\",\"timestamp\":\"").append(timestamp++)
+                                .append("\",\"isGroup\":false,\"type\":\"audio\",\"audioData\":\"")
+                                .append(base64.encodeToString(audio)).append("\"}");
+                    } else {
+                        msg.append("\",\"message\":\"");
+                        if (i % 10 == 0) {
+                            msg.append("dijo \\\"ya voy\\\"\\ny salió ñandú ").append(i);
+                        } else {
+                            msg.append("mensaje número ").append(i).append(" de la conversación");
+                        }
+                        msg.append("\",\"timestamp\":\"").append(timestamp++).append("\",\"isGroup\":false}");
+                    }
+                    out.append(msg);
+                    written += msg.length();
+                }
+                out.write("\n    ]");
+            }
+            out.write("\n  },\n  \"grupos\": {\n    \"amigos\": [\n      \"usuario0\",\n      \"usuario1\"\n    ]\n  }\n}");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,165 @@
+package com.chat.servidor;
+
+import Chat.Delivery;
+import Chat.Message;
+import Chat.MessageCallback;
+import Chat.MessageCallbackPrx;
+import com.zeroc.Ice.Communicator;
+import com.zeroc.Ice.Current;
+import com.zeroc.Ice.FormatType;
+import com.zeroc.Ice.ObjectAdapter;
+import com.zeroc.Ice.OperationMode;
+import com.zeroc.Ice.OutputStream;
+import com.zeroc.Ice.Util;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out de un mensaje de grupo a N suscriptores con el stub generado
+ * ({@code onGroupMessageAsync}, que serializa el Message por cada uno), con
+ * {@link OutgoingMessage} (los bytes serializados una vez) y, como
+ * referencia, con {@code ice_invokeAsync} y los parámetros ya serializados.
+ *
+ * Los {@code *Marshal} miden solo la serialización de los parámetros de cada
+ * invocación; los {@code *Fanout} envían de verdad por TCP en loopback, desde
+ * otro communicator, a un servant que no hace nada y esperan todas las
+ * respuestas.
+ *
+ * Uso: {@code ./gradlew jmh -PjmhArgs="MarshalOnce"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MarshalOnceBenchmark {
+
+    private static final String GROUP = "grupo";
+
+    @Param({"0", "65536"})
+    public int audioBytes;
+
+    @Param({"100"})
+    public int subscribers;
+
+    private Communicator server;
+    private Communicator communicator;
+    private MessageCallbackPrx[] callbacks;
+    private Message msg;
+
+    @Setup
+    public void setUp() {
+        server = Util.initialize();
+        communicator = Util.initialize();
+        ObjectAdapter adapter = server.createObjectAdapterWithEndpoints("Callbacks", "tcp -h 127.0.0.1 -p 0");
+        adapter.addDefaultServant(new MessageCallback() {
+            @Override
+            public void onMessage(Message msg, Current current) {
+            }
+
+            @Override
+            public void onGroupMessage(Message msg, String groupName, Current current) {
+            }
+
+            @Override
+            public void onMessages(Message[] msgs, Current current) {
+            }
+
+            @Override
+            public void deliver(Message msg, String[] recipients, Current current) {
+            }
+
+            @Override
+            public void deliverBatch(Delivery[] deliveries, Current current) {
+            }
+        }, "");
+        adapter.activate();
+
+        // Proxies distintos sobre la misma conexión, como los suscriptores del proxy HTTP
+        callbacks = new MessageCallbackPrx[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            callbacks[i] = MessageCallbackPrx.uncheckedCast(communicator.stringToProxy(
+                    adapter.createProxy(Util.stringToIdentity("suscriptor" + i)).toString()));
+        }
+        callbacks[0].ice_ping();
+
+        byte[] data = new byte[audioBytes];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        msg = new Message("alice", GROUP, audioBytes > 0 ? "[Nota de voz]" : "hola a todos",
+                System.currentTimeMillis(), true, audioBytes > 0 ? "audio" : "text", data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        communicator.destroy();
+        server.destroy();
+    }
+
+    @Benchmark
+    public void stubMarshal(Blackhole bh) {
+        for (int i = 0; i < subscribers; i++) {
+            // Lo que hace el stub de onGroupMessage en cada invocación
+            OutputStream out = new OutputStream(communicator, OutgoingMessage.ENCODING);
+            out.startEncapsulation(OutgoingMessage.ENCODING, FormatType.DefaultFormat);
+            Message.ice_write(out, msg);
+            out.writeString(GROUP);
+            out.endEncapsulation();
+            bh.consume(out);
+        }
+    }
+
+    @Benchmark
+    public void marshalOnceMarshal(Blackhole bh) {
+        OutgoingMessage outgoing = new OutgoingMessage(msg, GROUP);
+        for (int i = 0; i < subscribers; i++) {
+            // Lo que hace OutgoingMessage.sendTo en cada invocación: copiar los bytes
+            OutputStream out = new OutputStream(communicator, OutgoingMessage.ENCODING);
+            out.startEncapsulation(OutgoingMessage.ENCODING, FormatType.DefaultFormat);
+            out.writeBlob(outgoing.body(communicator));
+            out.writeString(GROUP);
+            out.endEncapsulation();
+            bh.consume(out);
+        }
+    }
+
+    @Benchmark
+    public void stubFanout() {
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            sent[i] = callbacks[i].onGroupMessageAsync(msg, GROUP);
+        }
+        CompletableFuture.allOf(sent).join();
+    }
+
+    @Benchmark
+    public void marshalOnceFanout() {
+        OutgoingMessage outgoing = new OutgoingMessage(msg, GROUP);
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            sent[i] = outgoing.sendTo(callbacks[i]);
+        }
+        CompletableFuture.allOf(sent).join();
+    }
+
+    // Serializa una vez, pero ice_invoke no reutiliza los buffers que Ice guarda por proxy
+    @Benchmark
+    public void iceInvokeFanout() {
+        OutputStream out = new OutputStream(communicator, OutgoingMessage.ENCODING);
+        out.startEncapsulation(OutgoingMessage.ENCODING, FormatType.DefaultFormat);
+        Message.ice_write(out, msg);
+        out.writeString(GROUP);
+        out.endEncapsulation();
+        byte[] params = out.finished();
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[subscribers];
+        for (int i = 0; i < subscribers; i++) {
+            sent[i] = callbacks[i].ice_invokeAsync("onGroupMessage", OperationMode.Normal, params);
+        }
+        CompletableFuture.allOf(sent).join();
+    }
+}
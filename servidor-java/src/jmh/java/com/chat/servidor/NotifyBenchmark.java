@@ -0,0 +1,120 @@
+package com.chat.servidor;
+
+import Chat.Delivery;
+import Chat.Message;
+import Chat.MessageCallback;
+import Chat.MessageCallbackPrx;
+import com.zeroc.Ice.Communicator;
+import com.zeroc.Ice.Current;
+import com.zeroc.Ice.ObjectAdapter;
+import com.zeroc.Ice.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code notifyMessage} de un mensaje de grupo a {@code subscribers} miembros
+ * suscritos, hasta que todas las entregas llegan. Los callbacks son servants
+ * del mismo proceso (invocación colocada de Ice, sin red), así que se mide el
+ * trabajo del servidor: agrupar destinatarios, encolar en cada
+ * {@link Subscriber} y serializar.
+ *
+ * En {@code separate} cada usuario tiene su callback, como los clientes Ice
+ * directos; en {@code shared} todos comparten uno, como los usuarios del
+ * proxy HTTP, y el mensaje sale una vez con la lista de destinatarios.
+ *
+ * Uso: {@code ./gradlew jmh -PjmhArgs="Notify"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NotifyBenchmark {
+
+    private static final String GROUP = "grupo";
+
+    @Param({"10", "1000"})
+    public int subscribers;
+
+    @Param({"separate", "shared"})
+    public String callbacks;
+
+    private Communicator communicator;
+    private IceChatServer.ChatServiceI service;
+    private final LongAdder delivered = new LongAdder();
+    private long expected;
+    private Message msg;
+
+    @Setup
+    public void setUp() throws Exception {
+        System.setProperty("chat.persistence.mode", "none");
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        System.setProperty("chat.log.level", "WARN");
+        SendMessageBenchmark.deleteDirectory(Paths.get("data"));
+        HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+        service = new IceChatServer.ChatServiceI();
+
+        communicator = Util.initialize();
+        // Ice despacha colocado a los proxies de un adaptador propio: el puerto no se usa
+        ObjectAdapter adapter = communicator.createObjectAdapterWithEndpoints("Callbacks", "tcp -h 127.0.0.1 -p 0");
+        adapter.addDefaultServant(new MessageCallback() {
+            @Override
+            public void onMessage(Message msg, Current current) {
+                delivered.increment();
+            }
+
+            @Override
+            public void onGroupMessage(Message msg, String groupName, Current current) {
+                delivered.increment();
+            }
+
+            @Override
+            public void onMessages(Message[] msgs, Current current) {
+                delivered.add(msgs.length);
+            }
+
+            @Override
+            public void deliver(Message msg, String[] recipients, Current current) {
+                delivered.add(recipients.length);
+            }
+
+            @Override
+            public void deliverBatch(Delivery[] deliveries, Current current) {
+                for (Delivery delivery : deliveries) {
+                    delivered.add(delivery.recipients.length);
+                }
+            }
+        }, "");
+        adapter.activate();
+
+        service.createGroupAsync(GROUP, null).toCompletableFuture().join();
+        boolean shared = "shared".equals(callbacks);
+        for (int i = 0; i < subscribers; i++) {
+            MessageCallbackPrx callback = MessageCallbackPrx.uncheckedCast(
+                    adapter.createProxy(Util.stringToIdentity(shared ? "proxy-http" : "suscriptor" + i)));
+            service.subscribe(callback, "usuario" + i, null);
+            service.joinGroupAsync(GROUP, "usuario" + i, null).toCompletableFuture().join();
+        }
+        msg = new Message("usuario0", GROUP, "hola a todos", System.currentTimeMillis(), true, "text", new byte[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        communicator.destroy();
+        service.shutdown();
+        HistoryManager.close();
+    }
+
+    @Benchmark
+    public void groupFanout() {
+        expected += subscribers;
+        service.notifyMessage(msg, GROUP, true);
+        while (delivered.sum() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+}
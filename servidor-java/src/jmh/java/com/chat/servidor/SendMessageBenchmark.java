@@ -0,0 +1,87 @@
+package com.chat.servidor;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lo que hace el servidor con cada mensaje antes de notificar: armar la clave
+ * del historial y {@code sendMessage} completo (lock de la conversación, índice
+ * en memoria y escritura al log, sin fsync y sin suscriptores).
+ *
+ * Con {@code conversations} se reparte la carga entre más conversaciones, así
+ * se ve el costo de buscar y hacer crecer cada índice.
+ *
+ * Uso: {@code ./gradlew jmh -PjmhArgs="SendMessage"}. El historial se escribe
+ * en {@code build/jmh/data}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SendMessageBenchmark {
+
+    @Param({"1", "1000"})
+    public int conversations;
+
+    private IceChatServer.ChatServiceI service;
+    private String[] from;
+    private String[] to;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        System.setProperty("chat.persistence.mode", "none");
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        System.setProperty("chat.log.level", "WARN");
+        deleteDirectory(Paths.get("data"));
+        HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+        service = new IceChatServer.ChatServiceI();
+
+        from = new String[conversations];
+        to = new String[conversations];
+        for (int i = 0; i < conversations; i++) {
+            // La mitad con el remitente después del destinatario, para las dos ramas de la clave
+            from[i] = (i % 2 == 0 ? "ana" : "zoe") + i;
+            to[i] = "martin" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        HistoryManager.close();
+    }
+
+    @Benchmark
+    public String historyKey() {
+        int i = next();
+        return IceChatServer.ChatServiceI.historyKey(to[i], from[i], false);
+    }
+
+    @Benchmark
+    public void sendMessage() {
+        int i = next();
+        service.sendMessageAsync(from[i], to[i], "hola, ¿cómo va?", false, null).toCompletableFuture().join();
+    }
+
+    private int next() {
+        int i = next;
+        next = i + 1 == conversations ? 0 : i + 1;
+        return i;
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -17,22 +17,27 @@ package Chat;
 
 public interface ChatService extends com.zeroc.Ice.Object
 {
-    void registerUser(String username, com.zeroc.Ice.Current current)
-        throws ChatException;
+    java.util.concurrent.CompletionStage<Void> registerUserAsync(String username, com.zeroc.Ice.Current current);
 
-    void createGroup(String groupName, com.zeroc.Ice.Current current)
-        throws ChatException;
+    java.util.concurrent.CompletionStage<Void> createGroupAsync(String groupName, com.zeroc.Ice.Current current);
 
-    void sendMessage(String from, String to, String content, boolean isGroup, com.zeroc.Ice.Current current)
-        throws ChatException;
+    java.util.concurrent.CompletionStage<Void> joinGroupAsync(String groupName, String username, com.zeroc.Ice.Current current);
+
+    java.util.concurrent.CompletionStage<Void> leaveGroupAsync(String groupName, String username, com.zeroc.Ice.Current current);
 
-    void sendAudio(String from, String to, byte[] data, boolean isGroup, com.zeroc.Ice.Current current)
+    String[] getGroupMembers(String groupName, com.zeroc.Ice.Current current)
         throws ChatException;
 
+    java.util.concurrent.CompletionStage<Void> sendMessageAsync(String from, String to, String content, boolean isGroup, com.zeroc.Ice.Current current);
+
+    java.util.concurrent.CompletionStage<Void> sendAudioAsync(String from, String to, byte[] data, boolean isGroup, com.zeroc.Ice.Current current);
+
     void startCall(String from, String to, boolean isGroup, com.zeroc.Ice.Current current)
         throws ChatException;
 
-    Message[] getHistory(String target, String fromUser, boolean isGroup, com.zeroc.Ice.Current current)
+    java.util.concurrent.CompletionStage<Message[]> getHistoryAsync(String target, String fromUser, boolean isGroup, com.zeroc.Ice.Current current);
+
+    HistoryPage getHistoryPage(String target, String fromUser, boolean isGroup, long cursor, boolean cursorIsTimestamp, HistoryDirection direction, int limit, com.zeroc.Ice.Current current)
         throws ChatException;
 
     String[] getUsers(com.zeroc.Ice.Current current)
@@ -87,8 +92,7 @@ public interface ChatService extends com.zeroc.Ice.Object
         String iceP_username;
         iceP_username = istr.readString();
         inS.endReadParams();
-        obj.registerUser(iceP_username, current);
-        return inS.setResult(inS.writeEmptyParams());
+        return inS.setResultFuture(obj.registerUserAsync(iceP_username, current));
     }
 
     /**
@@ -107,8 +111,72 @@ public interface ChatService extends com.zeroc.Ice.Object
         String iceP_groupName;
         iceP_groupName = istr.readString();
         inS.endReadParams();
-        obj.createGroup(iceP_groupName, current);
-        return inS.setResult(inS.writeEmptyParams());
+        return inS.setResultFuture(obj.createGroupAsync(iceP_groupName, current));
+    }
+
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+     * @throws com.zeroc.Ice.UserException -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_joinGroup(ChatService obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+        throws com.zeroc.Ice.UserException
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        String iceP_groupName;
+        String iceP_username;
+        iceP_groupName = istr.readString();
+        iceP_username = istr.readString();
+        inS.endReadParams();
+        return inS.setResultFuture(obj.joinGroupAsync(iceP_groupName, iceP_username, current));
+    }
+
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+     * @throws com.zeroc.Ice.UserException -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_leaveGroup(ChatService obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+        throws com.zeroc.Ice.UserException
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        String iceP_groupName;
+        String iceP_username;
+        iceP_groupName = istr.readString();
+        iceP_username = istr.readString();
+        inS.endReadParams();
+        return inS.setResultFuture(obj.leaveGroupAsync(iceP_groupName, iceP_username, current));
+    }
+
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+     * @throws com.zeroc.Ice.UserException -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_getGroupMembers(ChatService obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+        throws com.zeroc.Ice.UserException
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        String iceP_groupName;
+        iceP_groupName = istr.readString();
+        inS.endReadParams();
+        String[] ret = obj.getGroupMembers(iceP_groupName, current);
+        com.zeroc.Ice.OutputStream ostr = inS.startWriteParams();
+        ostr.writeStringSeq(ret);
+        inS.endWriteParams(ostr);
+        return inS.setResult(ostr);
     }
 
     /**
@@ -133,8 +201,7 @@ public interface ChatService extends com.zeroc.Ice.Object
         iceP_content = istr.readString();
         iceP_isGroup = istr.readBool();
         inS.endReadParams();
-        obj.sendMessage(iceP_from, iceP_to, iceP_content, iceP_isGroup, current);
-        return inS.setResult(inS.writeEmptyParams());
+        return inS.setResultFuture(obj.sendMessageAsync(iceP_from, iceP_to, iceP_content, iceP_isGroup, current));
     }
 
     /**
@@ -159,8 +226,7 @@ public interface ChatService extends com.zeroc.Ice.Object
         iceP_data = istr.readByteSeq();
         iceP_isGroup = istr.readBool();
         inS.endReadParams();
-        obj.sendAudio(iceP_from, iceP_to, iceP_data, iceP_isGroup, current);
-        return inS.setResult(inS.writeEmptyParams());
+        return inS.setResultFuture(obj.sendAudioAsync(iceP_from, iceP_to, iceP_data, iceP_isGroup, current));
     }
 
     /**
@@ -207,9 +273,43 @@ public interface ChatService extends com.zeroc.Ice.Object
         iceP_fromUser = istr.readString();
         iceP_isGroup = istr.readBool();
         inS.endReadParams();
-        Message[] ret = obj.getHistory(iceP_target, iceP_fromUser, iceP_isGroup, current);
+        return inS.setResultFuture(obj.getHistoryAsync(iceP_target, iceP_fromUser, iceP_isGroup, current), (ostr, ret) ->
+            {
+                MessageSeqHelper.write(ostr, ret);
+            });
+    }
+
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+     * @throws com.zeroc.Ice.UserException -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_getHistoryPage(ChatService obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+        throws com.zeroc.Ice.UserException
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        String iceP_target;
+        String iceP_fromUser;
+        boolean iceP_isGroup;
+        long iceP_cursor;
+        boolean iceP_cursorIsTimestamp;
+        HistoryDirection iceP_direction;
+        int iceP_limit;
+        iceP_target = istr.readString();
+        iceP_fromUser = istr.readString();
+        iceP_isGroup = istr.readBool();
+        iceP_cursor = istr.readLong();
+        iceP_cursorIsTimestamp = istr.readBool();
+        iceP_direction = HistoryDirection.ice_read(istr);
+        iceP_limit = istr.readInt();
+        inS.endReadParams();
+        HistoryPage ret = obj.getHistoryPage(iceP_target, iceP_fromUser, iceP_isGroup, iceP_cursor, iceP_cursorIsTimestamp, iceP_direction, iceP_limit, current);
         com.zeroc.Ice.OutputStream ostr = inS.startWriteParams();
-        MessageSeqHelper.write(ostr, ret);
+        HistoryPage.ice_write(ostr, ret);
         inS.endWriteParams(ostr);
         return inS.setResult(ostr);
     }
@@ -300,13 +400,17 @@ public interface ChatService extends com.zeroc.Ice.Object
     final static String[] _iceOps =
     {
         "createGroup",
+        "getGroupMembers",
         "getGroups",
         "getHistory",
+        "getHistoryPage",
         "getUsers",
         "ice_id",
         "ice_ids",
         "ice_isA",
         "ice_ping",
+        "joinGroup",
+        "leaveGroup",
         "registerUser",
         "sendAudio",
         "sendMessage",
@@ -334,53 +438,69 @@ public interface ChatService extends com.zeroc.Ice.Object
             }
             case 1:
             {
-                return _iceD_getGroups(this, in, current);
+                return _iceD_getGroupMembers(this, in, current);
             }
             case 2:
             {
-                return _iceD_getHistory(this, in, current);
+                return _iceD_getGroups(this, in, current);
             }
             case 3:
             {
-                return _iceD_getUsers(this, in, current);
+                return _iceD_getHistory(this, in, current);
             }
             case 4:
             {
-                return com.zeroc.Ice.Object._iceD_ice_id(this, in, current);
+                return _iceD_getHistoryPage(this, in, current);
             }
             case 5:
             {
-                return com.zeroc.Ice.Object._iceD_ice_ids(this, in, current);
+                return _iceD_getUsers(this, in, current);
             }
             case 6:
             {
-                return com.zeroc.Ice.Object._iceD_ice_isA(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_id(this, in, current);
             }
             case 7:
             {
-                return com.zeroc.Ice.Object._iceD_ice_ping(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_ids(this, in, current);
             }
             case 8:
             {
-                return _iceD_registerUser(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_isA(this, in, current);
             }
             case 9:
             {
-                return _iceD_sendAudio(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_ping(this, in, current);
             }
             case 10:
             {
-                return _iceD_sendMessage(this, in, current);
+                return _iceD_joinGroup(this, in, current);
             }
             case 11:
             {
-                return _iceD_startCall(this, in, current);
+                return _iceD_leaveGroup(this, in, current);
             }
             case 12:
             {
-                return _iceD_subscribe(this, in, current);
+                return _iceD_registerUser(this, in, current);
             }
             case 13:
+            {
+                return _iceD_sendAudio(this, in, current);
+            }
+            case 14:
+            {
+                return _iceD_sendMessage(this, in, current);
+            }
+            case 15:
+            {
+                return _iceD_startCall(this, in, current);
+            }
+            case 16:
+            {
+                return _iceD_subscribe(this, in, current);
+            }
+            case 17:
             {
                 return _iceD_unsubscribe(this, in, current);
             }
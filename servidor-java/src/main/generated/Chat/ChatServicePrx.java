@@ -127,6 +127,179 @@ public interface ChatServicePrx extends com.zeroc.Ice.ObjectPrx
         ChatException.class
     };
 
+    default void joinGroup(String groupName, String username)
+        throws ChatException
+    {
+        joinGroup(groupName, username, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default void joinGroup(String groupName, String username, java.util.Map<String, String> context)
+        throws ChatException
+    {
+        try
+        {
+            _iceI_joinGroupAsync(groupName, username, context, true).waitForResponseOrUserEx();
+        }
+        catch(ChatException ex)
+        {
+            throw ex;
+        }
+        catch(com.zeroc.Ice.UserException ex)
+        {
+            throw new com.zeroc.Ice.UnknownUserException(ex.ice_id(), ex);
+        }
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> joinGroupAsync(String groupName, String username)
+    {
+        return _iceI_joinGroupAsync(groupName, username, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> joinGroupAsync(String groupName, String username, java.util.Map<String, String> context)
+    {
+        return _iceI_joinGroupAsync(groupName, username, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_groupName -
+     * @param iceP_username -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<Void> _iceI_joinGroupAsync(String iceP_groupName, String iceP_username, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<Void> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "joinGroup", null, sync, _iceE_joinGroup);
+        f.invoke(true, context, null, ostr -> {
+                     ostr.writeString(iceP_groupName);
+                     ostr.writeString(iceP_username);
+                 }, null);
+        return f;
+    }
+
+    /** @hidden */
+    static final Class<?>[] _iceE_joinGroup =
+    {
+        ChatException.class
+    };
+
+    default void leaveGroup(String groupName, String username)
+        throws ChatException
+    {
+        leaveGroup(groupName, username, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default void leaveGroup(String groupName, String username, java.util.Map<String, String> context)
+        throws ChatException
+    {
+        try
+        {
+            _iceI_leaveGroupAsync(groupName, username, context, true).waitForResponseOrUserEx();
+        }
+        catch(ChatException ex)
+        {
+            throw ex;
+        }
+        catch(com.zeroc.Ice.UserException ex)
+        {
+            throw new com.zeroc.Ice.UnknownUserException(ex.ice_id(), ex);
+        }
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> leaveGroupAsync(String groupName, String username)
+    {
+        return _iceI_leaveGroupAsync(groupName, username, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> leaveGroupAsync(String groupName, String username, java.util.Map<String, String> context)
+    {
+        return _iceI_leaveGroupAsync(groupName, username, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_groupName -
+     * @param iceP_username -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<Void> _iceI_leaveGroupAsync(String iceP_groupName, String iceP_username, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<Void> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "leaveGroup", null, sync, _iceE_leaveGroup);
+        f.invoke(true, context, null, ostr -> {
+                     ostr.writeString(iceP_groupName);
+                     ostr.writeString(iceP_username);
+                 }, null);
+        return f;
+    }
+
+    /** @hidden */
+    static final Class<?>[] _iceE_leaveGroup =
+    {
+        ChatException.class
+    };
+
+    default String[] getGroupMembers(String groupName)
+        throws ChatException
+    {
+        return getGroupMembers(groupName, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default String[] getGroupMembers(String groupName, java.util.Map<String, String> context)
+        throws ChatException
+    {
+        try
+        {
+            return _iceI_getGroupMembersAsync(groupName, context, true).waitForResponseOrUserEx();
+        }
+        catch(ChatException ex)
+        {
+            throw ex;
+        }
+        catch(com.zeroc.Ice.UserException ex)
+        {
+            throw new com.zeroc.Ice.UnknownUserException(ex.ice_id(), ex);
+        }
+    }
+
+    default java.util.concurrent.CompletableFuture<String[]> getGroupMembersAsync(String groupName)
+    {
+        return _iceI_getGroupMembersAsync(groupName, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<String[]> getGroupMembersAsync(String groupName, java.util.Map<String, String> context)
+    {
+        return _iceI_getGroupMembersAsync(groupName, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_groupName -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<String[]> _iceI_getGroupMembersAsync(String iceP_groupName, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<String[]> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "getGroupMembers", null, sync, _iceE_getGroupMembers);
+        f.invoke(true, context, null, ostr -> {
+                     ostr.writeString(iceP_groupName);
+                 }, istr -> {
+                     String[] ret;
+                     ret = istr.readStringSeq();
+                     return ret;
+                 });
+        return f;
+    }
+
+    /** @hidden */
+    static final Class<?>[] _iceE_getGroupMembers =
+    {
+        ChatException.class
+    };
+
     default void sendMessage(String from, String to, String content, boolean isGroup)
         throws ChatException
     {
@@ -371,6 +544,77 @@ public interface ChatServicePrx extends com.zeroc.Ice.ObjectPrx
         ChatException.class
     };
 
+    default HistoryPage getHistoryPage(String target, String fromUser, boolean isGroup, long cursor, boolean cursorIsTimestamp, HistoryDirection direction, int limit)
+        throws ChatException
+    {
+        return getHistoryPage(target, fromUser, isGroup, cursor, cursorIsTimestamp, direction, limit, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default HistoryPage getHistoryPage(String target, String fromUser, boolean isGroup, long cursor, boolean cursorIsTimestamp, HistoryDirection direction, int limit, java.util.Map<String, String> context)
+        throws ChatException
+    {
+        try
+        {
+            return _iceI_getHistoryPageAsync(target, fromUser, isGroup, cursor, cursorIsTimestamp, direction, limit, context, true).waitForResponseOrUserEx();
+        }
+        catch(ChatException ex)
+        {
+            throw ex;
+        }
+        catch(com.zeroc.Ice.UserException ex)
+        {
+            throw new com.zeroc.Ice.UnknownUserException(ex.ice_id(), ex);
+        }
+    }
+
+    default java.util.concurrent.CompletableFuture<HistoryPage> getHistoryPageAsync(String target, String fromUser, boolean isGroup, long cursor, boolean cursorIsTimestamp, HistoryDirection direction, int limit)
+    {
+        return _iceI_getHistoryPageAsync(target, fromUser, isGroup, cursor, cursorIsTimestamp, direction, limit, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<HistoryPage> getHistoryPageAsync(String target, String fromUser, boolean isGroup, long cursor, boolean cursorIsTimestamp, HistoryDirection direction, int limit, java.util.Map<String, String> context)
+    {
+        return _iceI_getHistoryPageAsync(target, fromUser, isGroup, cursor, cursorIsTimestamp, direction, limit, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_target -
+     * @param iceP_fromUser -
+     * @param iceP_isGroup -
+     * @param iceP_cursor -
+     * @param iceP_cursorIsTimestamp -
+     * @param iceP_direction -
+     * @param iceP_limit -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<HistoryPage> _iceI_getHistoryPageAsync(String iceP_target, String iceP_fromUser, boolean iceP_isGroup, long iceP_cursor, boolean iceP_cursorIsTimestamp, HistoryDirection iceP_direction, int iceP_limit, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<HistoryPage> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "getHistoryPage", null, sync, _iceE_getHistoryPage);
+        f.invoke(true, context, null, ostr -> {
+                     ostr.writeString(iceP_target);
+                     ostr.writeString(iceP_fromUser);
+                     ostr.writeBool(iceP_isGroup);
+                     ostr.writeLong(iceP_cursor);
+                     ostr.writeBool(iceP_cursorIsTimestamp);
+                     HistoryDirection.ice_write(ostr, iceP_direction);
+                     ostr.writeInt(iceP_limit);
+                 }, istr -> {
+                     HistoryPage ret;
+                     ret = HistoryPage.ice_read(istr);
+                     return ret;
+                 });
+        return f;
+    }
+
+    /** @hidden */
+    static final Class<?>[] _iceE_getHistoryPage =
+    {
+        ChatException.class
+    };
+
     default String[] getUsers()
         throws ChatException
     {
@@ -0,0 +1,157 @@
+//
+// Copyright (c) ZeroC, Inc. All rights reserved.
+//
+//
+// Ice version 3.7.10
+//
+// <auto-generated>
+//
+// Generated from file `Chat.ice'
+//
+// Warning: do not edit this file.
+//
+// </auto-generated>
+//
+
+package Chat;
+
+public class Delivery implements java.lang.Cloneable,
+                                 java.io.Serializable
+{
+    public Message msg;
+
+    public String[] recipients;
+
+    public Delivery()
+    {
+        this.msg = new Message();
+    }
+
+    public Delivery(Message msg, String[] recipients)
+    {
+        this.msg = msg;
+        this.recipients = recipients;
+    }
+
+    public boolean equals(java.lang.Object rhs)
+    {
+        if(this == rhs)
+        {
+            return true;
+        }
+        Delivery r = null;
+        if(rhs instanceof Delivery)
+        {
+            r = (Delivery)rhs;
+        }
+
+        if(r != null)
+        {
+            if(this.msg != r.msg)
+            {
+                if(this.msg == null || r.msg == null || !this.msg.equals(r.msg))
+                {
+                    return false;
+                }
+            }
+            if(!java.util.Arrays.equals(this.recipients, r.recipients))
+            {
+                return false;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    public int hashCode()
+    {
+        int h_ = 5381;
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, "::Chat::Delivery");
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, msg);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, recipients);
+        return h_;
+    }
+
+    public Delivery clone()
+    {
+        Delivery c = null;
+        try
+        {
+            c = (Delivery)super.clone();
+        }
+        catch(CloneNotSupportedException ex)
+        {
+            assert false; // impossible
+        }
+        return c;
+    }
+
+    public void ice_writeMembers(com.zeroc.Ice.OutputStream ostr)
+    {
+        Message.ice_write(ostr, this.msg);
+        ostr.writeStringSeq(this.recipients);
+    }
+
+    public void ice_readMembers(com.zeroc.Ice.InputStream istr)
+    {
+        this.msg = Message.ice_read(istr);
+        this.recipients = istr.readStringSeq();
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, Delivery v)
+    {
+        if(v == null)
+        {
+            _nullMarshalValue.ice_writeMembers(ostr);
+        }
+        else
+        {
+            v.ice_writeMembers(ostr);
+        }
+    }
+
+    static public Delivery ice_read(com.zeroc.Ice.InputStream istr)
+    {
+        Delivery v = new Delivery();
+        v.ice_readMembers(istr);
+        return v;
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, java.util.Optional<Delivery> v)
+    {
+        if(v != null && v.isPresent())
+        {
+            ice_write(ostr, tag, v.get());
+        }
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, Delivery v)
+    {
+        if(ostr.writeOptional(tag, com.zeroc.Ice.OptionalFormat.FSize))
+        {
+            int pos = ostr.startSize();
+            ice_write(ostr, v);
+            ostr.endSize(pos);
+        }
+    }
+
+    static public java.util.Optional<Delivery> ice_read(com.zeroc.Ice.InputStream istr, int tag)
+    {
+        if(istr.readOptional(tag, com.zeroc.Ice.OptionalFormat.FSize))
+        {
+            istr.skip(4);
+            return java.util.Optional.of(Delivery.ice_read(istr));
+        }
+        else
+        {
+            return java.util.Optional.empty();
+        }
+    }
+
+    private static final Delivery _nullMarshalValue = new Delivery();
+
+    /** @hidden */
+    public static final long serialVersionUID = 1283746590L;
+}
@@ -0,0 +1,107 @@
+//
+// Copyright (c) ZeroC, Inc. All rights reserved.
+//
+//
+// Ice version 3.7.10
+//
+// <auto-generated>
+//
+// Generated from file `Chat.ice'
+//
+// Warning: do not edit this file.
+//
+// </auto-generated>
+//
+
+package Chat;
+
+public enum HistoryDirection implements java.io.Serializable
+{
+    Older(0),
+    Newer(1);
+
+    public int value()
+    {
+        return _value;
+    }
+
+    public static HistoryDirection valueOf(int v)
+    {
+        switch(v)
+        {
+        case 0:
+            return Older;
+        case 1:
+            return Newer;
+        }
+        return null;
+    }
+
+    private HistoryDirection(int v)
+    {
+        _value = v;
+    }
+
+    public void ice_write(com.zeroc.Ice.OutputStream ostr)
+    {
+        ostr.writeEnum(_value, 1);
+    }
+
+    public static void ice_write(com.zeroc.Ice.OutputStream ostr, HistoryDirection v)
+    {
+        if(v == null)
+        {
+            ostr.writeEnum(Chat.HistoryDirection.Older.value(), 1);
+        }
+        else
+        {
+            ostr.writeEnum(v.value(), 1);
+        }
+    }
+
+    public static HistoryDirection ice_read(com.zeroc.Ice.InputStream istr)
+    {
+        int v = istr.readEnum(1);
+        return validate(v);
+    }
+
+    public static void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, java.util.Optional<HistoryDirection> v)
+    {
+        if(v != null && v.isPresent())
+        {
+            ice_write(ostr, tag, v.get());
+        }
+    }
+
+    public static void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, HistoryDirection v)
+    {
+        if(ostr.writeOptional(tag, com.zeroc.Ice.OptionalFormat.Size))
+        {
+            ice_write(ostr, v);
+        }
+    }
+
+    public static java.util.Optional<HistoryDirection> ice_read(com.zeroc.Ice.InputStream istr, int tag)
+    {
+        if(istr.readOptional(tag, com.zeroc.Ice.OptionalFormat.Size))
+        {
+            return java.util.Optional.of(ice_read(istr));
+        }
+        else
+        {
+            return java.util.Optional.empty();
+        }
+    }
+
+    private static HistoryDirection validate(int v)
+    {
+        final HistoryDirection e = valueOf(v);
+        if(e == null)
+        {
+            throw new com.zeroc.Ice.MarshalException("enumerator value " + v + " is out of range");
+        }
+        return e;
+    }
+
+    private final int _value;
+}
@@ -0,0 +1,163 @@
+//
+// Copyright (c) ZeroC, Inc. All rights reserved.
+//
+//
+// Ice version 3.7.10
+//
+// <auto-generated>
+//
+// Generated from file `Chat.ice'
+//
+// Warning: do not edit this file.
+//
+// </auto-generated>
+//
+
+package Chat;
+
+public class HistoryPage implements java.lang.Cloneable,
+                                    java.io.Serializable
+{
+    public Message[] messages;
+
+    public long nextCursor;
+
+    public boolean hasMore;
+
+    public HistoryPage()
+    {
+    }
+
+    public HistoryPage(Message[] messages, long nextCursor, boolean hasMore)
+    {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public boolean equals(java.lang.Object rhs)
+    {
+        if(this == rhs)
+        {
+            return true;
+        }
+        HistoryPage r = null;
+        if(rhs instanceof HistoryPage)
+        {
+            r = (HistoryPage)rhs;
+        }
+
+        if(r != null)
+        {
+            if(!java.util.Arrays.equals(this.messages, r.messages))
+            {
+                return false;
+            }
+            if(this.nextCursor != r.nextCursor)
+            {
+                return false;
+            }
+            if(this.hasMore != r.hasMore)
+            {
+                return false;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    public int hashCode()
+    {
+        int h_ = 5381;
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, "::Chat::HistoryPage");
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, messages);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, nextCursor);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, hasMore);
+        return h_;
+    }
+
+    public HistoryPage clone()
+    {
+        HistoryPage c = null;
+        try
+        {
+            c = (HistoryPage)super.clone();
+        }
+        catch(CloneNotSupportedException ex)
+        {
+            assert false; // impossible
+        }
+        return c;
+    }
+
+    public void ice_writeMembers(com.zeroc.Ice.OutputStream ostr)
+    {
+        MessageSeqHelper.write(ostr, this.messages);
+        ostr.writeLong(this.nextCursor);
+        ostr.writeBool(this.hasMore);
+    }
+
+    public void ice_readMembers(com.zeroc.Ice.InputStream istr)
+    {
+        this.messages = MessageSeqHelper.read(istr);
+        this.nextCursor = istr.readLong();
+        this.hasMore = istr.readBool();
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, HistoryPage v)
+    {
+        if(v == null)
+        {
+            _nullMarshalValue.ice_writeMembers(ostr);
+        }
+        else
+        {
+            v.ice_writeMembers(ostr);
+        }
+    }
+
+    static public HistoryPage ice_read(com.zeroc.Ice.InputStream istr)
+    {
+        HistoryPage v = new HistoryPage();
+        v.ice_readMembers(istr);
+        return v;
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, java.util.Optional<HistoryPage> v)
+    {
+        if(v != null && v.isPresent())
+        {
+            ice_write(ostr, tag, v.get());
+        }
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, HistoryPage v)
+    {
+        if(ostr.writeOptional(tag, com.zeroc.Ice.OptionalFormat.FSize))
+        {
+            int pos = ostr.startSize();
+            ice_write(ostr, v);
+            ostr.endSize(pos);
+        }
+    }
+
+    static public java.util.Optional<HistoryPage> ice_read(com.zeroc.Ice.InputStream istr, int tag)
+    {
+        if(istr.readOptional(tag, com.zeroc.Ice.OptionalFormat.FSize))
+        {
+            istr.skip(4);
+            return java.util.Optional.of(HistoryPage.ice_read(istr));
+        }
+        else
+        {
+            return java.util.Optional.empty();
+        }
+    }
+
+    private static final HistoryPage _nullMarshalValue = new HistoryPage();
+
+    /** @hidden */
+    public static final long serialVersionUID = -1904227391L;
+}
@@ -21,6 +21,12 @@ public interface MessageCallback extends com.zeroc.Ice.Object
 
     void onGroupMessage(Message msg, String groupName, com.zeroc.Ice.Current current);
 
+    void onMessages(Message[] msgs, com.zeroc.Ice.Current current);
+
+    void deliver(Message msg, String[] recipients, com.zeroc.Ice.Current current);
+
+    void deliverBatch(Delivery[] deliveries, com.zeroc.Ice.Current current);
+
     /** @hidden */
     static final String[] _iceIds =
     {
@@ -83,15 +89,74 @@ public interface MessageCallback extends com.zeroc.Ice.Object
         return inS.setResult(inS.writeEmptyParams());
     }
 
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_onMessages(MessageCallback obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        Message[] iceP_msgs;
+        iceP_msgs = MessageSeqHelper.read(istr);
+        inS.endReadParams();
+        obj.onMessages(iceP_msgs, current);
+        return inS.setResult(inS.writeEmptyParams());
+    }
+
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_deliver(MessageCallback obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        Message iceP_msg;
+        String[] iceP_recipients;
+        iceP_msg = Message.ice_read(istr);
+        iceP_recipients = istr.readStringSeq();
+        inS.endReadParams();
+        obj.deliver(iceP_msg, iceP_recipients, current);
+        return inS.setResult(inS.writeEmptyParams());
+    }
+
+    /**
+     * @hidden
+     * @param obj -
+     * @param inS -
+     * @param current -
+     * @return -
+    **/
+    static java.util.concurrent.CompletionStage<com.zeroc.Ice.OutputStream> _iceD_deliverBatch(MessageCallback obj, final com.zeroc.IceInternal.Incoming inS, com.zeroc.Ice.Current current)
+    {
+        com.zeroc.Ice.Object._iceCheckMode(null, current.mode);
+        com.zeroc.Ice.InputStream istr = inS.startReadParams();
+        Delivery[] iceP_deliveries;
+        iceP_deliveries = DeliverySeqHelper.read(istr);
+        inS.endReadParams();
+        obj.deliverBatch(iceP_deliveries, current);
+        return inS.setResult(inS.writeEmptyParams());
+    }
+
     /** @hidden */
     final static String[] _iceOps =
     {
+        "deliver",
+        "deliverBatch",
         "ice_id",
         "ice_ids",
         "ice_isA",
         "ice_ping",
         "onGroupMessage",
-        "onMessage"
+        "onMessage",
+        "onMessages"
     };
 
     /** @hidden */
@@ -109,28 +174,40 @@ public interface MessageCallback extends com.zeroc.Ice.Object
         {
             case 0:
             {
-                return com.zeroc.Ice.Object._iceD_ice_id(this, in, current);
+                return _iceD_deliver(this, in, current);
             }
             case 1:
             {
-                return com.zeroc.Ice.Object._iceD_ice_ids(this, in, current);
+                return _iceD_deliverBatch(this, in, current);
             }
             case 2:
             {
-                return com.zeroc.Ice.Object._iceD_ice_isA(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_id(this, in, current);
             }
             case 3:
             {
-                return com.zeroc.Ice.Object._iceD_ice_ping(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_ids(this, in, current);
             }
             case 4:
             {
-                return _iceD_onGroupMessage(this, in, current);
+                return com.zeroc.Ice.Object._iceD_ice_isA(this, in, current);
             }
             case 5:
+            {
+                return com.zeroc.Ice.Object._iceD_ice_ping(this, in, current);
+            }
+            case 6:
+            {
+                return _iceD_onGroupMessage(this, in, current);
+            }
+            case 7:
             {
                 return _iceD_onMessage(this, in, current);
             }
+            case 8:
+            {
+                return _iceD_onMessages(this, in, current);
+            }
         }
 
         assert(false);
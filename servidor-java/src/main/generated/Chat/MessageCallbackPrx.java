@@ -91,6 +91,116 @@ public interface MessageCallbackPrx extends com.zeroc.Ice.ObjectPrx
         return f;
     }
 
+    default void onMessages(Message[] msgs)
+    {
+        onMessages(msgs, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default void onMessages(Message[] msgs, java.util.Map<String, String> context)
+    {
+        _iceI_onMessagesAsync(msgs, context, true).waitForResponse();
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> onMessagesAsync(Message[] msgs)
+    {
+        return _iceI_onMessagesAsync(msgs, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> onMessagesAsync(Message[] msgs, java.util.Map<String, String> context)
+    {
+        return _iceI_onMessagesAsync(msgs, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_msgs -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<Void> _iceI_onMessagesAsync(Message[] iceP_msgs, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<Void> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "onMessages", null, sync, null);
+        f.invoke(false, context, null, ostr -> {
+                     MessageSeqHelper.write(ostr, iceP_msgs);
+                 }, null);
+        return f;
+    }
+
+    default void deliver(Message msg, String[] recipients)
+    {
+        deliver(msg, recipients, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default void deliver(Message msg, String[] recipients, java.util.Map<String, String> context)
+    {
+        _iceI_deliverAsync(msg, recipients, context, true).waitForResponse();
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> deliverAsync(Message msg, String[] recipients)
+    {
+        return _iceI_deliverAsync(msg, recipients, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> deliverAsync(Message msg, String[] recipients, java.util.Map<String, String> context)
+    {
+        return _iceI_deliverAsync(msg, recipients, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_msg -
+     * @param iceP_recipients -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<Void> _iceI_deliverAsync(Message iceP_msg, String[] iceP_recipients, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<Void> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "deliver", null, sync, null);
+        f.invoke(false, context, null, ostr -> {
+                     Message.ice_write(ostr, iceP_msg);
+                     ostr.writeStringSeq(iceP_recipients);
+                 }, null);
+        return f;
+    }
+
+    default void deliverBatch(Delivery[] deliveries)
+    {
+        deliverBatch(deliveries, com.zeroc.Ice.ObjectPrx.noExplicitContext);
+    }
+
+    default void deliverBatch(Delivery[] deliveries, java.util.Map<String, String> context)
+    {
+        _iceI_deliverBatchAsync(deliveries, context, true).waitForResponse();
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> deliverBatchAsync(Delivery[] deliveries)
+    {
+        return _iceI_deliverBatchAsync(deliveries, com.zeroc.Ice.ObjectPrx.noExplicitContext, false);
+    }
+
+    default java.util.concurrent.CompletableFuture<Void> deliverBatchAsync(Delivery[] deliveries, java.util.Map<String, String> context)
+    {
+        return _iceI_deliverBatchAsync(deliveries, context, false);
+    }
+
+    /**
+     * @hidden
+     * @param iceP_deliveries -
+     * @param context -
+     * @param sync -
+     * @return -
+     **/
+    default com.zeroc.IceInternal.OutgoingAsync<Void> _iceI_deliverBatchAsync(Delivery[] iceP_deliveries, java.util.Map<String, String> context, boolean sync)
+    {
+        com.zeroc.IceInternal.OutgoingAsync<Void> f = new com.zeroc.IceInternal.OutgoingAsync<>(this, "deliverBatch", null, sync, null);
+        f.invoke(false, context, null, ostr -> {
+                     DeliverySeqHelper.write(ostr, iceP_deliveries);
+                 }, null);
+        return f;
+    }
+
     /**
      * Contacts the remote server to verify that the object implements this type.
      * Raises a local exception if a communication error occurs.
@@ -0,0 +1,231 @@
+//
+// Copyright (c) ZeroC, Inc. All rights reserved.
+//
+//
+// Ice version 3.7.10
+//
+// <auto-generated>
+//
+// Generated from file `Chat.ice'
+//
+// Warning: do not edit this file.
+//
+// </auto-generated>
+//
+
+package Chat;
+
+public class OperationStats implements java.lang.Cloneable,
+                                       java.io.Serializable
+{
+    public String name;
+
+    public String label;
+
+    public long count;
+
+    public long errors;
+
+    public double ratePerSecond;
+
+    public long p50Micros;
+
+    public long p99Micros;
+
+    public long p999Micros;
+
+    public long maxMicros;
+
+    public OperationStats()
+    {
+        this.name = "";
+        this.label = "";
+    }
+
+    public OperationStats(String name, String label, long count, long errors, double ratePerSecond, long p50Micros, long p99Micros, long p999Micros, long maxMicros)
+    {
+        this.name = name;
+        this.label = label;
+        this.count = count;
+        this.errors = errors;
+        this.ratePerSecond = ratePerSecond;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public boolean equals(java.lang.Object rhs)
+    {
+        if(this == rhs)
+        {
+            return true;
+        }
+        OperationStats r = null;
+        if(rhs instanceof OperationStats)
+        {
+            r = (OperationStats)rhs;
+        }
+
+        if(r != null)
+        {
+            if(this.name != r.name)
+            {
+                if(this.name == null || r.name == null || !this.name.equals(r.name))
+                {
+                    return false;
+                }
+            }
+            if(this.label != r.label)
+            {
+                if(this.label == null || r.label == null || !this.label.equals(r.label))
+                {
+                    return false;
+                }
+            }
+            if(this.count != r.count)
+            {
+                return false;
+            }
+            if(this.errors != r.errors)
+            {
+                return false;
+            }
+            if(this.ratePerSecond != r.ratePerSecond)
+            {
+                return false;
+            }
+            if(this.p50Micros != r.p50Micros)
+            {
+                return false;
+            }
+            if(this.p99Micros != r.p99Micros)
+            {
+                return false;
+            }
+            if(this.p999Micros != r.p999Micros)
+            {
+                return false;
+            }
+            if(this.maxMicros != r.maxMicros)
+            {
+                return false;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    public int hashCode()
+    {
+        int h_ = 5381;
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, "::Chat::OperationStats");
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, name);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, label);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, count);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, errors);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, ratePerSecond);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, p50Micros);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, p99Micros);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, p999Micros);
+        h_ = com.zeroc.IceInternal.HashUtil.hashAdd(h_, maxMicros);
+        return h_;
+    }
+
+    public OperationStats clone()
+    {
+        OperationStats c = null;
+        try
+        {
+            c = (OperationStats)super.clone();
+        }
+        catch(CloneNotSupportedException ex)
+        {
+            assert false; // impossible
+        }
+        return c;
+    }
+
+    public void ice_writeMembers(com.zeroc.Ice.OutputStream ostr)
+    {
+        ostr.writeString(this.name);
+        ostr.writeString(this.label);
+        ostr.writeLong(this.count);
+        ostr.writeLong(this.errors);
+        ostr.writeDouble(this.ratePerSecond);
+        ostr.writeLong(this.p50Micros);
+        ostr.writeLong(this.p99Micros);
+        ostr.writeLong(this.p999Micros);
+        ostr.writeLong(this.maxMicros);
+    }
+
+    public void ice_readMembers(com.zeroc.Ice.InputStream istr)
+    {
+        this.name = istr.readString();
+        this.label = istr.readString();
+        this.count = istr.readLong();
+        this.errors = istr.readLong();
+        this.ratePerSecond = istr.readDouble();
+        this.p50Micros = istr.readLong();
+        this.p99Micros = istr.readLong();
+        this.p999Micros = istr.readLong();
+        this.maxMicros = istr.readLong();
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, OperationStats v)
+    {
+        if(v == null)
+        {
+            _nullMarshalValue.ice_writeMembers(ostr);
+        }
+        else
+        {
+            v.ice_writeMembers(ostr);
+        }
+    }
+
+    static public OperationStats ice_read(com.zeroc.Ice.InputStream istr)
+    {
+        OperationStats v = new OperationStats();
+        v.ice_readMembers(istr);
+        return v;
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, java.util.Optional<OperationStats> v)
+    {
+        if(v != null && v.isPresent())
+        {
+            ice_write(ostr, tag, v.get());
+        }
+    }
+
+    static public void ice_write(com.zeroc.Ice.OutputStream ostr, int tag, OperationStats v)
+    {
+        if(ostr.writeOptional(tag, com.zeroc.Ice.OptionalFormat.FSize))
+        {
+            int pos = ostr.startSize();
+            ice_write(ostr, v);
+            ostr.endSize(pos);
+        }
+    }
+
+    static public java.util.Optional<OperationStats> ice_read(com.zeroc.Ice.InputStream istr, int tag)
+    {
+        if(istr.readOptional(tag, com.zeroc.Ice.OptionalFormat.FSize))
+        {
+            istr.skip(4);
+            return java.util.Optional.of(OperationStats.ice_read(istr));
+        }
+        else
+        {
+            return java.util.Optional.empty();
+        }
+    }
+
+    private static final OperationStats _nullMarshalValue = new OperationStats();
+
+    /** @hidden */
+    public static final long serialVersionUID = 1749318826L;
+}
@@ -0,0 +1,23 @@
+//
+// Copyright (c) ZeroC, Inc. All rights reserved.
+//
+//
+// Ice version 3.7.10
+//
+// <auto-generated>
+//
+// Generated from file `Chat.ice'
+//
+// Warning: do not edit this file.
+//
+// </auto-generated>
+//
+
+package Chat;
+
+/** @hidden */
+public class _ChatMetricsPrxI extends com.zeroc.Ice._ObjectPrxI implements ChatMetricsPrx
+{
+    /** @hidden */
+    public static final long serialVersionUID = 0L;
+}
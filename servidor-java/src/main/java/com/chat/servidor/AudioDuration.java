@@ -0,0 +1,90 @@
+package com.chat.servidor;
+
+/**
+ * Calcula la duración de una nota de voz a partir de sus bytes, para los
+ * formatos que la indican sin decodificar el audio: Ogg (Opus o Vorbis) y WAV.
+ * Para los demás (por ejemplo el WebM de MediaRecorder, que no suele traer
+ * duración) devuelve 0.
+ */
+final class AudioDuration {
+
+    private static final int OPUS_RATE = 48000;
+
+    private AudioDuration() {
+    }
+
+    static int millis(byte[] data) {
+        try {
+            if (startsWith(data, 0, "OggS")) {
+                return ogg(data);
+            }
+            if (startsWith(data, 0, "RIFF") && startsWith(data, 8, "WAVE")) {
+                return wav(data);
+            }
+        } catch (RuntimeException e) {
+            // Archivo truncado o con un formato inesperado: duración desconocida
+        }
+        return 0;
+    }
+
+    // La posición de granulado de la última página es el número de muestras
+    private static int ogg(byte[] data) {
+        int last = -1;
+        for (int i = data.length - 27; i >= 0; i--) {
+            if (startsWith(data, i, "OggS")) {
+                last = i;
+                break;
+            }
+        }
+        if (last < 0) return 0;
+        long granule = readLong(data, last + 6);
+
+        // El primer paquete empieza tras la cabecera de la primera página y su tabla de segmentos
+        int firstPacket = 27 + (data[26] & 0xFF);
+        if (startsWith(data, firstPacket, "OpusHead")) {
+            int preSkip = readShort(data, firstPacket + 10);
+            return (int) Math.max(0, (granule - preSkip) * 1000 / OPUS_RATE);
+        }
+        if (data[firstPacket] == 1 && startsWith(data, firstPacket + 1, "vorbis")) {
+            int rate = readInt(data, firstPacket + 12);
+            return rate > 0 ? (int) (granule * 1000 / rate) : 0;
+        }
+        return 0;
+    }
+
+    private static int wav(byte[] data) {
+        int byteRate = 0;
+        int offset = 12;
+        while (offset + 8 <= data.length) {
+            int size = readInt(data, offset + 4);
+            if (startsWith(data, offset, "fmt ")) {
+                byteRate = readInt(data, offset + 16);
+            } else if (startsWith(data, offset, "data")) {
+                int length = Math.min(size, data.length - offset - 8);
+                return byteRate > 0 ? (int) ((long) length * 1000 / byteRate) : 0;
+            }
+            offset += 8 + size + (size & 1);
+        }
+        return 0;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String magic) {
+        if (offset < 0 || offset + magic.length() > data.length) return false;
+        for (int i = 0; i < magic.length(); i++) {
+            if (data[offset + i] != magic.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return readShort(data, offset) | readShort(data, offset + 2) << 16;
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        return (readInt(data, offset) & 0xFFFFFFFFL) | (long) readInt(data, offset + 4) << 32;
+    }
+}
@@ -0,0 +1,215 @@
+package com.chat.servidor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Almacén de notas de voz direccionado por contenido.
+ *
+ * Cada audio se guarda una sola vez en {@code blobs/xx/<sha256>}, donde
+ * {@code xx} son los dos primeros caracteres del hash; reenviar la misma nota
+ * no vuelve a escribirla. El historial solo guarda la referencia
+ * ({@link BlobRef}: hash, tamaño y duración) y el contenido se lee del archivo
+ * directo al arreglo que se devuelve.
+ *
+ * Cada blob se escribe en un temporal que se renombra al final. Con
+ * {@code sync} se fuerzan a disco el contenido y el directorio antes de
+ * devolver la referencia, así el registro del historial que la lleva nunca
+ * sobrevive a una caída sin su blob. Los temporales que deja una escritura
+ * interrumpida se borran al abrir el almacén.
+ */
+public class BlobStore {
+
+    static final int HASH_SIZE = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String TMP_SUFFIX = ".tmp";
+    // Windows no permite abrir un directorio como canal para forzarlo
+    private static final boolean SYNC_DIRECTORIES = !System.getProperty("os.name", "").startsWith("Windows");
+    private static final Log LOG = Log.get(BlobStore.class);
+
+    /** Referencia a un audio guardado, tal como se escribe en el historial. */
+    public static final class BlobRef {
+        private final byte[] hash;
+        private final int size;
+        private final int durationMillis;
+
+        public BlobRef(byte[] hash, int size, int durationMillis) {
+            if (hash.length != HASH_SIZE) {
+                throw new IllegalArgumentException("Hash de blob inválido: " + hash.length + " bytes");
+            }
+            this.hash = hash;
+            this.size = size;
+            this.durationMillis = durationMillis;
+        }
+
+        /** Identificador del blob: SHA-256 en hexadecimal. */
+        public String id() {
+            char[] id = new char[HASH_SIZE * 2];
+            for (int i = 0; i < HASH_SIZE; i++) {
+                id[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                id[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+            return new String(id);
+        }
+
+        public byte[] hash() {
+            return hash.clone();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Duración en milisegundos, o 0 si no se pudo determinar del formato. */
+        public int durationMillis() {
+            return durationMillis;
+        }
+
+        void putHash(ByteBuffer out) {
+            out.put(hash);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof BlobRef && Arrays.equals(hash, ((BlobRef) other).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(hash);
+        }
+    }
+
+    private final Path directory;
+    private final boolean sync;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    /**
+     * @param sync si es true cada blob nuevo (contenido y entrada en su
+     *             directorio) se fuerza a disco antes de devolver su
+     *             referencia, para que el registro del historial nunca apunte
+     *             a un archivo incompleto o que no existe.
+     */
+    public BlobStore(Path directory, boolean sync) throws IOException {
+        this.directory = directory;
+        this.sync = sync;
+        Files.createDirectories(directory);
+        deleteTemporaryFiles();
+    }
+
+    /** Guarda el audio si no existía y devuelve su referencia. */
+    public BlobRef put(byte[] data) throws IOException {
+        byte[] hash = sha256(data);
+        BlobRef ref = new BlobRef(hash, data.length, AudioDuration.millis(data));
+        Path path = pathOf(ref);
+        if (Files.exists(path)) {
+            deduplicated.incrementAndGet();
+            return ref;
+        }
+
+        Path shard = path.getParent();
+        boolean newShard = !Files.isDirectory(shard);
+        if (newShard) {
+            Files.createDirectories(shard);
+        }
+        Path tmp = Files.createTempFile(shard, ref.id(), TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        }
+        // Si otro envío guardó el mismo contenido a la vez, reemplazarlo no cambia nada
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (sync) {
+            // El rename recién es durable cuando lo es el directorio (y el directorio
+            // nuevo, cuando lo es su entrada en el almacén)
+            syncDirectory(shard);
+            if (newShard) {
+                syncDirectory(directory);
+            }
+        }
+        stored.incrementAndGet();
+        storedBytes.addAndGet(data.length);
+        return ref;
+    }
+
+    /**
+     * Lee el blob directo al arreglo que devuelve. No se mapea: cada mapeo se
+     * libera recién cuando lo recolecta el GC, y un historial con muchas notas
+     * de voz acumularía mapeos hasta el límite del sistema.
+     */
+    public byte[] read(BlobRef ref) throws IOException {
+        byte[] data = new byte[ref.size()];
+        if (data.length == 0) {
+            return data;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try (FileChannel channel = FileChannel.open(pathOf(ref), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new IOException("Nota de voz truncada: " + ref.id() + " (" + buffer.position() +
+                            " de " + data.length + " bytes)");
+                }
+            }
+        }
+        return data;
+    }
+
+    public String getStats() {
+        return "Notas de voz: " + stored.get() + " guardadas (" + storedBytes.get() + " bytes), " +
+                deduplicated.get() + " deduplicadas";
+    }
+
+    // Restos de escrituras interrumpidas por una caída: nunca llegaron a renombrarse
+    private void deleteTemporaryFiles() throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path shard : shards) {
+                try (DirectoryStream<Path> tmps = Files.newDirectoryStream(shard, "*" + TMP_SUFFIX)) {
+                    for (Path tmp : tmps) {
+                        Files.deleteIfExists(tmp);
+                        deleted++;
+                    }
+                }
+            }
+        }
+        if (deleted > 0) {
+            LOG.info("Se borraron {} notas de voz a medio escribir", deleted);
+        }
+    }
+
+    private static void syncDirectory(Path dir) throws IOException {
+        if (!SYNC_DIRECTORIES) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private Path pathOf(BlobRef ref) {
+        String id = ref.id();
+        return directory.resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -11,17 +11,18 @@ import java.util.concurrent.*;
 public class ChatServer {
 
     // Almacenamiento de datos compartidos
-    private static Map<String, List<String>> grupos = new ConcurrentHashMap<>();
-    private static Map<String, List<String>> historial = new ConcurrentHashMap<>();
+    private static GroupMembership grupos = new GroupMembership();
+    // Mensajes por conversación (por columnas); el contenido vive en los segmentos del MessageLog
+    private static Map<String, ConversationLog> historial = new ConcurrentHashMap<>();
     private static Map<String, String> usuarios = new ConcurrentHashMap<>();
     // Usuarios registrados (independiente de conexiones activas)
     private static Set<String> usuariosRegistrados = ConcurrentHashMap.newKeySet();
 
-    public static Map<String, List<String>> getGrupos() {
+    public static GroupMembership getGrupos() {
         return grupos;
     }
 
-    public static Map<String, List<String>> getHistorial() {
+    public static Map<String, ConversationLog> getHistorial() {
         return historial;
     }
 
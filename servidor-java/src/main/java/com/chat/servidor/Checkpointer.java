@@ -0,0 +1,274 @@
+package com.chat.servidor;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Escribe en segundo plano snapshots compactos del estado del chat
+ * (directorio de conversaciones, grupos con sus miembros y usuarios
+ * registrados) junto con la
+ * posición del {@link MessageLog} que cubren. Al arrancar se carga el snapshot
+ * y solo se reproduce la cola del log posterior a esa posición.
+ *
+ * El snapshot se escribe a un archivo temporal y se renombra de forma
+ * atómica, así que siempre queda el último snapshot completo. No se toma
+ * ningún lock del servidor: se lee la posición del log y se corta cada
+ * conversación en esa posición.
+ *
+ * El snapshot solo acorta el arranque: no libera espacio del log. Los
+ * segmentos son el historial mismo (el snapshot guarda posiciones, no el
+ * contenido de los mensajes) y ningún mensaje se borra, así que el registro
+ * vivo más antiguo está siempre en el primer segmento y
+ * {@code data/segments/} crece con el historial.
+ */
+public class Checkpointer implements AutoCloseable {
+
+    private static final Log LOG = Log.get(Checkpointer.class);
+
+    private static final int MAGIC = 0x43485350; // "CHSP"
+    // v2: las conversaciones se guardan como último mensaje y cantidad (la
+    // cadena de registros está en el log); solo las fijadas llevan sus arreglos.
+    // v3: las fijadas llevan también remitentes y tipos.
+    // v4: cada grupo lleva sus miembros
+    private static final int VERSION = 4;
+
+    /** Estado leído de un snapshot. */
+    public static class Snapshot {
+        public final long logPosition;
+        public final Map<String, ConversationLog> conversaciones = new HashMap<>();
+        /** Nombre de cada grupo y sus miembros. */
+        public final Map<String, List<String>> grupos = new LinkedHashMap<>();
+        public final List<String> usuarios = new ArrayList<>();
+
+        Snapshot(long logPosition) {
+            this.logPosition = logPosition;
+        }
+    }
+
+    private final Path path;
+    private final MessageLog log;
+    private final Map<String, ConversationLog> conversaciones;
+    private final GroupMembership grupos;
+    private final Set<String> usuarios;
+    private final ConversationLog.Chain chain;
+    private final long minLogBytes;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile long lastSnapshotPosition;
+
+    public Checkpointer(Path path, MessageLog log, Map<String, ConversationLog> conversaciones,
+                        GroupMembership grupos, Set<String> usuarios, ConversationLog.Chain chain,
+                        long lastSnapshotPosition, long intervalSeconds, long minLogBytes) {
+        this.path = path;
+        this.log = log;
+        this.conversaciones = conversaciones;
+        this.grupos = grupos;
+        this.usuarios = usuarios;
+        this.chain = chain;
+        this.lastSnapshotPosition = lastSnapshotPosition;
+        this.minLogBytes = minLogBytes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::checkpointIfNeeded, intervalSeconds, intervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Lee el snapshot si existe y es válido. Devuelve null si no hay snapshot
+     * o si está dañado, en cuyo caso se reproduce el log completo.
+     */
+    public static Snapshot load(Path path) {
+        if (!Files.exists(path)) return null;
+
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 1 << 16), crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.warn("Snapshot con formato desconocido, se ignorará: {}", path);
+                return null;
+            }
+            Snapshot snapshot = new Snapshot(in.readLong());
+
+            int users = in.readInt();
+            for (int i = 0; i < users; i++) {
+                snapshot.usuarios.add(in.readUTF());
+            }
+            int groups = in.readInt();
+            for (int i = 0; i < groups; i++) {
+                String name = in.readUTF();
+                List<String> members = new ArrayList<>();
+                int count = in.readInt();
+                for (int j = 0; j < count; j++) {
+                    members.add(in.readUTF());
+                }
+                snapshot.grupos.put(name, members);
+            }
+            int conversations = in.readInt();
+            for (int i = 0; i < conversations; i++) {
+                String key = in.readUTF();
+                boolean pinned = in.readBoolean();
+                int count = in.readInt();
+                long head = in.readLong();
+                if (!pinned) {
+                    snapshot.conversaciones.put(key, ConversationLog.cold(head, count));
+                    continue;
+                }
+                String[] senderNames = new String[in.readInt()];
+                for (int j = 0; j < senderNames.length; j++) {
+                    senderNames[j] = in.readUTF();
+                }
+                long[] positions = new long[count];
+                long[] timestamps = new long[count];
+                int[] senders = new int[count];
+                byte[] types = new byte[count];
+                for (int j = 0; j < count; j++) {
+                    positions[j] = in.readLong();
+                }
+                for (int j = 0; j < count; j++) {
+                    timestamps[j] = in.readLong();
+                }
+                for (int j = 0; j < count; j++) {
+                    senders[j] = in.readInt();
+                }
+                in.readFully(types);
+                snapshot.conversaciones.put(key,
+                        ConversationLog.pinned(positions, timestamps, senders, types, senderNames));
+            }
+
+            int expected = (int) crc.getValue();
+            if (in.readInt() != expected) {
+                LOG.warn("Snapshot con checksum inválido, se ignorará: {}", path);
+                return null;
+            }
+            return snapshot;
+        } catch (IOException e) {
+            LOG.warn("Error al leer el snapshot, se ignorará: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public long getLastSnapshotPosition() {
+        return lastSnapshotPosition;
+    }
+
+    /** Programa un snapshot inmediato en el hilo del checkpointer. */
+    public Future<?> requestCheckpoint() {
+        return scheduler.submit(this::checkpoint);
+    }
+
+    private void checkpointIfNeeded() {
+        if (log.getWritePosition() - lastSnapshotPosition >= minLogBytes) {
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() {
+        try {
+            long start = System.nanoTime();
+            long position = log.getWritePosition();
+            if (position == lastSnapshotPosition && Files.exists(path)) return;
+
+            // Lo que cubre el snapshot tiene que estar en disco aunque el modo sea none/async
+            log.force();
+            int messages = write(position);
+            lastSnapshotPosition = position;
+            LOG.info("Snapshot escrito: {} conversaciones, {} mensajes, posición del log {} en {} ms",
+                    conversaciones.size(), messages, position, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            LOG.error("Error al escribir el snapshot: {}", e.getMessage(), e);
+        }
+    }
+
+    // Todo registro anterior a la posición ya está aplicado en memoria (ver
+    // MessageLog.append), por eso basta con cortar cada conversación en ella.
+    // Grupos, miembros y usuarios cambian en memoria antes de escribirse en el
+    // log, así que los cambios que aparezcan de más se vuelven a aplicar al
+    // reproducir la cola, en el mismo orden, y el resultado es el mismo.
+    private int write(long position) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        int messages = 0;
+
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                     new BufferedOutputStream(file, 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(position);
+
+            List<String> users = new ArrayList<>(usuarios);
+            out.writeInt(users.size());
+            for (String user : users) {
+                out.writeUTF(user);
+            }
+            List<String> groups = new ArrayList<>(grupos.names());
+            out.writeInt(groups.size());
+            for (String group : groups) {
+                out.writeUTF(group);
+                List<String> members = new ArrayList<>(grupos.members(group));
+                out.writeInt(members.size());
+                for (String member : members) {
+                    out.writeUTF(member);
+                }
+            }
+
+            List<Map.Entry<String, ConversationLog>> entries = new ArrayList<>(conversaciones.entrySet());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, ConversationLog> entry : entries) {
+                ConversationLog.Cut cut = entry.getValue().cutBefore(position, chain);
+                boolean pinned = cut.positions != null;
+
+                out.writeUTF(entry.getKey());
+                out.writeBoolean(pinned);
+                out.writeInt(cut.count);
+                out.writeLong(cut.head);
+                if (pinned) {
+                    out.writeInt(cut.senderNames.length);
+                    for (String sender : cut.senderNames) {
+                        out.writeUTF(sender);
+                    }
+                    for (long p : cut.positions) {
+                        out.writeLong(p);
+                    }
+                    for (long t : cut.timestamps) {
+                        out.writeLong(t);
+                    }
+                    for (int sender : cut.senders) {
+                        out.writeInt(sender);
+                    }
+                    out.write(cut.types);
+                }
+                messages += cut.count;
+            }
+
+            out.flush();
+            // El CRC cubre todo lo anterior; se escribe fuera del stream que lo calcula
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.getFD().sync();
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return messages;
+    }
+
+    /** Detiene el hilo tras escribir un último snapshot, para que el próximo arranque sea rápido. */
+    @Override
+    public void close() {
+        try {
+            requestCheckpoint().get();
+        } catch (Exception e) {
+            LOG.error("Error en el snapshot de cierre: {}", e.getMessage());
+        }
+        scheduler.shutdown();
+    }
+}
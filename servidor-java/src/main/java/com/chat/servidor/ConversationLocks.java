@@ -0,0 +1,33 @@
+package com.chat.servidor;
+
+/**
+ * Locks por conversación repartidos en franjas: cada clave de historial
+ * (nombre del grupo o par de usuarios) se asigna siempre al mismo monitor,
+ * así que los envíos a una conversación quedan serializados mientras los de
+ * conversaciones distintas avanzan en paralelo, sin crear un lock por
+ * conversación.
+ */
+final class ConversationLocks {
+
+    private final Object[] stripes;
+    private final int mask;
+
+    /** @param stripes cantidad de franjas; se redondea a la potencia de dos siguiente. */
+    ConversationLocks(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Object();
+        }
+        this.mask = size - 1;
+    }
+
+    Object lockFor(String historyKey) {
+        int hash = historyKey.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    int size() {
+        return stripes.length;
+    }
+}
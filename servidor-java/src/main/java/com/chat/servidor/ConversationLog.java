@@ -0,0 +1,432 @@
+package com.chat.servidor;
+
+import java.util.Arrays;
+
+/**
+ * Mensajes de una conversación en memoria, por columnas: para cada mensaje
+ * la posición de su registro en el {@link MessageLog} (la referencia al
+ * contenido), su timestamp, el remitente como id dentro de una tabla de
+ * remitentes de la conversación y el código de tipo de {@link MessageCodec}.
+ * El contenido se lee de los segmentos mapeados cuando se pide.
+ *
+ * Lo agrega un solo hilo a la vez (el log bajo su lock) y lo leen varios sin
+ * lock: las columnas crecen copiándose a arreglos nuevos y la cantidad se
+ * publica después de escribir cada fila, así que una vista
+ * ({@link #entries(Chain)}) nunca ve filas a medio escribir.
+ *
+ * Cada registro de mensaje guarda la posición del anterior de su
+ * conversación, así que el log puede estar "frío": sin columnas en memoria,
+ * solo con la posición del último mensaje y la cantidad. Las columnas se
+ * reconstruyen recorriendo esa cadena la primera vez que se leen y se
+ * descartan con {@link #evictIfIdle} cuando la conversación deja de usarse.
+ * Los mensajes nuevos se pueden agregar en ambos estados.
+ *
+ * Una conversación con registros de formatos anteriores (sin enlace al
+ * anterior) queda fijada en memoria y nunca se descarga.
+ */
+public class ConversationLog {
+
+    /** Posición de "no hay mensaje anterior" en la cadena de una conversación. */
+    public static final long NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int INITIAL_SENDERS = 4;
+
+    /** Lee los registros de la cadena de una conversación. */
+    public interface Chain {
+        long previous(long position);
+
+        /** Completa la fila con los datos del mensaje y devuelve la posición del anterior. */
+        long read(long position, Row row);
+    }
+
+    /** Columnas de un mensaje, tal como las lee una {@link Chain}. */
+    public static final class Row {
+        public long timestamp;
+        public String sender;
+        public byte type;
+    }
+
+    // Las filas [0, size) de unas columnas publicadas no cambian más
+    private static final class Columns {
+        final long[] positions;
+        final long[] timestamps;
+        final int[] senders;
+        final byte[] types;
+
+        Columns(int capacity) {
+            this(new long[capacity], new long[capacity], new int[capacity], new byte[capacity]);
+        }
+
+        Columns(long[] positions, long[] timestamps, int[] senders, byte[] types) {
+            this.positions = positions;
+            this.timestamps = timestamps;
+            this.senders = senders;
+            this.types = types;
+        }
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(positions, capacity), Arrays.copyOf(timestamps, capacity),
+                    Arrays.copyOf(senders, capacity), Arrays.copyOf(types, capacity));
+        }
+
+        int capacity() {
+            return positions.length;
+        }
+    }
+
+    /** Vista inmutable de un rango de mensajes, por número de secuencia. */
+    public static final class Entries {
+        private final Columns columns;
+        private final String[] senderNames;
+        private final int start;
+        private final int end;
+
+        Entries(Columns columns, String[] senderNames, int start, int end) {
+            this.columns = columns;
+            this.senderNames = senderNames;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int size() {
+            return end - start;
+        }
+
+        public long positionAt(int index) {
+            return columns.positions[start + index];
+        }
+
+        public long timestampAt(int index) {
+            return columns.timestamps[start + index];
+        }
+
+        public String senderAt(int index) {
+            return senderNames[columns.senders[start + index]];
+        }
+
+        public byte typeAt(int index) {
+            return columns.types[start + index];
+        }
+
+        /** Índice del primer mensaje con timestamp mayor o igual al indicado. */
+        public int firstIndexAtOrAfter(long timestamp) {
+            int low = start;
+            int high = end;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (columns.timestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low - start;
+        }
+
+        /** Mensajes [from, to) de esta vista. */
+        public Entries range(int from, int to) {
+            if (from < 0 || to > size() || from > to) {
+                throw new IndexOutOfBoundsException("Rango [" + from + ", " + to + ") de " + size());
+            }
+            return new Entries(columns, senderNames, start + from, start + to);
+        }
+
+        /** Mensajes con timestamp en [from, to). */
+        public Entries rangeByTime(long from, long to) {
+            int first = firstIndexAtOrAfter(from);
+            return range(first, Math.max(first, firstIndexAtOrAfter(to)));
+        }
+    }
+
+    // Null mientras el log está frío
+    private volatile Columns columns;
+    private volatile String[] senderNames;
+    private int senderCount;
+    private volatile int size;
+    private volatile long head = NONE;
+    // Long.MIN_VALUE mientras no se conoce (log frío leído de un snapshot)
+    private volatile long lastTimestamp = Long.MIN_VALUE;
+    private volatile long lastAccess = System.nanoTime();
+    private boolean pinned;
+
+    public ConversationLog() {
+        this.columns = new Columns(INITIAL_CAPACITY);
+        this.senderNames = new String[INITIAL_SENDERS];
+    }
+
+    private ConversationLog(Columns columns, String[] senderNames, int size, long head) {
+        this.columns = columns;
+        this.senderNames = senderNames;
+        this.size = size;
+        this.head = head;
+        if (senderNames != null) {
+            while (senderCount < senderNames.length && senderNames[senderCount] != null) {
+                senderCount++;
+            }
+        }
+    }
+
+    /** Log frío leído de un snapshot: solo el último mensaje y la cantidad. */
+    public static ConversationLog cold(long head, int size) {
+        return new ConversationLog(null, null, size, head);
+    }
+
+    /** Log fijado en memoria leído de un snapshot. */
+    public static ConversationLog pinned(long[] positions, long[] timestamps, int[] senders, byte[] types,
+                                         String[] senderNames) {
+        int size = positions.length;
+        ConversationLog log = new ConversationLog(new Columns(positions, timestamps, senders, types),
+                Arrays.copyOf(senderNames, Math.max(INITIAL_SENDERS, senderNames.length)), size,
+                size == 0 ? NONE : positions[size - 1]);
+        log.pinned = true;
+        if (size > 0) {
+            log.lastTimestamp = timestamps[size - 1];
+        }
+        return log;
+    }
+
+    /**
+     * Agrega un mensaje. Lo llama el log bajo su lock, así que los mensajes
+     * de una conversación llegan en orden de posición.
+     */
+    public synchronized void add(long position, long timestamp, String sender, byte type) {
+        Columns c = columns;
+        if (c != null) {
+            int n = size;
+            if (n == c.capacity()) {
+                c = c.grow(Math.max(INITIAL_CAPACITY, n * 2));
+            }
+            c.positions[n] = position;
+            c.timestamps[n] = timestamp;
+            c.senders[n] = internSender(sender);
+            c.types[n] = type;
+            columns = c;
+        }
+        head = position;
+        lastTimestamp = timestamp;
+        size++;
+    }
+
+    // Los remitentes de una conversación son pocos: basta una búsqueda lineal
+    private int internSender(String sender) {
+        String[] names = senderNames;
+        for (int i = 0; i < senderCount; i++) {
+            if (names[i].equals(sender)) return i;
+        }
+        if (senderCount == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[senderCount] = sender;
+        senderNames = names;
+        return senderCount++;
+    }
+
+    /** Marca el log como fijado en memoria (contiene registros sin enlace). */
+    public synchronized void pin() {
+        pinned = true;
+    }
+
+    public synchronized boolean isPinned() {
+        return pinned;
+    }
+
+    public boolean isLoaded() {
+        return columns != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Posición del último mensaje, o {@link #NONE} si la conversación está vacía. */
+    public long head() {
+        return head;
+    }
+
+    /**
+     * Timestamp del último mensaje, o {@link Long#MIN_VALUE} si la conversación
+     * está vacía. Si el log está frío y todavía no se conoce, se lee solo el
+     * último registro de la cadena. Se llama con los envíos a la conversación
+     * serializados.
+     */
+    public long lastTimestamp(Chain chain) {
+        long timestamp = lastTimestamp;
+        long last = head;
+        if (timestamp != Long.MIN_VALUE || last == NONE) {
+            return timestamp;
+        }
+        Columns c = columns;
+        int n = size;
+        if (c != null && n > 0) {
+            timestamp = c.timestamps[n - 1];
+        } else {
+            Row row = new Row();
+            chain.read(last, row);
+            timestamp = row.timestamp;
+        }
+        lastTimestamp = timestamp;
+        return timestamp;
+    }
+
+    /**
+     * Memoria aproximada que ocupan las columnas y la tabla de remitentes,
+     * o solo el objeto si el log está frío.
+     */
+    public long estimatedBytes() {
+        long bytes = 64;
+        Columns c = columns;
+        String[] names = senderNames;
+        if (c != null) {
+            bytes += 4 * 16 + (long) c.capacity() * (8 + 8 + 4 + 1);
+        }
+        if (names != null) {
+            bytes += 16 + 4L * names.length;
+            for (String name : names) {
+                if (name != null) {
+                    bytes += 40 + 2L * name.length();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Devuelve los mensajes actuales, cargándolos desde el log si estaba
+     * frío. Si está cargado no se toma ningún lock. La cadena se recorre sin
+     * tomar el lock del log, para no frenar los envíos; si mientras tanto
+     * llegaron mensajes nuevos, se recorre solo lo agregado.
+     */
+    public Entries entries(Chain chain) {
+        lastAccess = System.nanoTime();
+        int n = size;
+        Columns c = columns;
+        String[] names = senderNames;
+        if (c != null && names != null) {
+            return new Entries(c, names, 0, n);
+        }
+
+        Columns loadedColumns = null;
+        Interner interner = new Interner();
+        int loaded = 0;
+        long loadedHead = NONE;
+        Row row = new Row();
+        while (true) {
+            long currentHead;
+            int currentSize;
+            synchronized (this) {
+                if (columns != null) {
+                    return new Entries(columns, senderNames, 0, size);
+                }
+                currentHead = head;
+                currentSize = size;
+                if (currentHead == loadedHead) {
+                    columns = loadedColumns != null ? loadedColumns : new Columns(INITIAL_CAPACITY);
+                    senderNames = Arrays.copyOf(interner.names, Math.max(INITIAL_SENDERS, interner.count));
+                    senderCount = interner.count;
+                    return new Entries(columns, senderNames, 0, size);
+                }
+            }
+
+            int capacity = Math.max(INITIAL_CAPACITY, currentSize + currentSize / 4);
+            Columns next = loadedColumns != null ? loadedColumns.grow(capacity) : new Columns(capacity);
+            long position = currentHead;
+            for (int i = currentSize - 1; i >= loaded; i--) {
+                long previous = chain.read(position, row);
+                next.positions[i] = position;
+                next.timestamps[i] = row.timestamp;
+                next.senders[i] = interner.intern(row.sender);
+                next.types[i] = row.type;
+                position = previous;
+            }
+            loadedColumns = next;
+            loaded = currentSize;
+            loadedHead = currentHead;
+        }
+    }
+
+    // Tabla de remitentes que se arma al cargar, antes de publicarse
+    private static final class Interner {
+        String[] names = new String[INITIAL_SENDERS];
+        int count;
+
+        int intern(String sender) {
+            for (int i = 0; i < count; i++) {
+                if (names[i].equals(sender)) return i;
+            }
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+            }
+            names[count] = sender;
+            return count++;
+        }
+    }
+
+    /**
+     * Descarta las columnas si el log no se leyó en el tiempo indicado.
+     * Devuelve true si se descargó.
+     */
+    public synchronized boolean evictIfIdle(long now, long idleNanos) {
+        if (pinned || columns == null || now - lastAccess < idleNanos) {
+            return false;
+        }
+        columns = null;
+        senderNames = null;
+        senderCount = 0;
+        return true;
+    }
+
+    /**
+     * Cantidad de mensajes anteriores a la posición indicada del log y posición
+     * del último de ellos, para escribir un snapshot consistente. Las
+     * posiciones crecen con cada mensaje, así que si el log está cargado
+     * basta una búsqueda binaria; si está frío se retrocede desde el último.
+     */
+    public Cut cutBefore(long logPosition, Chain chain) {
+        long currentHead;
+        int count;
+        synchronized (this) {
+            Columns c = columns;
+            if (c != null) {
+                int index = Arrays.binarySearch(c.positions, 0, size, logPosition);
+                count = index >= 0 ? index : -index - 1;
+                if (!pinned) {
+                    return new Cut(count, count == 0 ? NONE : c.positions[count - 1], null, null, null, null, null);
+                }
+                return new Cut(count, count == 0 ? NONE : c.positions[count - 1],
+                        Arrays.copyOf(c.positions, count), Arrays.copyOf(c.timestamps, count),
+                        Arrays.copyOf(c.senders, count), Arrays.copyOf(c.types, count),
+                        Arrays.copyOf(senderNames, senderCount));
+            }
+            currentHead = head;
+            count = size;
+        }
+        while (currentHead != NONE && currentHead >= logPosition) {
+            currentHead = chain.previous(currentHead);
+            count--;
+        }
+        return new Cut(count, currentHead, null, null, null, null, null);
+    }
+
+    /** Resultado de {@link #cutBefore}; las columnas solo se copian si el log está fijado. */
+    public static final class Cut {
+        public final int count;
+        public final long head;
+        public final long[] positions;
+        public final long[] timestamps;
+        public final int[] senders;
+        public final byte[] types;
+        public final String[] senderNames;
+
+        Cut(int count, long head, long[] positions, long[] timestamps, int[] senders, byte[] types,
+            String[] senderNames) {
+            this.count = count;
+            this.head = head;
+            this.positions = positions;
+            this.timestamps = timestamps;
+            this.senders = senders;
+            this.types = types;
+            this.senderNames = senderNames;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.chat.servidor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR de cada entrega a un callback: desde que el {@link Subscriber}
+ * la serializa y envía hasta que el cliente responde o falla.
+ */
+@Name("com.chat.Delivery")
+@Label("Entrega a un callback")
+@Category("Chat")
+@Description("Un deliver, onMessages u onMessage a un suscriptor; la duración es la latencia")
+@StackTrace(false)
+final class DeliveryEvent extends Event {
+
+    @Label("Destinatarios")
+    @Description("Los usuarios del callback (los tres primeros)")
+    String recipient;
+
+    @Label("Operación")
+    String operation;
+
+    @Label("Mensajes")
+    int messages;
+
+    @Label("Resultado")
+    String outcome;
+}
@@ -0,0 +1,78 @@
+package com.chat.servidor;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grupos y sus miembros, indexados en los dos sentidos: de grupo a miembros,
+ * para enviar los mensajes de un grupo solo a quienes están en él, y de
+ * usuario a grupos.
+ *
+ * Las lecturas no toman ningún lock. Los cambios de un mismo grupo los
+ * serializa quien los escribe en el log, para que el orden en memoria y en
+ * el log coincida (ver {@code ChatServiceI}).
+ */
+public class GroupMembership {
+
+    private final Map<String, Set<String>> members = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> groupsByUser = new ConcurrentHashMap<>();
+
+    /** Crea un grupo vacío; devuelve false si ya existía. */
+    public boolean create(String group) {
+        return members.putIfAbsent(group, ConcurrentHashMap.newKeySet()) == null;
+    }
+
+    public boolean exists(String group) {
+        return members.containsKey(group);
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(members.keySet());
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /** Agrega un miembro; devuelve false si el grupo no existe o ya era miembro. */
+    public boolean join(String group, String user) {
+        Set<String> groupMembers = members.get(group);
+        if (groupMembers == null || !groupMembers.add(user)) {
+            return false;
+        }
+        groupsByUser.computeIfAbsent(user, k -> ConcurrentHashMap.newKeySet()).add(group);
+        return true;
+    }
+
+    /** Quita un miembro; devuelve false si no lo era. */
+    public boolean leave(String group, String user) {
+        Set<String> groupMembers = members.get(group);
+        if (groupMembers == null || !groupMembers.remove(user)) {
+            return false;
+        }
+        Set<String> groups = groupsByUser.get(user);
+        if (groups != null) {
+            groups.remove(group);
+        }
+        return true;
+    }
+
+    public boolean isMember(String group, String user) {
+        Set<String> groupMembers = members.get(group);
+        return groupMembers != null && groupMembers.contains(user);
+    }
+
+    /** Miembros actuales del grupo (vista de solo lectura), vacío si no existe. */
+    public Set<String> members(String group) {
+        Set<String> groupMembers = members.get(group);
+        return groupMembers != null ? Collections.unmodifiableSet(groupMembers) : Collections.emptySet();
+    }
+
+    /** Grupos de los que el usuario es miembro (vista de solo lectura). */
+    public Set<String> groupsOf(String user) {
+        Set<String> groups = groupsByUser.get(user);
+        return groups != null ? Collections.unmodifiableSet(groups) : Collections.emptySet();
+    }
+}
@@ -1,391 +1,546 @@
 package com.chat.servidor;
 
+import Chat.HistoryPage;
+import Chat.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class HistoryManager {
+
+    private static final Log LOG = Log.get(HistoryManager.class);
     
     private static final String DATA_DIR = "data";
     private static final String HISTORY_FILE = "history.json";
-    
-    public static void saveHistory(Map<String, List<String>> historial, Map<String, List<String>> grupos) {
-        try {
+    private static final String LEGACY_LOG_FILE = "messages.log";
+    private static final String SEGMENTS_DIR = "segments";
+    private static final String IMPORTED_SUFFIX = ".imported";
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String BLOBS_DIR = "blobs";
 
-            Path dataPath = Paths.get(DATA_DIR);
-            if (!Files.exists(dataPath)) {
-                Files.createDirectories(dataPath);
-            }
-            
-            Map<String, Object> data = new HashMap<>();
-            data.put("historial", historial);
-            data.put("grupos", grupos);
-            
-            String json = toJson(data);
-            
-            Path filePath = dataPath.resolve(HISTORY_FILE);
-            Files.write(filePath, json.getBytes("UTF-8"));
-            
-            System.out.println("Historial guardado en: " + filePath.toAbsolutePath());
-            
-        } catch (Exception e) {
-            System.err.println("Error al guardar historial: " + e.getMessage());
-            e.printStackTrace();
+    private static MessageLog log;
+    private static BlobStore blobs;
+    private static PersistenceWriter writer;
+    private static Checkpointer checkpointer;
+    private static ScheduledExecutorService evictor;
+    private static MessageCache cache = new MessageCache(0);
+
+    /**
+     * Abre el almacén segmentado y reconstruye el índice de cada conversación
+     * sin cargar el contenido de los mensajes. Si hay un snapshot válido se
+     * carga y solo se reproducen los registros posteriores a él; si no, se
+     * reproduce el log completo. Si todavía no hay segmentos pero sí un log de
+     * un solo archivo o un history.json antiguos, se importan una única vez.
+     *
+     * Si el historial no se puede abrir (segmento corrupto, snapshot ilegible,
+     * error al mapear) lanza la excepción: sin log el servidor no puede guardar
+     * ningún mensaje, así que no debe arrancar.
+     */
+    public static void init(Map<String, ConversationLog> conversaciones, GroupMembership grupos,
+                            Set<String> usuarios) throws IOException {
+        long start = System.nanoTime();
+        Path dataPath = Paths.get(DATA_DIR);
+        if (!Files.exists(dataPath)) {
+            Files.createDirectories(dataPath);
         }
-    }
 
-    public static void loadHistory(Map<String, List<String>> historial, Map<String, List<String>> grupos) {
-        try {
-            Path filePath = Paths.get(DATA_DIR, HISTORY_FILE);
-            
-            if (!Files.exists(filePath)) {
-                System.out.println("No se encontró archivo de historial. Iniciando con historial vacío.");
-                return;
-            }
-            
-            byte[] bytes = Files.readAllBytes(filePath);
-            String json = new String(bytes, "UTF-8");
-            
-            Map<String, Object> data = fromJson(json);
-            
-            if (data.containsKey("historial")) {
-                Object historialObj = data.get("historial");
-                if (historialObj instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, List<String>> loadedHistorial = (Map<String, List<String>>) historialObj;
-                    if (loadedHistorial != null) {
-                        historial.putAll(loadedHistorial);
-                        System.out.println("Historial cargado: " + loadedHistorial.size() + " conversaciones");
-                    }
-                }
+        int segmentSize = Integer.getInteger("chat.store.segmentSizeMb", 64) * 1024 * 1024;
+        Path segmentsPath = dataPath.resolve(SEGMENTS_DIR);
+        Path snapshotPath = dataPath.resolve(SNAPSHOT_FILE);
+        blobs = new BlobStore(dataPath.resolve(BLOBS_DIR),
+                PersistenceWriter.modeFromSystemProperties() != PersistenceWriter.Mode.NONE);
+        if (!Files.exists(segmentsPath)) {
+            Files.deleteIfExists(snapshotPath);
+            Path legacyLog = dataPath.resolve(LEGACY_LOG_FILE);
+            Path legacyJson = dataPath.resolve(HISTORY_FILE);
+            if (Files.exists(legacyLog)) {
+                importLegacy(legacyLog, segmentsPath, segmentSize, HistoryManager::readLegacyLog);
+            } else if (Files.exists(legacyJson)) {
+                importLegacy(legacyJson, segmentsPath, segmentSize, HistoryManager::readHistoryJson);
             }
-            
-            if (data.containsKey("grupos")) {
-                Object gruposObj = data.get("grupos");
-                if (gruposObj instanceof Map) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, List<String>> loadedGrupos = (Map<String, List<String>>) gruposObj;
-                    if (loadedGrupos != null) {
-                        grupos.putAll(loadedGrupos);
-                        System.out.println("Grupos cargados: " + loadedGrupos.size() + " grupos");
-                    }
+        }
+
+        log = new MessageLog(segmentsPath, segmentSize);
+
+        long snapshotStart = System.nanoTime();
+        Checkpointer.Snapshot snapshot = Checkpointer.load(snapshotPath);
+        if (snapshot != null && snapshot.logPosition > (long) log.getSegmentCount() * segmentSize) {
+            LOG.warn("El snapshot cubre más allá del final del log, se reproducirá el log completo");
+            snapshot = null;
+        }
+        long fromPosition = 0;
+        if (snapshot != null) {
+            usuarios.addAll(snapshot.usuarios);
+            for (Map.Entry<String, List<String>> group : snapshot.grupos.entrySet()) {
+                grupos.create(group.getKey());
+                for (String member : group.getValue()) {
+                    grupos.join(group.getKey(), member);
                 }
             }
-            
-        } catch (Exception e) {
-            System.err.println("Error al cargar historial: " + e.getMessage());
-            e.printStackTrace();
+            conversaciones.putAll(snapshot.conversaciones);
+            fromPosition = snapshot.logPosition;
         }
+        long snapshotNanos = System.nanoTime() - snapshotStart;
+
+        long replayStart = System.nanoTime();
+        int records = log.replay(fromPosition,
+                (position, payload) -> apply(position, payload, conversaciones, grupos, usuarios));
+        long replayNanos = System.nanoTime() - replayStart;
+
+        LOG.info("Historial indexado: {} conversaciones, {} grupos, {} usuarios en {} segmentos",
+                conversaciones.size(), grupos.size(), usuarios.size(), log.getSegmentCount());
+        LOG.info("Arranque del historial: snapshot {}, {} registros reproducidos en {} ms, total {} ms",
+                snapshot != null ? "cargado en " + toMillis(snapshotNanos) + " ms" : "no disponible",
+                records, toMillis(replayNanos), toMillis(System.nanoTime() - start));
+
+        writer = PersistenceWriter.fromSystemProperties(log);
+        LOG.info("Persistencia en modo: {}", writer.getMode());
+
+        checkpointer = new Checkpointer(snapshotPath, log, conversaciones, grupos, usuarios, CHAIN, fromPosition,
+                Long.getLong("chat.snapshot.intervalSeconds", 300),
+                Long.getLong("chat.snapshot.minLogMb", 16) * 1024 * 1024);
+
+        cache = new MessageCache(Long.getLong("chat.history.cacheMb", 64) * 1024 * 1024);
+        startLazyLoading(conversaciones);
     }
 
-    private static String toJson(Map<String, Object> data) {
-        StringBuilder json = new StringBuilder();
-        json.append("{\n");
-        
-        boolean first = true;
-        for (Map.Entry<String, Object> entry : data.entrySet()) {
-            if (!first) json.append(",\n");
-            first = false;
-            
-            json.append("  \"").append(escapeJson(entry.getKey())).append("\": ");
-            
-            Object value = entry.getValue();
-            if (value instanceof Map) {
-                json.append(mapToJson((Map<?, ?>) value));
-            } else if (value instanceof List) {
-                json.append(listToJson((List<?>) value));
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
+    /**
+     * Copia el mensaje al segmento actual, lo agrega al log en memoria de la
+     * conversación y pide su sincronización. El futuro se completa cuando el
+     * registro es durable según el modo configurado. Los envíos a una misma
+     * conversación deben estar serializados, porque el registro enlaza con el
+     * último mensaje del log en memoria.
+     */
+    public static CompletableFuture<Void> appendMessage(ConversationLog index, String historyKey, Message msg) {
+        return appendMessage(index, historyKey, msg, null);
+    }
+
+    /**
+     * Como {@link #appendMessage(ConversationLog, String, Message)}, pero el
+     * registro guarda solo la referencia al audio ya guardado con
+     * {@link #storeAudio(byte[])}.
+     */
+    public static CompletableFuture<Void> appendMessage(ConversationLog index, String historyKey, Message msg,
+                                                        BlobStore.BlobRef audio) {
+        try {
+            int sequence = index.size();
+            log.append(MessageLog.encodeMessage(historyKey, index.head(), msg, audio), position ->
+                    index.add(position, msg.timestamp, msg.from, MessageCodec.typeCode(msg.type)));
+            // Fuera del lock del log: el orden de la conversación lo da el lock de quien envía
+            cache.append(index, sequence, msg);
+            return writer.sync();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        
-        json.append("\n}");
-        return json.toString();
     }
-    
-    private static String mapToJson(Map<?, ?> map) {
-        StringBuilder json = new StringBuilder();
-        json.append("{\n");
-        
-        boolean first = true;
-        for (Map.Entry<?, ?> entry : map.entrySet()) {
-            if (!first) json.append(",\n");
-            first = false;
-            
-            json.append("    \"").append(escapeJson(entry.getKey().toString())).append("\": ");
-            
-            Object value = entry.getValue();
-            if (value instanceof List) {
-                json.append(listToJson((List<?>) value));
-            } else if (value instanceof Map) {
-                json.append(mapToJson((Map<?, ?>) value));
-            } else {
-                json.append("\"").append(escapeJson(value.toString())).append("\"");
-            }
+
+    /**
+     * Hora para un mensaje nuevo de la conversación: la actual, pero nunca
+     * anterior a la del último mensaje. Se llama con el lock de la conversación
+     * tomado, justo antes de {@link #appendMessage}, así los timestamps crecen en
+     * el mismo orden que el log y las búsquedas por timestamp de
+     * {@link #readPage} no saltean ni repiten mensajes.
+     */
+    public static long nextTimestamp(ConversationLog index) {
+        return Math.max(System.currentTimeMillis(), index.lastTimestamp(CHAIN));
+    }
+
+    /**
+     * Guarda una nota de voz en el almacén de blobs (o reutiliza la existente
+     * con el mismo contenido). Se llama antes de escribir el mensaje, fuera de
+     * cualquier lock, para que el registro nunca apunte a un blob que falta.
+     */
+    public static BlobStore.BlobRef storeAudio(byte[] data) throws IOException {
+        return blobs.put(data);
+    }
+
+    public static CompletableFuture<Void> appendGroup(String groupName) {
+        try {
+            log.append(MessageLog.encodeGroup(groupName));
+            return writer.sync();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        
-        json.append("\n  }");
-        return json.toString();
     }
-    
-    private static String listToJson(List<?> list) {
-        StringBuilder json = new StringBuilder();
-        json.append("[\n");
-        
-        for (int i = 0; i < list.size(); i++) {
-            if (i > 0) json.append(",\n");
-            
-            Object item = list.get(i);
-            if (item instanceof String) {
-
-                String str = (String) item;
-                if (str.trim().startsWith("{")) {
-                    json.append("      ").append(str);
-                } else {
-                    json.append("      \"").append(escapeJson(str)).append("\"");
-                }
-            } else if (item instanceof List) {
-                json.append("      ").append(listToJson((List<?>) item));
-            } else if (item instanceof Map) {
-                json.append("      ").append(mapToJson((Map<?, ?>) item));
-            } else {
-                json.append("      \"").append(escapeJson(item.toString())).append("\"");
-            }
+
+    /**
+     * Registra el alta ({@code join}) o la baja de un miembro de un grupo. Los
+     * cambios de un mismo grupo deben estar serializados con su aplicación en
+     * memoria.
+     */
+    public static CompletableFuture<Void> appendMembership(boolean join, String groupName, String username) {
+        try {
+            log.append(MessageLog.encodeMembership(join, groupName, username));
+            return writer.sync();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        
-        json.append("\n    ]");
-        return json.toString();
     }
-    
-    private static Map<String, Object> fromJson(String json) {
-        Map<String, Object> result = new HashMap<>();
-        
+
+    public static CompletableFuture<Void> appendUser(String username) {
         try {
+            log.append(MessageLog.encodeUser(username));
+            return writer.sync();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            json = json.trim();
-            if (!json.startsWith("{") || !json.endsWith("}")) {
-                throw new IllegalArgumentException("JSON inválido");
-            }
-            
-            int historialStart = json.indexOf("\"historial\"");
-            int gruposStart = json.indexOf("\"grupos\"");
-            
-            if (historialStart != -1) {
-                String historialJson = extractObject(json, historialStart);
-                result.put("historial", parseMap(historialJson));
-            }
-            
-            if (gruposStart != -1) {
-                String gruposJson = extractObject(json, gruposStart);
-                result.put("grupos", parseMap(gruposJson));
-            }
-            
-        } catch (Exception e) {
-            System.err.println("Error al parsear JSON: " + e.getMessage());
+    /**
+     * Devuelve los mensajes de una conversación, cargando su índice si estaba
+     * frío. Los que no estén en la caché se decodifican de los segmentos
+     * mapeados y se agregan a ella.
+     */
+    public static Message[] readMessages(ConversationLog index) {
+        ConversationLog.Entries entries = index.entries(CHAIN);
+        return readRange(index, entries, 0, entries.size());
+    }
 
+    /**
+     * Lee una página de mensajes de una conversación sin decodificar el resto.
+     * El cursor es el número de secuencia del mensaje (su posición en la
+     * conversación) o, si {@code cursorIsTimestamp}, un timestamp que se ubica
+     * con una búsqueda binaria en el índice. Hacia atrás se devuelven los
+     * mensajes anteriores al cursor; hacia adelante, el cursor y los
+     * siguientes. Un cursor negativo empieza por el extremo correspondiente.
+     */
+    public static HistoryPage readPage(ConversationLog index, long cursor, boolean cursorIsTimestamp,
+                                       boolean newer, int limit) {
+        ConversationLog.Entries entries = index.entries(CHAIN);
+        int size = entries.size();
+        int from;
+        if (cursor < 0) {
+            from = newer ? 0 : size;
+        } else if (cursorIsTimestamp) {
+            from = entries.firstIndexAtOrAfter(cursor);
+        } else {
+            from = (int) Math.min(cursor, size);
         }
-        
-        return result;
+
+        int start = newer ? from : Math.max(0, from - limit);
+        int end = newer ? Math.min(size, from + limit) : from;
+        Message[] messages = readRange(index, entries, start, end);
+        return newer
+                ? new HistoryPage(messages, end, end < size)
+                : new HistoryPage(messages, start, start > 0);
     }
-    
-    private static String extractObject(String json, int start) {
-        int colonPos = json.indexOf(':', start);
-        if (colonPos == -1) return "";
-        
-        int objStart = colonPos + 1;
-        while (objStart < json.length() && Character.isWhitespace(json.charAt(objStart))) {
-            objStart++;
+
+    private static Message[] readRange(ConversationLog index, ConversationLog.Entries entries, int start, int end) {
+        Message[] messages = cache.get(index, start, end);
+        if (messages != null) {
+            return messages;
         }
-        
-        if (objStart >= json.length()) return "";
-        
-        char firstChar = json.charAt(objStart);
-        if (firstChar == '{') {
-
-            int depth = 0;
-            int i = objStart;
-            while (i < json.length()) {
-                char c = json.charAt(i);
-                if (c == '{') depth++;
-                if (c == '}') {
-                    depth--;
-                    if (depth == 0) {
-                        return json.substring(objStart, i + 1);
-                    }
-                }
-                i++;
-            }
-        } else if (firstChar == '[') {
-
-            int depth = 0;
-            int i = objStart;
-            while (i < json.length()) {
-                char c = json.charAt(i);
-                if (c == '[') depth++;
-                if (c == ']') {
-                    depth--;
-                    if (depth == 0) {
-                        return json.substring(objStart, i + 1);
-                    }
-                }
-                i++;
-            }
+        messages = new Message[end - start];
+        for (int i = start; i < end; i++) {
+            messages[i - start] = readMessage(entries.positionAt(i));
         }
-        
-        return "";
+        cache.put(index, start, messages);
+        return messages;
     }
-    
 
-    private static Map<String, List<String>> parseMap(String json) {
-        Map<String, List<String>> result = new HashMap<>();
-        
-        if (json == null || json.trim().isEmpty() || !json.startsWith("{")) {
-            return result;
+    private static Message readMessage(long position) {
+        ByteBuffer payload = log.read(position);
+        byte kind = payload.get();
+        MessageLog.skipString(payload);     // clave de la conversación
+        if (kind == MessageLog.RECORD_MESSAGE_JSON) {
+            payload.getLong();              // timestamp
+            return parseLegacyMessage(MessageLog.readString(payload));
         }
-        
-
-        json = json.trim();
-        if (json.length() < 2) return result;
-        
-
-        String content = json.substring(1, json.length() - 1).trim();
-        
-
-        List<String> entries = splitJsonEntries(content);
-        
-        for (String entry : entries) {
-            int colonPos = entry.indexOf(':');
-            if (colonPos == -1) continue;
-            
-            String key = entry.substring(0, colonPos).trim();
-            String value = entry.substring(colonPos + 1).trim();
-            
-
-            key = key.replaceAll("^\"|\"$", "");
-            
-
-            List<String> list = parseList(value);
-            result.put(key, list);
+        if (kind == MessageLog.RECORD_MESSAGE_LINKED) {
+            payload.getLong();              // posición del mensaje anterior
         }
-        
-        return result;
+        return MessageCodec.decode(payload, blobs);
     }
-    
-    private static List<String> splitJsonEntries(String content) {
-        List<String> entries = new ArrayList<>();
-        if (content.trim().isEmpty()) return entries;
-        
-        int start = 0;
-        int depth = 0;
-        boolean inString = false;
-        
-        for (int i = 0; i < content.length(); i++) {
-            char c = content.charAt(i);
-            
-            if (c == '"' && (i == 0 || content.charAt(i - 1) != '\\')) {
-                inString = !inString;
-            } else if (!inString) {
-                if (c == '{' || c == '[') {
-                    depth++;
-                } else if (c == '}' || c == ']') {
-                    depth--;
-                } else if (c == ',' && depth == 0) {
-                    entries.add(content.substring(start, i).trim());
-                    start = i + 1;
-                }
+
+    // Recorre la cadena de registros enlazados de una conversación
+    static final ConversationLog.Chain CHAIN = new ConversationLog.Chain() {
+        @Override
+        public long previous(long position) {
+            ByteBuffer payload = linkedPayload(position);
+            return payload.getLong();
+        }
+
+        @Override
+        public long read(long position, ConversationLog.Row row) {
+            ByteBuffer payload = linkedPayload(position);
+            long previous = payload.getLong();
+            row.timestamp = MessageCodec.peekTimestamp(payload);
+            row.sender = MessageCodec.peekSender(payload);
+            row.type = MessageCodec.peekType(payload);
+            return previous;
+        }
+
+        private ByteBuffer linkedPayload(long position) {
+            ByteBuffer payload = log.read(position);
+            byte kind = payload.get();
+            if (kind != MessageLog.RECORD_MESSAGE_LINKED) {
+                throw new IllegalStateException("Registro sin enlace en la posición " + position);
             }
+            MessageLog.skipString(payload);
+            return payload;
         }
-        
+    };
 
-        if (start < content.length()) {
-            entries.add(content.substring(start).trim());
+    public static void close() {
+        if (log == null) return;
+        try {
+            if (evictor != null) {
+                evictor.shutdownNow();
+            }
+            if (checkpointer != null) {
+                checkpointer.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+            log.close();
+            LOG.info(blobs.getStats());
+            LOG.info(cache.getStats());
+            LOG.info("Almacén de historial cerrado: {}", log.getDirectory().toAbsolutePath());
+        } catch (Exception e) {
+            LOG.error("Error al cerrar el almacén de historial: {}", e.getMessage());
         }
-        
-        return entries;
     }
-    
 
-    private static List<String> parseList(String json) {
-        List<String> result = new ArrayList<>();
-        
-        if (json == null || json.trim().isEmpty() || !json.startsWith("[")) {
-            return result;
+    private static void apply(long position, ByteBuffer payload, Map<String, ConversationLog> conversaciones,
+                              GroupMembership grupos, Set<String> usuarios) {
+        byte kind = payload.get();
+        String name = MessageLog.readString(payload);
+        switch (kind) {
+            case MessageLog.RECORD_MESSAGE_LINKED:
+                payload.getLong();
+                conversaciones.computeIfAbsent(name, k -> new ConversationLog())
+                        .add(position, MessageCodec.peekTimestamp(payload), MessageCodec.peekSender(payload),
+                                MessageCodec.peekType(payload));
+                break;
+            case MessageLog.RECORD_MESSAGE: {
+                // Formatos sin enlace: la conversación no se puede recargar desde el log
+                ConversationLog index = conversaciones.computeIfAbsent(name, k -> new ConversationLog());
+                index.add(position, MessageCodec.peekTimestamp(payload), MessageCodec.peekSender(payload),
+                        MessageCodec.peekType(payload));
+                index.pin();
+                break;
+            }
+            case MessageLog.RECORD_MESSAGE_JSON: {
+                ConversationLog index = conversaciones.computeIfAbsent(name, k -> new ConversationLog());
+                long timestamp = payload.getLong();
+                Message msg = parseLegacyMessage(MessageLog.readString(payload));
+                index.add(position, timestamp, msg.from, MessageCodec.typeCode(msg.type));
+                index.pin();
+                break;
+            }
+            case MessageLog.RECORD_GROUP:
+                grupos.create(name);
+                conversaciones.putIfAbsent(name, new ConversationLog());
+                break;
+            case MessageLog.RECORD_GROUP_JOIN:
+                grupos.create(name);
+                grupos.join(name, MessageLog.readString(payload));
+                break;
+            case MessageLog.RECORD_GROUP_LEAVE:
+                grupos.leave(name, MessageLog.readString(payload));
+                break;
+            case MessageLog.RECORD_USER:
+                usuarios.add(name);
+                break;
+            default:
+                LOG.warn("Tipo de registro desconocido en el historial: {}", kind);
         }
-        
-        json = json.trim();
-        if (json.length() < 2) return result;
-        
-
-        String content = json.substring(1, json.length() - 1).trim();
-        if (content.isEmpty()) return result;
-        
-
-        List<String> items = splitJsonItems(content);
-        
-        for (String item : items) {
-            item = item.trim();
-
-            if (item.startsWith("\"") && item.endsWith("\"")) {
-                item = item.substring(1, item.length() - 1);
-                item = unescapeJson(item);
+    }
+
+    /**
+     * Con {@code chat.history.lazyLoad=true} los índices de las conversaciones
+     * se cargan al leerlas por primera vez y se descartan tras
+     * {@code chat.history.idleEvictSeconds} sin lecturas. Con {@code false}
+     * se cargan todos al arrancar y se mantienen en memoria.
+     */
+    private static void startLazyLoading(Map<String, ConversationLog> conversaciones) {
+        boolean lazy = Boolean.parseBoolean(System.getProperty("chat.history.lazyLoad", "true"));
+        long idleSeconds = Long.getLong("chat.history.idleEvictSeconds", 600);
+
+        if (!lazy) {
+            long start = System.nanoTime();
+            for (ConversationLog index : conversaciones.values()) {
+                index.entries(CHAIN);
             }
-            result.add(item);
+            LOG.info("Índices de historial cargados: {} conversaciones en {} ms",
+                    conversaciones.size(), toMillis(System.nanoTime() - start));
+            return;
         }
-        
-        return result;
+
+        // Lo reconstruido al reproducir el log no se ha leído todavía
+        evictIdle(conversaciones, 0);
+        if (idleSeconds <= 0) return;
+
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        long period = Math.max(1, idleSeconds / 4);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-history-evict");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(() -> {
+            int evicted = evictIdle(conversaciones, idleNanos);
+            if (evicted > 0) {
+                LOG.info("Historial: {} conversaciones inactivas descargadas de memoria", evicted);
+            }
+        }, period, period, TimeUnit.SECONDS);
     }
-    
 
-    private static List<String> splitJsonItems(String content) {
-        List<String> items = new ArrayList<>();
-        if (content.trim().isEmpty()) return items;
-        
-        int start = 0;
-        int depth = 0;
-        boolean inString = false;
-        
-        for (int i = 0; i < content.length(); i++) {
-            char c = content.charAt(i);
-            
-            if (c == '"' && (i == 0 || content.charAt(i - 1) != '\\')) {
-                inString = !inString;
-            } else if (!inString) {
-                if (c == '{' || c == '[') {
-                    depth++;
-                } else if (c == '}' || c == ']') {
-                    depth--;
-                } else if (c == ',' && depth == 0) {
-                    items.add(content.substring(start, i).trim());
-                    start = i + 1;
-                }
+    private static int evictIdle(Map<String, ConversationLog> conversaciones, long idleNanos) {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (ConversationLog index : conversaciones.values()) {
+            if (index.evictIfIdle(now, idleNanos)) {
+                evicted++;
             }
         }
-        
+        return evicted;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    // Destino de la importación: recibe cada mensaje y grupo a medida que se leen
+    private interface LegacySink {
+        void message(String conversation, Message msg) throws IOException;
+
+        void group(String name, List<String> members) throws IOException;
+    }
+
+    private interface LegacyReader {
+        void read(Path source, LegacySink sink) throws IOException;
+    }
+
+    // Se importa a un directorio temporal que se renombra al final, así una caída
+    // a mitad de la importación no deja un almacén parcial que impida reintentarla.
+    // Los registros se escriben mientras se lee el origen, sin cargarlo entero.
+    // Las versiones anteriores no guardaban miembros: cada grupo queda con los que
+    // figuran en el origen más quienes escribieron en él, como si se hubieran unido
+    // al enviar. Los mensajes a grupos que no figuran se importan, pero el grupo no
+    // se crea.
+    private static void importLegacy(Path source, Path segmentsPath, int segmentSize, LegacyReader reader)
+            throws IOException {
+        Path tmpPath = segmentsPath.resolveSibling(segmentsPath.getFileName() + ".tmp");
+        deleteDirectory(tmpPath);
+
+        long start = System.nanoTime();
+        int[] counts = new int[2];
+        Map<String, Long> heads = new HashMap<>();
+        // Miembros de los grupos ya escritos y remitentes de los que todavía no aparecieron
+        Map<String, Set<String>> groupMembers = new HashMap<>();
+        Map<String, Set<String>> groupSenders = new HashMap<>();
+        try (MessageLog importLog = new MessageLog(tmpPath, segmentSize)) {
+            reader.read(source, new LegacySink() {
+                @Override
+                public void message(String conversation, Message msg) throws IOException {
+                    if (msg.isGroup && msg.from != null && !msg.from.isEmpty()) {
+                        Set<String> joined = groupMembers.get(conversation);
+                        if (joined == null) {
+                            groupSenders.computeIfAbsent(conversation, k -> new LinkedHashSet<>()).add(msg.from);
+                        } else if (joined.add(msg.from)) {
+                            importLog.append(MessageLog.encodeMembership(true, conversation, msg.from));
+                        }
+                    }
+                    long previous = heads.getOrDefault(conversation, ConversationLog.NONE);
+                    BlobStore.BlobRef audio = msg.data != null && msg.data.length > 0 ? blobs.put(msg.data) : null;
+                    heads.put(conversation,
+                            importLog.append(MessageLog.encodeMessage(conversation, previous, msg, audio)));
+                    counts[0]++;
+                }
+
+                @Override
+                public void group(String name, List<String> members) throws IOException {
+                    importLog.append(MessageLog.encodeGroup(name));
+                    Set<String> joined = groupMembers.computeIfAbsent(name, k -> new HashSet<>());
+                    Set<String> senders = groupSenders.remove(name);
+                    for (String member : members) {
+                        if (joined.add(member)) {
+                            importLog.append(MessageLog.encodeMembership(true, name, member));
+                        }
+                    }
+                    if (senders != null) {
+                        for (String sender : senders) {
+                            if (joined.add(sender)) {
+                                importLog.append(MessageLog.encodeMembership(true, name, sender));
+                            }
+                        }
+                    }
+                    counts[1]++;
+                }
+            });
+        }
+        Files.move(tmpPath, segmentsPath, StandardCopyOption.ATOMIC_MOVE);
 
-        if (start < content.length()) {
-            items.add(content.substring(start).trim());
+        Path imported = source.resolveSibling(source.getFileName() + IMPORTED_SUFFIX);
+        Files.move(source, imported, StandardCopyOption.REPLACE_EXISTING);
+        LOG.info("Historial antiguo importado: {} mensajes, {} grupos en {} ms (original en {})",
+                counts[0], counts[1], toMillis(System.nanoTime() - start), imported.getFileName());
+    }
+
+    // Log de un solo archivo: [tipo][clave][json] para mensajes y [tipo][nombre] para grupos
+    private static void readLegacyLog(Path file, LegacySink sink) throws IOException {
+        MessageLog.scanLegacyFile(file, (position, payload) -> {
+            byte kind = payload.get();
+            String name = MessageLog.readString(payload);
+            try {
+                if (kind == MessageLog.RECORD_MESSAGE_JSON) {
+                    sink.message(name, parseLegacyMessage(MessageLog.readString(payload)));
+                } else if (kind == MessageLog.RECORD_GROUP) {
+                    sink.group(name, Collections.emptyList());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // history.json: se recorre en streaming desde el canal del archivo
+    private static void readHistoryJson(Path file, LegacySink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new JsonHistoryReader(channel).read(new JsonHistoryReader.Handler() {
+                @Override
+                public void message(String conversation, Message msg) throws IOException {
+                    sink.message(conversation, msg);
+                }
+
+                @Override
+                public void group(String name, List<String> members) throws IOException {
+                    sink.group(name, members);
+                }
+            });
         }
-        
-        return items;
     }
-    
 
-    private static String escapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+    // Mensaje guardado como JSON por versiones anteriores (audio en Base64)
+    private static Message parseLegacyMessage(String json) {
+        try {
+            return JsonHistoryReader.parseMessage(json);
+        } catch (Exception e) {
+            LOG.warn("Error parseando mensaje: {}", e.getMessage());
+            return new Message("", "", "", System.currentTimeMillis(), false, "text", new byte[0]);
+        }
     }
-    
 
-    private static String unescapeJson(String str) {
-        if (str == null) return "";
-        return str.replace("\\\"", "\"")
-                  .replace("\\\\", "\\")
-                  .replace("\\n", "\n")
-                  .replace("\\r", "\r")
-                  .replace("\\t", "\t");
+    private static void deleteDirectory(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        try (Stream<Path> walk = Files.walk(path)) {
+            List<Path> paths = new ArrayList<>();
+            walk.forEach(paths::add);
+            Collections.reverse(paths);
+            for (Path p : paths) {
+                Files.delete(p);
+            }
+        }
     }
 }
-
@@ -10,23 +10,44 @@ import Chat.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.text.SimpleDateFormat;
-import java.util.Base64;
 
 public class IceChatServer {
     
-    private static Map<String, MessageCallbackPrx> callbacks = new ConcurrentHashMap<>();
+    private static final Log LOG = Log.get(IceChatServer.class);
+    
+    // Usuario -> su suscriptor; varios usuarios pueden compartir uno (mismo callback)
+    private static Map<String, Subscriber> callbacks = new ConcurrentHashMap<>();
+    private static Map<MessageCallbackPrx, Subscriber> subscribers = new ConcurrentHashMap<>();
     private static Map<String, String> usernameToProxy = new ConcurrentHashMap<>();
     
     public static void main(String[] args) {
-        // Cargar historial y grupos guardados
-        HistoryManager.loadHistory(ChatServer.getHistorial(), ChatServer.getGrupos());
-        
+        // Cargar historial, grupos y usuarios guardados (snapshot más la cola del log).
+        // Sin historial no se puede guardar ningún mensaje: no se arranca
+        try {
+            HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+        } catch (java.lang.Exception e) {
+            LOG.error("No se pudo abrir el historial, el servidor no arranca: {}", e.getMessage(), e);
+            HistoryManager.close();
+            Log.shutdown();
+            System.exit(1);
+        }
+
         int status = 0;
         Communicator communicator = null;
+        ChatServiceI chatService = null;
+        ServerThreads.Mode threadMode = ServerThreads.modeFromSystemProperties();
+        ExecutorService dispatcher = null;
         
         try {
-            // Inicializar Ice
-            communicator = Util.initialize(args);
+            // Inicializar Ice. Con hilos virtuales, Ice sigue leyendo las conexiones
+            // en su pool pero cada petición se despacha en un hilo virtual propio
+            InitializationData initData = new InitializationData();
+            if (threadMode == ServerThreads.Mode.VIRTUAL) {
+                ExecutorService dispatch = ServerThreads.newPool(threadMode, "chat-dispatch", 0);
+                initData.dispatcher = (call, connection) -> dispatch.execute(call);
+                dispatcher = dispatch;
+            }
+            communicator = Util.initialize(args, initData);
             
             // Crear adaptador de objetos Ice con endpoint WebSocket (puerto 10000)
             ObjectAdapter adapter = communicator.createObjectAdapterWithEndpoints(
@@ -35,33 +56,44 @@ public class IceChatServer {
             );
             
             // Crear y activar el servidor
-            ChatServiceI chatService = new ChatServiceI();
-            ObjectPrx proxy = adapter.add(chatService, Util.stringToIdentity("ChatService"));
+            chatService = new ChatServiceI(threadMode);
+            // El interceptor mide cada operación antes de pasarla al servicio
+            ObjectPrx proxy = adapter.add(new MetricsInterceptor(chatService, ChatService._iceOps),
+                    Util.stringToIdentity("ChatService"));
+            MetricsServer.start(communicator);
             adapter.activate();
             
-            System.out.println("===========================================");
-            System.out.println("Servidor Ice de Chat iniciado");
-            System.out.println("WebSocket endpoint: ws://localhost:10000");
-            System.out.println("===========================================");
+            LOG.info("===========================================");
+            LOG.info("Servidor Ice de Chat iniciado");
+            LOG.info("WebSocket endpoint: ws://localhost:10000");
+            LOG.info("Hilos: {}", threadMode == ServerThreads.Mode.VIRTUAL ? "virtuales" : "del sistema");
+            LOG.info("===========================================");
             
             // Esperar hasta que se cierre
             communicator.waitForShutdown();
             
         } catch (java.lang.Exception e) {
-            System.err.println("Error en el servidor Ice: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error en el servidor Ice: {}", e.getMessage(), e);
             status = 1;
         } finally {
             if (communicator != null) {
                 try {
                     communicator.destroy();
                 } catch (java.lang.Exception e) {
-                    System.err.println("Error al destruir communicator: " + e.getMessage());
+                    LOG.error("Error al destruir communicator: {}", e.getMessage());
                     status = 1;
                 }
             }
-            // Guardar historial antes de cerrar
-            HistoryManager.saveHistory(ChatServer.getHistorial(), ChatServer.getGrupos());
+            if (chatService != null) {
+                chatService.shutdown();
+            }
+            MetricsServer.stop();
+            if (dispatcher != null) {
+                dispatcher.shutdownNow();
+            }
+            // Cerrar el log de historial (cada mensaje ya se persistió al enviarse)
+            HistoryManager.close();
+            Log.shutdown();
         }
         
         System.exit(status);
@@ -70,107 +102,249 @@ public class IceChatServer {
     // Implementación del servicio de chat
     static class ChatServiceI implements ChatService {
         
+        private static final int DEFAULT_PAGE_SIZE = 50;
+        private static final int MAX_PAGE_SIZE = Integer.getInteger("chat.history.maxPageSize", 200);
+        
+        // Los envíos a una misma conversación se serializan (cada registro enlaza con
+        // el anterior); el resto de las operaciones usa los mapas concurrentes sin lock
+        private final ConversationLocks locks = new ConversationLocks(Integer.getInteger("chat.server.lockStripes", 256));
+        
+        // Trabajo bloqueante de los métodos asíncronos (audio, lectura de historial,
+        // respuestas tras el fsync y el envío asíncrono a los suscriptores), fuera de los
+        // hilos de Ice. Con chat.server.threads=virtual son hilos virtuales, uno por tarea
+        private final ExecutorService workers;
+        
+        // Última entrega pendiente de cada conversación: las del mismo lote de fsync
+        // se completan en el executor y sin esto podrían notificarse en otro orden
+        private final Map<String, CompletableFuture<Void>> deliveryTails = new ConcurrentHashMap<>();
+        
+        // Grupos cuyo registro todavía no es durable (ver createGroupAsync)
+        private final Set<String> creatingGroups = ConcurrentHashMap.newKeySet();
+        
+        ChatServiceI() {
+            this(ServerThreads.modeFromSystemProperties());
+        }
+        
+        ChatServiceI(ServerThreads.Mode threadMode) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            workers = ServerThreads.newPool(threadMode, "chat-worker",
+                    Integer.getInteger("chat.server.workerThreads", Math.max(4, cores)));
+        }
+        
         @Override
-        public synchronized void registerUser(String username, Current current) throws ChatException {
+        public CompletionStage<Void> registerUserAsync(String username, Current current) {
             if (username == null || username.trim().isEmpty()) {
-                throw new ChatException("Nombre de usuario inválido");
+                return CompletableFuture.failedFuture(new ChatException("Nombre de usuario inválido"));
             }
             
-            ChatServer.getUsuariosRegistrados().add(username);
-            System.out.println("Usuario registrado: " + username);
+            // Solo se escribe en el log la primera vez que se registra el usuario; si no
+            // se puede guardar, se quita para que un nuevo intento lo vuelva a escribir
+            if (!ChatServer.getUsuariosRegistrados().add(username)) {
+                LOG.info("Usuario registrado: {}", username);
+                return CompletableFuture.completedFuture(null);
+            }
+            return respondWhenPersisted(HistoryManager.appendUser(username),
+                    () -> LOG.info("Usuario registrado: {}", username),
+                    () -> ChatServer.getUsuariosRegistrados().remove(username));
         }
         
         @Override
-        public synchronized void createGroup(String groupName, Current current) throws ChatException {
+        public CompletionStage<Void> createGroupAsync(String groupName, Current current) {
             if (groupName == null || groupName.trim().isEmpty()) {
-                throw new ChatException("Nombre de grupo inválido");
+                return CompletableFuture.failedFuture(new ChatException("Nombre de grupo inválido"));
             }
             
-            if (ChatServer.getGrupos().containsKey(groupName)) {
-                throw new ChatException("El grupo ya existe");
+            // El grupo se publica recién cuando su registro es durable: hasta entonces no
+            // se puede unir nadie ni enviarle mensajes, y si falla no queda en memoria.
+            // creatingGroups evita que otro createGroup del mismo nombre lo escriba de nuevo
+            CompletableFuture<Void> persisted;
+            synchronized (locks.lockFor(groupName)) {
+                if (ChatServer.getGrupos().exists(groupName) || !creatingGroups.add(groupName)) {
+                    return CompletableFuture.failedFuture(new ChatException("El grupo ya existe"));
+                }
+                persisted = HistoryManager.appendGroup(groupName);
+            }
+            return respondWhenPersisted(persisted, () -> {
+                synchronized (locks.lockFor(groupName)) {
+                    ChatServer.getGrupos().create(groupName);
+                    ChatServer.getHistorial().putIfAbsent(groupName, new ConversationLog());
+                    creatingGroups.remove(groupName);
+                }
+                LOG.info("Grupo creado: {}", groupName);
+            }, () -> creatingGroups.remove(groupName));
+        }
+        
+        @Override
+        public CompletionStage<Void> joinGroupAsync(String groupName, String username, Current current) {
+            if (groupName == null || username == null || username.trim().isEmpty()) {
+                return CompletableFuture.failedFuture(new ChatException("Datos inválidos para unirse al grupo"));
+            }
+            if (!ChatServer.getGrupos().exists(groupName)) {
+                return CompletableFuture.failedFuture(new ChatException("El grupo no existe"));
             }
             
-            ChatServer.getGrupos().put(groupName, new ArrayList<>());
-            ChatServer.getHistorial().put(groupName, new ArrayList<>());
-            System.out.println("Grupo creado: " + groupName);
+            // El cambio en memoria y su registro en el log van en el mismo orden que los
+            // demás cambios del grupo. Si ya era miembro no se escribe nada
+            CompletableFuture<Void> persisted;
+            synchronized (locks.lockFor(groupName)) {
+                if (!ChatServer.getGrupos().join(groupName, username)) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                persisted = HistoryManager.appendMembership(true, groupName, username);
+            }
+            return respondWhenPersisted(persisted,
+                    () -> LOG.info("{} se unió al grupo {}", username, groupName), () -> { });
+        }
+        
+        @Override
+        public CompletionStage<Void> leaveGroupAsync(String groupName, String username, Current current) {
+            if (groupName == null || username == null) {
+                return CompletableFuture.failedFuture(new ChatException("Datos inválidos para salir del grupo"));
+            }
             
-            HistoryManager.saveHistory(ChatServer.getHistorial(), ChatServer.getGrupos());
+            CompletableFuture<Void> persisted;
+            synchronized (locks.lockFor(groupName)) {
+                if (!ChatServer.getGrupos().leave(groupName, username)) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                persisted = HistoryManager.appendMembership(false, groupName, username);
+            }
+            return respondWhenPersisted(persisted,
+                    () -> LOG.info("{} salió del grupo {}", username, groupName), () -> { });
         }
         
         @Override
-        public synchronized void sendMessage(String from, String to, String content, boolean isGroup, Current current) 
-                throws ChatException {
+        public String[] getGroupMembers(String groupName, Current current) throws ChatException {
+            if (groupName == null || !ChatServer.getGrupos().exists(groupName)) {
+                throw new ChatException("El grupo no existe");
+            }
+            List<String> members = new ArrayList<>(ChatServer.getGrupos().members(groupName));
+            Collections.sort(members);
+            return members.toArray(new String[0]);
+        }
+        
+        @Override
+        public CompletionStage<Void> sendMessageAsync(String from, String to, String content, boolean isGroup,
+                                                      Current current) {
             if (from == null || to == null || content == null) {
-                throw new ChatException("Datos incompletos para enviar mensaje");
+                return CompletableFuture.failedFuture(new ChatException("Datos incompletos para enviar mensaje"));
             }
-            
-            long timestamp = System.currentTimeMillis();
-            String historyKey;
-            
-            if (isGroup) {
-                historyKey = to;
-            } else {
-                List<String> pair = Arrays.asList(from, to);
-                Collections.sort(pair);
-                historyKey = pair.get(0) + "_" + pair.get(1);
+            // Los grupos no se borran: si existe ahora, sigue existiendo al tomar el lock
+            if (isGroup && !ChatServer.getGrupos().exists(to)) {
+                return CompletableFuture.failedFuture(new ChatException("El grupo no existe"));
             }
             
-            // Crear mensaje
-            Message msg = new Message(from, to, content, timestamp, isGroup, "text", new byte[0]);
+            String historyKey = historyKey(to, from, isGroup);
             
-            // Guardar en historial
-            String messageJson = "{\"from\":\"" + escapeJson(from) + "\",\"to\":\"" +
-                    escapeJson(to) + "\",\"message\":\"" + escapeJson(content) +
-                    "\",\"timestamp\":\"" + timestamp + "\",\"isGroup\":" + isGroup + "}";
+            // Crear mensaje; la hora se pone con el lock tomado, en el orden del log
+            Message msg = new Message(from, to, content, 0, isGroup, "text", new byte[0]);
             
-            ChatServer.getHistorial().computeIfAbsent(historyKey, k -> new ArrayList<>()).add(messageJson);
-            HistoryManager.saveHistory(ChatServer.getHistorial(), ChatServer.getGrupos());
+            OperationEvent event = OperationEvent.current();
+            if (event != null) {
+                event.conversation = historyKey;
+                event.payloadBytes = MessageCodec.encodedSize(msg);
+            }
             
-            System.out.println("Mensaje de " + from + " a " + to + ": " + content);
+            // Guardar en historial: el orden en memoria y en el log debe coincidir.
+            // La copia al segmento es en memoria; el fsync se espera sin ocupar el hilo de Ice
+            CompletableFuture<Void> persisted;
+            CompletableFuture<Void> previous;
+            CompletableFuture<Void> delivered = new CompletableFuture<>();
+            long lockRequested = event != null ? System.nanoTime() : 0;
+            synchronized (locks.lockFor(historyKey)) {
+                if (event != null) {
+                    event.lockWait = System.nanoTime() - lockRequested;
+                }
+                if (isGroup) {
+                    joinOnSend(to, from);
+                }
+                ConversationLog index = ChatServer.getHistorial().computeIfAbsent(historyKey, k -> new ConversationLog());
+                msg.timestamp = HistoryManager.nextTimestamp(index);
+                persisted = HistoryManager.appendMessage(index, historyKey, msg);
+                previous = deliveryTails.put(historyKey, delivered);
+            }
             
-            // Notificar en tiempo real
-            notifyMessage(msg, to, isGroup);
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            completeWhenPersisted(historyKey, persisted, previous, delivered, result, () -> {
+                // El contenido solo se registra si se pide, y de una muestra
+                if (Log.sampleContent()) {
+                    LOG.info("Mensaje de {} a {}: {}", from, to, content);
+                } else {
+                    LOG.debug("Mensaje de {} a {}", from, to);
+                }
+                
+                // Notificar en tiempo real
+                notifyMessage(msg, to, isGroup);
+            });
+            return result;
         }
         
         @Override
-        public synchronized void sendAudio(String from, String to, byte[] data, boolean isGroup, Current current) 
-                throws ChatException {
+        public CompletionStage<Void> sendAudioAsync(String from, String to, byte[] data, boolean isGroup,
+                                                    Current current) {
             if (from == null || to == null || data == null) {
-                throw new ChatException("Datos incompletos para enviar audio");
+                return CompletableFuture.failedFuture(new ChatException("Datos incompletos para enviar audio"));
             }
-            
-            long timestamp = System.currentTimeMillis();
-            String historyKey;
-            
-            if (isGroup) {
-                historyKey = to;
-            } else {
-                List<String> pair = Arrays.asList(from, to);
-                Collections.sort(pair);
-                historyKey = pair.get(0) + "_" + pair.get(1);
+            if (isGroup && !ChatServer.getGrupos().exists(to)) {
+                return CompletableFuture.failedFuture(new ChatException("El grupo no existe"));
             }
             
-            // Crear mensaje de audio
-            Message msg = new Message(from, to, "[Nota de voz]", timestamp, isGroup, "audio", data);
-            
-            // Guardar en historial (convertir audio a base64 para JSON)
-            String audioBase64 = Base64.getEncoder().encodeToString(data);
-            String messageJson = "{\"from\":\"" + escapeJson(from) + "\",\"to\":\"" +
-                    escapeJson(to) + "\",\"message\":\"[Nota de voz]\",\"timestamp\":\"" + 
-                    timestamp + "\",\"isGroup\":" + isGroup + ",\"type\":\"audio\",\"audioData\":\"" + 
-                    audioBase64 + "\"}";
+            String historyKey = historyKey(to, from, isGroup);
             
-            ChatServer.getHistorial().computeIfAbsent(historyKey, k -> new ArrayList<>()).add(messageJson);
-            HistoryManager.saveHistory(ChatServer.getHistorial(), ChatServer.getGrupos());
+            // Crear mensaje de audio; la hora se pone con el lock tomado, en el orden del log
+            Message msg = new Message(from, to, "[Nota de voz]", 0, isGroup, "audio", data);
             
-            System.out.println("Nota de voz de " + from + " a " + to);
+            // El worker completa el evento del hilo de Ice
+            OperationEvent event = OperationEvent.current();
+            if (event != null) {
+                event.conversation = historyKey;
+                event.payloadBytes = data.length;
+            }
             
-            // Notificar en tiempo real
-            notifyMessage(msg, to, isGroup);
+            // Guardar el audio (hash y escritura a disco) bloquea: se hace en un worker
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            workers.execute(() -> {
+                // El audio se guarda aparte (deduplicado por contenido) antes de tomar el lock
+                BlobStore.BlobRef audio;
+                try {
+                    audio = HistoryManager.storeAudio(data);
+                } catch (java.io.IOException e) {
+                    LOG.error("Error guardando nota de voz: {}", e.getMessage());
+                    result.completeExceptionally(new ChatException("No se pudo guardar la nota de voz"));
+                    return;
+                }
+                
+                // Guardar en historial solo la referencia al audio: el orden en memoria y
+                // en el log debe coincidir
+                CompletableFuture<Void> persisted;
+                CompletableFuture<Void> previous;
+                CompletableFuture<Void> delivered = new CompletableFuture<>();
+                long lockRequested = event != null ? System.nanoTime() : 0;
+                synchronized (locks.lockFor(historyKey)) {
+                    if (event != null) {
+                        event.lockWait = System.nanoTime() - lockRequested;
+                    }
+                    if (isGroup) {
+                        joinOnSend(to, from);
+                    }
+                    ConversationLog index = ChatServer.getHistorial().computeIfAbsent(historyKey, k -> new ConversationLog());
+                    msg.timestamp = HistoryManager.nextTimestamp(index);
+                    persisted = HistoryManager.appendMessage(index, historyKey, msg, audio);
+                    previous = deliveryTails.put(historyKey, delivered);
+                }
+                
+                completeWhenPersisted(historyKey, persisted, previous, delivered, result, () -> {
+                    LOG.debug("Nota de voz de {} a {}", from, to);
+                    
+                    // Notificar en tiempo real
+                    notifyMessage(msg, to, isGroup);
+                });
+            });
+            return result;
         }
         
         @Override
-        public synchronized void startCall(String from, String to, boolean isGroup, Current current) 
+        public void startCall(String from, String to, boolean isGroup, Current current) 
                 throws ChatException {
             if (from == null || to == null) {
                 throw new ChatException("Datos incompletos para iniciar llamada");
@@ -179,196 +353,273 @@ public class IceChatServer {
             long timestamp = System.currentTimeMillis();
             Message msg = new Message(from, to, "[Llamada iniciada]", timestamp, isGroup, "call", new byte[0]);
             
-            System.out.println("Llamada iniciada de " + from + " a " + to);
+            LOG.info("Llamada iniciada de {} a {}", from, to);
             
             // Notificar en tiempo real
             notifyMessage(msg, to, isGroup);
         }
         
         @Override
-        public synchronized Message[] getHistory(String target, String fromUser, boolean isGroup, Current current) 
-                throws ChatException {
+        public CompletionStage<Message[]> getHistoryAsync(String target, String fromUser, boolean isGroup,
+                                                          Current current) {
             if (target == null) {
-                return new Message[0];
+                return CompletableFuture.completedFuture(new Message[0]);
             }
             
-            String historyKey;
-            if (isGroup) {
-                historyKey = target;
-            } else {
-                List<String> pair = Arrays.asList(fromUser, target);
-                Collections.sort(pair);
-                historyKey = pair.get(0) + "_" + pair.get(1);
+            String historyKey = historyKey(target, fromUser, isGroup);
+            OperationEvent event = OperationEvent.current();
+            if (event != null) {
+                event.conversation = historyKey;
+            }
+            
+            ConversationLog index = ChatServer.getHistorial().get(historyKey);
+            if (index == null) {
+                return CompletableFuture.completedFuture(new Message[0]);
+            }
+            
+            // MessageSeq se traduce a Message[] en Java; cargar y decodificar se hace en un worker
+            return CompletableFuture.supplyAsync(() -> HistoryManager.readMessages(index), workers);
+        }
+        
+        @Override
+        public HistoryPage getHistoryPage(String target, String fromUser, boolean isGroup, long cursor,
+                                          boolean cursorIsTimestamp, HistoryDirection direction, int limit,
+                                          Current current) throws ChatException {
+            if (target == null) {
+                return new HistoryPage(new Message[0], 0, false);
             }
             
-            List<String> history = ChatServer.getHistorial().getOrDefault(historyKey, new ArrayList<>());
-            List<Message> messages = new ArrayList<>();
+            String historyKey = historyKey(target, fromUser, isGroup);
+            OperationEvent event = OperationEvent.current();
+            if (event != null) {
+                event.conversation = historyKey;
+            }
             
-            for (String msgJson : history) {
-                messages.add(parseMessageFromJson(msgJson));
+            ConversationLog index = ChatServer.getHistorial().get(historyKey);
+            if (index == null) {
+                return new HistoryPage(new Message[0], 0, false);
             }
             
-            // MessageSeq se traduce a Message[] en Java
-            return messages.toArray(new Message[0]);
+            // Solo se decodifican los mensajes de la página
+            int pageSize = limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : DEFAULT_PAGE_SIZE;
+            return HistoryManager.readPage(index, cursor, cursorIsTimestamp,
+                    direction == HistoryDirection.Newer, pageSize);
         }
         
         @Override
-        public synchronized String[] getUsers(Current current) throws ChatException {
+        public String[] getUsers(Current current) throws ChatException {
             List<String> users = new ArrayList<>(ChatServer.getUsuariosRegistrados());
             Collections.sort(users);
             return users.toArray(new String[0]);
         }
         
         @Override
-        public synchronized String[] getGroups(Current current) throws ChatException {
-            List<String> groups = new ArrayList<>(ChatServer.getGrupos().keySet());
+        public String[] getGroups(Current current) throws ChatException {
+            List<String> groups = new ArrayList<>(ChatServer.getGrupos().names());
             return groups.toArray(new String[0]);
         }
         
         @Override
-        public synchronized void subscribe(MessageCallbackPrx callback, String username, Current current) 
+        public void subscribe(MessageCallbackPrx callback, String username, Current current) 
                 throws ChatException {
             if (callback == null || username == null) {
                 throw new ChatException("Datos inválidos para suscripción");
             }
             
-            callbacks.put(username, callback);
+            // Los cambios de suscripción son pocos: se serializan entre sí
+            synchronized (subscribers) {
+                Subscriber subscriber = subscribers.get(callback);
+                if (subscriber == null || subscriber.isClosed()) {
+                    // Si se cerró porque se perdió la conexión, se empieza con uno nuevo
+                    subscriber = new Subscriber(callback, this::removeSubscriber);
+                    subscribers.put(callback, subscriber);
+                }
+                subscriber.addUser(username);
+                Subscriber previous = callbacks.put(username, subscriber);
+                if (previous != null && previous != subscriber) {
+                    detach(previous, username);
+                }
+            }
             usernameToProxy.put(username, callback.toString());
-            System.out.println("Usuario suscrito: " + username);
+            LOG.info("Usuario suscrito: {}", username);
         }
         
         @Override
-        public synchronized void unsubscribe(String username, Current current) throws ChatException {
+        public void unsubscribe(String username, Current current) throws ChatException {
             if (username != null) {
-                callbacks.remove(username);
+                synchronized (subscribers) {
+                    Subscriber subscriber = callbacks.remove(username);
+                    if (subscriber != null) {
+                        detach(subscriber, username);
+                    }
+                }
                 usernameToProxy.remove(username);
-                System.out.println("Usuario desuscrito: " + username);
+                LOG.info("Usuario desuscrito: {}", username);
             }
         }
         
-        private void notifyMessage(Message msg, String target, boolean isGroup) {
+        // Clave del historial: el grupo, o los dos usuarios en orden alfabético
+        static String historyKey(String target, String user, boolean isGroup) {
             if (isGroup) {
-                // Notificar a todos los suscriptores usando onGroupMessage
-                for (Map.Entry<String, MessageCallbackPrx> entry : callbacks.entrySet()) {
-                    try {
-                        entry.getValue().onGroupMessage(msg, target);
-                        System.out.println("✅ Notificación enviada a " + entry.getKey() + " (grupo)");
-                    } catch (com.zeroc.Ice.ConnectionLostException e) {
-                        System.err.println("⚠️  Conexión perdida con " + entry.getKey() + " (grupo), removiendo callback");
-                        callbacks.remove(entry.getKey());
-                        usernameToProxy.remove(entry.getKey());
-                    } catch (java.lang.Exception e) {
-                        System.err.println("❌ Error notificando a " + entry.getKey() + " (grupo): " + 
-                            (e.getMessage() != null ? e.getMessage() : e.getClass().getName()));
-                        if (e.getCause() != null) {
-                            System.err.println("   Causa: " + e.getCause().getMessage());
-                        }
-                        e.printStackTrace();
-                    }
+                return target;
+            }
+            return user.compareTo(target) <= 0 ? user + "_" + target : target + "_" + user;
+        }
+        
+        // Las entregas son asíncronas (ver Subscriber): recorrer los suscriptores no
+        // espera a ninguno
+        void notifyMessage(Message msg, String target, boolean isGroup) {
+            // Se serializa una sola vez para todos los destinatarios
+            OutgoingMessage outgoing = new OutgoingMessage(msg, isGroup ? target : null);
+            // Los destinatarios se agrupan por callback: cada uno recibe el mensaje
+            // una vez, con la lista de sus usuarios a los que va
+            Map<Subscriber, List<String>> recipients = new HashMap<>();
+            if (isGroup) {
+                // Notificar solo a los miembros del grupo que estén suscritos
+                for (String member : ChatServer.getGrupos().members(target)) {
+                    addRecipient(recipients, member);
                 }
             } else {
-                // Notificar solo al destinatario
-                MessageCallbackPrx targetCallback = callbacks.get(target);
-                if (targetCallback != null) {
-                    try {
-                        targetCallback.onMessage(msg);
-                        System.out.println("✅ Notificación enviada a destinatario: " + target);
-                    } catch (com.zeroc.Ice.ConnectionLostException e) {
-                        System.err.println("⚠️  Conexión perdida con destinatario " + target + ", removiendo callback");
-                        callbacks.remove(target);
-                        usernameToProxy.remove(target);
-                    } catch (java.lang.Exception e) {
-                        System.err.println("❌ Error notificando a destinatario " + target + ": " + 
-                            (e.getMessage() != null ? e.getMessage() : e.getClass().getName()));
-                        if (e.getCause() != null) {
-                            System.err.println("   Causa: " + e.getCause().getMessage());
-                        }
-                        e.printStackTrace();
-                    }
-                } else {
-                    System.out.println("⚠️  No hay callback registrado para destinatario: " + target);
+                // Notificar al destinatario y también al remitente
+                if (!addRecipient(recipients, target)) {
+                    LOG.debug("⚠️  No hay callback registrado para destinatario: {}", target);
                 }
-                // También notificar al remitente
-                MessageCallbackPrx senderCallback = callbacks.get(msg.from);
-                if (senderCallback != null) {
-                    try {
-                        senderCallback.onMessage(msg);
-                        System.out.println("✅ Notificación enviada a remitente: " + msg.from);
-                    } catch (com.zeroc.Ice.ConnectionLostException e) {
-                        System.err.println("⚠️  Conexión perdida con remitente " + msg.from + ", removiendo callback");
-                        callbacks.remove(msg.from);
-                        usernameToProxy.remove(msg.from);
-                    } catch (java.lang.Exception e) {
-                        System.err.println("❌ Error notificando a remitente " + msg.from + ": " + 
-                            (e.getMessage() != null ? e.getMessage() : e.getClass().getName()));
-                        if (e.getCause() != null) {
-                            System.err.println("   Causa: " + e.getCause().getMessage());
-                        }
-                        e.printStackTrace();
-                    }
-                } else {
-                    System.out.println("⚠️  No hay callback registrado para remitente: " + msg.from);
+                if (!msg.from.equals(target) && !addRecipient(recipients, msg.from)) {
+                    LOG.debug("⚠️  No hay callback registrado para remitente: {}", msg.from);
                 }
             }
+            recipients.forEach((subscriber, users) ->
+                    subscriber.deliver(outgoing, users.toArray(new String[0])));
         }
         
-        private Message parseMessageFromJson(String json) {
-            try {
-                String from = extractValue(json, "from");
-                String to = extractValue(json, "to");
-                String content = extractValue(json, "message");
-                String timestampStr = extractValue(json, "timestamp");
-                long timestamp = timestampStr != null ? Long.parseLong(timestampStr) : System.currentTimeMillis();
-                String isGroupStr = extractValue(json, "isGroup");
-                boolean isGroup = "true".equals(isGroupStr);
-                String type = extractValue(json, "type");
-                if (type == null) type = "text";
-                
-                byte[] audioData = new byte[0];
-                if ("audio".equals(type)) {
-                    String audioBase64 = extractValue(json, "audioData");
-                    if (audioBase64 != null) {
-                        audioData = Base64.getDecoder().decode(audioBase64);
+        private boolean addRecipient(Map<Subscriber, List<String>> recipients, String username) {
+            Subscriber subscriber = callbacks.get(username);
+            if (subscriber == null) {
+                return false;
+            }
+            recipients.computeIfAbsent(subscriber, k -> new ArrayList<>(1)).add(username);
+            return true;
+        }
+        
+        // Quien envía a un grupo pasa a ser miembro (así los clientes que no usan
+        // joinGroup siguen recibiendo los mensajes de los grupos en los que escriben).
+        // Se llama con el lock del grupo tomado; el registro queda antes que el del
+        // mensaje en el log, así que el fsync del mensaje también lo cubre
+        private void joinOnSend(String groupName, String username) {
+            if (ChatServer.getGrupos().join(groupName, username)) {
+                HistoryManager.appendMembership(true, groupName, username);
+                LOG.info("{} se unió al grupo {} al enviar un mensaje", username, groupName);
+            }
+        }
+        
+        // Quita un usuario de su suscriptor y, si no le queda ninguno, lo cierra.
+        // Con el lock de subscribers tomado
+        private void detach(Subscriber subscriber, String username) {
+            if (subscriber.removeUser(username)) {
+                subscriber.close();
+                subscribers.remove(subscriber.getCallback(), subscriber);
+            }
+        }
+        
+        // Se perdió la conexión: se quitan los usuarios que no se volvieron a
+        // suscribir con otro proxy mientras tanto
+        private void removeSubscriber(Subscriber subscriber) {
+            synchronized (subscribers) {
+                subscribers.remove(subscriber.getCallback(), subscriber);
+                for (String username : subscriber.getUsernames()) {
+                    if (callbacks.remove(username, subscriber)) {
+                        usernameToProxy.remove(username);
                     }
                 }
-                
-                return new Message(from, to, content, timestamp, isGroup, type, audioData);
-            } catch (java.lang.Exception e) {
-                System.err.println("Error parseando mensaje: " + e.getMessage());
-                return new Message("", "", "", System.currentTimeMillis(), false, "text", new byte[0]);
             }
         }
         
-        private String extractValue(String json, String key) {
+        // El futuro de persistencia lo completa el hilo del writer: la respuesta y el
+        // envío a los suscriptores siguen en el executor del servant para no
+        // demorar el próximo lote de fsync. deliver solo inicia las entregas asíncronas.
+        // Cada envío espera además a la entrega anterior de su conversación (previous,
+        // tomada con el lock junto con el append), así se notifica en el orden del log.
+        // El hilo que completa solo encola: si el executor ya no acepta tareas (shutdown)
+        // la respuesta falla en lugar de quedar pendiente
+        void completeWhenPersisted(String historyKey, CompletableFuture<Void> persisted,
+                                   CompletableFuture<Void> previous, CompletableFuture<Void> delivered,
+                                   CompletableFuture<Void> result, Runnable deliver) {
+            CompletableFuture<Void> ready = previous == null || previous.isDone()
+                    ? persisted
+                    : CompletableFuture.allOf(previous, persisted);
+            ready.whenComplete((ignored, error) -> {
+                try {
+                    workers.execute(() -> finishSend(historyKey, error, delivered, result, deliver));
+                } catch (RejectedExecutionException e) {
+                    LOG.warn("Envío sin responder, el servidor se está deteniendo: {}", historyKey);
+                    result.completeExceptionally(new ChatException("El servidor se está deteniendo"));
+                    delivered.complete(null);
+                    deliveryTails.remove(historyKey, delivered);
+                }
+            });
+        }
+        
+        private void finishSend(String historyKey, Throwable error, CompletableFuture<Void> delivered,
+                                CompletableFuture<Void> result, Runnable deliver) {
             try {
-                String searchKey = "\"" + key + "\":\"";
-                int start = json.indexOf(searchKey);
-                if (start == -1) {
-                    searchKey = "\"" + key + "\":";
-                    start = json.indexOf(searchKey);
-                    if (start == -1) return null;
-                    start += searchKey.length();
-                    int end = json.indexOf(",", start);
-                    if (end == -1) end = json.indexOf("}", start);
-                    if (end == -1) return null;
-                    return json.substring(start, end).trim().replace("\"", "");
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    LOG.error("Error de persistencia: {}", cause.getMessage());
+                    result.completeExceptionally(new ChatException("No se pudo guardar en el historial"));
+                    return;
+                }
+                try {
+                    deliver.run();
+                } catch (Throwable e) {
+                    // El mensaje ya está guardado: se confirma aunque falle la notificación
+                    LOG.error("Error notificando el mensaje de {}", historyKey, e);
                 }
-                start += searchKey.length();
-                int end = json.indexOf("\"", start);
-                if (end == -1) return null;
-                return json.substring(start, end);
-            } catch (java.lang.Exception e) {
-                return null;
+                result.complete(null);
+            } finally {
+                // previous nunca falla: un error de persistencia no frena a los siguientes
+                delivered.complete(null);
+                deliveryTails.remove(historyKey, delivered);
             }
         }
         
-        private String escapeJson(String str) {
-            if (str == null) return "";
-            return str.replace("\\", "\\\\")
-                    .replace("\"", "\\\"")
-                    .replace("\n", "\\n")
-                    .replace("\r", "\\r")
-                    .replace("\t", "\\t");
+        /** Detiene el executor, esperando hasta unos segundos a que termine lo ya encolado. */
+        void shutdown() {
+            LOG.info(Subscriber.getPolicy().getStats());
+            workers.shutdown();
+            try {
+                workers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            workers.shutdownNow();
+        }
+        
+        // Respuesta de los cambios que no son mensajes (usuarios y grupos), cuando su
+        // registro es durable. Como los envíos, sigue en el executor para no demorar el
+        // próximo lote de fsync; si ya no acepta tareas (shutdown) se responde en el
+        // hilo que completó. onFailed deshace lo que se había aplicado en memoria
+        private CompletableFuture<Void> respondWhenPersisted(CompletableFuture<Void> persisted,
+                                                             Runnable onPersisted, Runnable onFailed) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            persisted.whenComplete((ignored, error) -> {
+                Runnable respond = () -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        LOG.error("Error de persistencia: {}", cause.getMessage());
+                        onFailed.run();
+                        result.completeExceptionally(new ChatException("No se pudo guardar en el historial"));
+                        return;
+                    }
+                    onPersisted.run();
+                    result.complete(null);
+                };
+                try {
+                    workers.execute(respond);
+                } catch (RejectedExecutionException e) {
+                    respond.run();
+                }
+            });
+            return result;
         }
     }
 }
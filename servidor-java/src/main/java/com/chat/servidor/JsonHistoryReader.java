@@ -0,0 +1,346 @@
+package com.chat.servidor;
+
+import Chat.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Lector en streaming, de una sola pasada, del history.json antiguo.
+ *
+ * Lee del canal en bloques de tamaño fijo y decodifica el UTF-8 de forma
+ * incremental, así que la memoria usada no depende del tamaño del archivo sino
+ * del valor más grande (normalmente un audio en Base64). Cada mensaje y cada
+ * grupo se entregan al {@link Handler} en cuanto se terminan de leer.
+ *
+ * Formato esperado:
+ * <pre>
+ * {"historial": {"clave": [{"from": ..., "to": ..., "message": ..., ...}, ...]},
+ *  "grupos": {"nombre": ["miembro", ...]}}
+ * </pre>
+ * Las claves desconocidas se saltan. Los escapes de JSON se interpretan
+ * completos, incluidos {@code \\uXXXX} y las barras invertidas escapadas.
+ */
+public class JsonHistoryReader {
+
+    private static final Log LOG = Log.get(JsonHistoryReader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Recibe los datos a medida que se leen. */
+    public interface Handler {
+        void message(String conversation, Message msg) throws IOException;
+
+        void group(String name, List<String> members) throws IOException;
+    }
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder text = new StringBuilder();
+    private boolean endOfInput;
+    private boolean flushed;
+    private long offset;
+
+    public JsonHistoryReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        chars.flip();
+    }
+
+    /** Lee el documento completo entregando cada conversación y grupo al handler. */
+    public void read(Handler handler) throws IOException {
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                if ("historial".equals(key)) {
+                    readHistorial(handler);
+                } else if ("grupos".equals(key)) {
+                    readGrupos(handler);
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+    }
+
+    /** Interpreta un mensaje guardado como texto JSON (log de un solo archivo). */
+    public static Message parseMessage(String json) throws IOException {
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        JsonHistoryReader reader = new JsonHistoryReader(Channels.newChannel(new ByteArrayInputStream(data)));
+        return reader.readMessage();
+    }
+
+    private void readHistorial(Handler handler) throws IOException {
+        expect('{');
+        if (consumeIf('}')) return;
+        do {
+            String conversation = readString();
+            expect(':');
+            expect('[');
+            if (!consumeIf(']')) {
+                do {
+                    int c = peek();
+                    if (c == '{') {
+                        handler.message(conversation, readMessage());
+                    } else if (c == '"') {
+                        // Mensaje guardado como texto JSON dentro de la lista
+                        handler.message(conversation, parseMessage(readString()));
+                    } else {
+                        skipValue();
+                    }
+                } while (consumeIf(','));
+                expect(']');
+            }
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    private void readGrupos(Handler handler) throws IOException {
+        expect('{');
+        if (consumeIf('}')) return;
+        do {
+            String name = readString();
+            expect(':');
+            List<String> members = new ArrayList<>();
+            expect('[');
+            if (!consumeIf(']')) {
+                do {
+                    String member = readScalar();
+                    if (member != null) {
+                        members.add(member);
+                    }
+                } while (consumeIf(','));
+                expect(']');
+            }
+            handler.group(name, members);
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    private Message readMessage() throws IOException {
+        String from = "";
+        String to = "";
+        String content = "";
+        String timestamp = null;
+        boolean isGroup = false;
+        String type = "text";
+        String audioBase64 = null;
+
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                String key = readString();
+                expect(':');
+                String value = readScalar();
+                if (value == null) continue;
+                switch (key) {
+                    case "from": from = value; break;
+                    case "to": to = value; break;
+                    case "message": content = value; break;
+                    case "timestamp": timestamp = value; break;
+                    case "isGroup": isGroup = "true".equals(value); break;
+                    case "type": type = value; break;
+                    case "audioData": audioBase64 = value; break;
+                    default: break;
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+
+        long time;
+        try {
+            time = timestamp != null ? Long.parseLong(timestamp.trim()) : System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            time = System.currentTimeMillis();
+        }
+        byte[] audio = new byte[0];
+        if ("audio".equals(type) && audioBase64 != null) {
+            try {
+                audio = Base64.getDecoder().decode(audioBase64);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Audio con Base64 inválido de {} a {}, se importa sin datos", from, to);
+            }
+        }
+        return new Message(from, to, content, time, isGroup, type, audio);
+    }
+
+    // Devuelve el texto de un string o literal (número, true, false); null para
+    // null, objetos y arreglos, que se saltan.
+    private String readScalar() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            skipValue();
+            return null;
+        }
+        String literal = readLiteral();
+        return "null".equals(literal) ? null : literal;
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        text.setLength(0);
+        while (true) {
+            int c = next();
+            if (c == '"') {
+                return text.toString();
+            }
+            if (c == '\\') {
+                int escaped = next();
+                switch (escaped) {
+                    case '"': text.append('"'); break;
+                    case '\\': text.append('\\'); break;
+                    case '/': text.append('/'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'u': text.append(readHexChar()); break;
+                    default: throw error("escape inválido '\\" + (char) escaped + "'");
+                }
+            } else if (c == -1) {
+                throw error("string sin cerrar");
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private char readHexChar() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) {
+                throw error("escape \\u inválido");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private String readLiteral() throws IOException {
+        skipWhitespace();
+        StringBuilder literal = new StringBuilder();
+        while (true) {
+            int c = peekRaw();
+            if (c == -1 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) break;
+            literal.append((char) next());
+        }
+        if (literal.length() == 0) {
+            throw error("se esperaba un valor");
+        }
+        return literal.toString();
+    }
+
+    // Salta un valor completo sin guardarlo (los strings se recorren para
+    // respetar los escapes).
+    private void skipValue() throws IOException {
+        int c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{') {
+            expect('{');
+            if (consumeIf('}')) return;
+            do {
+                readString();
+                expect(':');
+                skipValue();
+            } while (consumeIf(','));
+            expect('}');
+        } else if (c == '[') {
+            expect('[');
+            if (consumeIf(']')) return;
+            do {
+                skipValue();
+            } while (consumeIf(','));
+            expect(']');
+        } else {
+            readLiteral();
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        skipWhitespace();
+        int c = next();
+        if (c != expected) {
+            throw error("se esperaba '" + expected + "' pero se encontró " +
+                    (c == -1 ? "el fin del archivo" : "'" + (char) c + "'"));
+        }
+    }
+
+    private boolean consumeIf(char expected) throws IOException {
+        if (peek() == expected) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            int c = peekRaw();
+            if (c == -1 || !Character.isWhitespace(c)) return;
+            next();
+        }
+    }
+
+    private int peek() throws IOException {
+        skipWhitespace();
+        return peekRaw();
+    }
+
+    private int peekRaw() throws IOException {
+        if (!chars.hasRemaining() && !fill()) return -1;
+        return chars.get(chars.position());
+    }
+
+    private int next() throws IOException {
+        if (!chars.hasRemaining() && !fill()) return -1;
+        offset++;
+        return chars.get();
+    }
+
+    private boolean fill() throws IOException {
+        if (flushed) return false;
+        chars.clear();
+        while (chars.position() == 0) {
+            if (!endOfInput && bytes.hasRemaining()) {
+                endOfInput = channel.read(bytes) < 0;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if (endOfInput) {
+                if (!result.isOverflow()) {
+                    decoder.flush(chars);
+                    flushed = true;
+                }
+                break;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    private IOException error(String detail) {
+        return new IOException("JSON inválido cerca del carácter " + offset + ": " + detail);
+    }
+}
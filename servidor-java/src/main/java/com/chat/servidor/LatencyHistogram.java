@@ -0,0 +1,97 @@
+package com.chat.servidor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias al estilo HDR: cubetas log-lineales sobre un
+ * {@link AtomicLongArray}, sin locks ni memoria por muestra.
+ *
+ * Los valores menores que {@code 2^SUB_BITS} tienen cubeta propia; a partir de
+ * ahí cada potencia de dos se parte en {@code 2^(SUB_BITS-1)} cubetas iguales,
+ * así el error relativo de un percentil es menor que {@code 1/2^(SUB_BITS-1)}
+ * (un 1,6% con 7 bits) en todo el rango de {@code long}. Registrar es un
+ * incremento atómico; los percentiles se calculan al leer, recorriendo las
+ * cubetas, y son acumulados desde el arranque.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    // La última cubeta es la de Long.MAX_VALUE
+    private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSum() {
+        return sum.sum();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Valor por debajo del cual queda la fracción {@code quantile} de las
+     * muestras (el mayor valor equivalente de su cubeta, como HdrHistogram).
+     * Devuelve 0 si no hay muestras.
+     */
+    long percentile(double quantile) {
+        return percentiles(quantile)[0];
+    }
+
+    /** Varios percentiles en una sola pasada; {@code quantiles} en orden creciente. */
+    long[] percentiles(double... quantiles) {
+        long[] result = new long[quantiles.length];
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return result;
+
+        long seen = 0;
+        int q = 0;
+        for (int i = 0; i < BUCKETS && q < quantiles.length; i++) {
+            seen += snapshot[i];
+            while (q < quantiles.length && seen >= Math.max(1, (long) Math.ceil(quantiles[q] * total))) {
+                result[q++] = Math.min(highestEquivalent(i), max.get());
+            }
+        }
+        return result;
+    }
+
+    static int index(long value) {
+        if (value < (1L << SUB_BITS)) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < (1 << SUB_BITS)) return index;
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        long upper = ((sub + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
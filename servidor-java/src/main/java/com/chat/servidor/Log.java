@@ -0,0 +1,395 @@
+package com.chat.servidor;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Log del servidor, asíncrono: quien registra un evento solo lo deja en un
+ * buffer circular sin locks y un hilo aparte lo formatea y lo escribe en la
+ * consola (WARN y ERROR en la salida de errores). Si el nivel está
+ * desactivado no se guarda ni se formatea nada; si el buffer está lleno el
+ * evento se descarta y se cuenta, nunca se bloquea al que envía.
+ *
+ * Los mensajes usan {@code {}} para los argumentos, que se formatean en el
+ * hilo del log; un {@link Throwable} como último argumento se imprime con su
+ * traza. Argumentos caros de calcular van dentro de {@code isDebugEnabled()}.
+ *
+ * Propiedades: {@code chat.log.level} ({@code DEBUG}, {@code INFO},
+ * {@code WARN}, {@code ERROR} u {@code OFF}; por defecto {@code INFO}),
+ * {@code chat.log.format} ({@code text} o {@code json}, un objeto por línea),
+ * {@code chat.log.bufferSize} (eventos, se redondea a potencia de 2) y, para
+ * el contenido de los mensajes, {@code chat.log.content} y
+ * {@code chat.log.contentSampleRate} (ver {@link #sampleContent()}).
+ */
+public final class Log {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Level LEVEL = Level.valueOf(
+            System.getProperty("chat.log.level", "INFO").toUpperCase(Locale.ROOT));
+    private static final boolean JSON = "json".equalsIgnoreCase(System.getProperty("chat.log.format", "text"));
+    private static final boolean CONTENT = Boolean.getBoolean("chat.log.content");
+    private static final int CONTENT_SAMPLE_RATE = Math.max(1, Integer.getInteger("chat.log.contentSampleRate", 100));
+
+    private static final int CAPACITY = Integer.highestOneBit(
+            Math.max(2, Integer.getInteger("chat.log.bufferSize", 8192) * 2 - 1));
+    private static final int MASK = CAPACITY - 1;
+
+    /** Un evento en el buffer; los campos se publican con la secuencia de su posición. */
+    private static final class Slot {
+        long timestamp;
+        Level level;
+        String logger;
+        String thread;
+        String message;
+        Object arg0;
+        Object arg1;
+        Object arg2;
+        Object[] args;
+        int argCount;
+    }
+
+    // Cola acotada de varios productores (Vyukov): la secuencia de cada posición
+    // dice si está libre para el turno pos (== pos) o escrita (== pos + 1)
+    private static final Slot[] SLOTS = new Slot[CAPACITY];
+    private static final AtomicLongArray SEQUENCES = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong HEAD = new AtomicLong();
+    private static long tail; // solo lo usa el hilo del log
+    // Posición hasta la que ya se escribió (lo lee flush desde otro hilo)
+    private static final AtomicLong WRITTEN = new AtomicLong();
+
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final PrintStream OUT = System.out;
+    private static final PrintStream ERR = System.err;
+    private static volatile boolean running = true;
+    private static final Thread WRITER;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            SLOTS[i] = new Slot();
+            SEQUENCES.set(i, i);
+        }
+        WRITER = new Thread(Log::run, "chat-log");
+        WRITER.setDaemon(true);
+        WRITER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::shutdown, "chat-log-shutdown"));
+    }
+
+    private final String name;
+
+    private Log(String name) {
+        this.name = name;
+    }
+
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    /**
+     * Con {@code chat.log.content=true}, devuelve true para uno de cada
+     * {@code chat.log.contentSampleRate} mensajes (al azar): solo esos se
+     * registran con su contenido. Sin la propiedad devuelve siempre false.
+     */
+    public static boolean sampleContent() {
+        return CONTENT && (CONTENT_SAMPLE_RATE == 1 || ThreadLocalRandom.current().nextInt(CONTENT_SAMPLE_RATE) == 0);
+    }
+
+    public boolean isDebugEnabled() {
+        return LEVEL.compareTo(Level.DEBUG) <= 0;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) >= 0 && level != Level.OFF;
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) publish(Level.DEBUG, message, null, null, null, null, 0);
+    }
+
+    public void debug(String message, Object arg0) {
+        if (isEnabled(Level.DEBUG)) publish(Level.DEBUG, message, arg0, null, null, null, 1);
+    }
+
+    public void debug(String message, Object arg0, Object arg1) {
+        if (isEnabled(Level.DEBUG)) publish(Level.DEBUG, message, arg0, arg1, null, null, 2);
+    }
+
+    public void debug(String message, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) publish(Level.DEBUG, message, arg0, arg1, arg2, null, 3);
+    }
+
+    public void debug(String message, Object... args) {
+        if (isEnabled(Level.DEBUG)) publish(Level.DEBUG, message, null, null, null, args, args.length);
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) publish(Level.INFO, message, null, null, null, null, 0);
+    }
+
+    public void info(String message, Object arg0) {
+        if (isEnabled(Level.INFO)) publish(Level.INFO, message, arg0, null, null, null, 1);
+    }
+
+    public void info(String message, Object arg0, Object arg1) {
+        if (isEnabled(Level.INFO)) publish(Level.INFO, message, arg0, arg1, null, null, 2);
+    }
+
+    public void info(String message, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) publish(Level.INFO, message, arg0, arg1, arg2, null, 3);
+    }
+
+    public void info(String message, Object... args) {
+        if (isEnabled(Level.INFO)) publish(Level.INFO, message, null, null, null, args, args.length);
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) publish(Level.WARN, message, null, null, null, null, 0);
+    }
+
+    public void warn(String message, Object arg0) {
+        if (isEnabled(Level.WARN)) publish(Level.WARN, message, arg0, null, null, null, 1);
+    }
+
+    public void warn(String message, Object arg0, Object arg1) {
+        if (isEnabled(Level.WARN)) publish(Level.WARN, message, arg0, arg1, null, null, 2);
+    }
+
+    public void warn(String message, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) publish(Level.WARN, message, arg0, arg1, arg2, null, 3);
+    }
+
+    public void warn(String message, Object... args) {
+        if (isEnabled(Level.WARN)) publish(Level.WARN, message, null, null, null, args, args.length);
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) publish(Level.ERROR, message, null, null, null, null, 0);
+    }
+
+    public void error(String message, Object arg0) {
+        if (isEnabled(Level.ERROR)) publish(Level.ERROR, message, arg0, null, null, null, 1);
+    }
+
+    public void error(String message, Object arg0, Object arg1) {
+        if (isEnabled(Level.ERROR)) publish(Level.ERROR, message, arg0, arg1, null, null, 2);
+    }
+
+    public void error(String message, Object arg0, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) publish(Level.ERROR, message, arg0, arg1, arg2, null, 3);
+    }
+
+    public void error(String message, Object... args) {
+        if (isEnabled(Level.ERROR)) publish(Level.ERROR, message, null, null, null, args, args.length);
+    }
+
+    /** Eventos descartados porque el buffer estaba lleno. */
+    public static long getDropped() {
+        return DROPPED.sum();
+    }
+
+    /** Espera a que se escriba todo lo registrado hasta ahora (como máximo un segundo). */
+    public static void flush() {
+        long target = HEAD.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (written() < target && WRITER.isAlive() && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /** Escribe lo pendiente y detiene el hilo del log. Lo que se registre después se escribe directo. */
+    public static void shutdown() {
+        if (!running) return;
+        flush();
+        running = false;
+        LockSupport.unpark(WRITER);
+        try {
+            WRITER.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long dropped = DROPPED.sum();
+        if (dropped > 0) {
+            ERR.println("Log: " + dropped + " eventos descartados con el buffer lleno");
+        }
+    }
+
+    private void publish(Level level, String message, Object arg0, Object arg1, Object arg2,
+                         Object[] args, int argCount) {
+        if (!running) {
+            // Ya se cerró el hilo del log: se escribe en el momento
+            Slot slot = new Slot();
+            fill(slot, level, message, arg0, arg1, arg2, args, argCount);
+            write(slot);
+            return;
+        }
+        long pos;
+        Slot slot;
+        while (true) {
+            pos = HEAD.get();
+            int index = (int) (pos & MASK);
+            long dif = SEQUENCES.get(index) - pos;
+            if (dif == 0) {
+                if (HEAD.compareAndSet(pos, pos + 1)) {
+                    slot = SLOTS[index];
+                    break;
+                }
+            } else if (dif < 0) {
+                // Lleno: el hilo del log no da abasto
+                DROPPED.increment();
+                return;
+            }
+            // Otro productor tomó la posición: se reintenta con la siguiente
+        }
+        fill(slot, level, message, arg0, arg1, arg2, args, argCount);
+        SEQUENCES.set((int) (pos & MASK), pos + 1);
+    }
+
+    private void fill(Slot slot, Level level, String message, Object arg0, Object arg1, Object arg2,
+                      Object[] args, int argCount) {
+        slot.timestamp = System.currentTimeMillis();
+        slot.level = level;
+        slot.logger = name;
+        slot.thread = Thread.currentThread().getName();
+        slot.message = message;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.args = args;
+        slot.argCount = argCount;
+    }
+
+    private static long written() {
+        return WRITTEN.get();
+    }
+
+    private static void run() {
+        while (running) {
+            int drained = drain();
+            if (drained == 0) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+        drain();
+    }
+
+    // Escribe todo lo publicado en orden; devuelve cuántos eventos escribió
+    private static int drain() {
+        int count = 0;
+        boolean wroteErr = false;
+        while (true) {
+            int index = (int) (tail & MASK);
+            if (SEQUENCES.get(index) != tail + 1) {
+                break;
+            }
+            Slot slot = SLOTS[index];
+            wroteErr |= write(slot);
+            // Se sueltan las referencias antes de liberar la posición
+            slot.message = null;
+            slot.arg0 = slot.arg1 = slot.arg2 = null;
+            slot.args = null;
+            SEQUENCES.set(index, tail + CAPACITY);
+            tail++;
+            count++;
+        }
+        if (count > 0) {
+            OUT.flush();
+            if (wroteErr) {
+                ERR.flush();
+            }
+            WRITTEN.set(tail);
+        }
+        return count;
+    }
+
+    // Formatea y escribe un evento; devuelve true si fue a la salida de errores
+    private static boolean write(Slot slot) {
+        StringBuilder text = new StringBuilder(128);
+        Throwable thrown = format(slot, text);
+        StringBuilder line = new StringBuilder(text.length() + 96);
+        if (JSON) {
+            line.append("{\"ts\":\"").append(Instant.ofEpochMilli(slot.timestamp))
+                    .append("\",\"level\":\"").append(slot.level)
+                    .append("\",\"thread\":");
+            appendJsonString(line, slot.thread);
+            line.append(",\"logger\":\"").append(slot.logger).append("\",\"msg\":");
+            appendJsonString(line, text);
+            if (thrown != null) {
+                line.append(",\"error\":");
+                appendJsonString(line, stackTrace(thrown));
+            }
+            line.append('}');
+        } else {
+            line.append(Instant.ofEpochMilli(slot.timestamp)).append(' ')
+                    .append(slot.level).append(slot.level.name().length() == 4 ? "  [" : " [")
+                    .append(slot.thread).append("] ").append(slot.logger).append(": ").append(text);
+            if (thrown != null) {
+                line.append(System.lineSeparator()).append(stackTrace(thrown));
+            }
+        }
+        boolean err = slot.level.compareTo(Level.WARN) >= 0;
+        (err ? ERR : OUT).println(line);
+        return err;
+    }
+
+    // Reemplaza cada {} por el argumento que le toca; un Throwable sobrante es la excepción
+    private static Throwable format(Slot slot, StringBuilder out) {
+        String message = slot.message != null ? slot.message : "null";
+        int next = 0;
+        int from = 0;
+        while (next < slot.argCount) {
+            int at = message.indexOf("{}", from);
+            if (at < 0) break;
+            out.append(message, from, at).append(arg(slot, next++));
+            from = at + 2;
+        }
+        out.append(message, from, message.length());
+        if (next < slot.argCount) {
+            Object last = arg(slot, slot.argCount - 1);
+            if (last instanceof Throwable) {
+                return (Throwable) last;
+            }
+        }
+        return null;
+    }
+
+    private static Object arg(Slot slot, int i) {
+        if (slot.args != null) return slot.args[i];
+        return i == 0 ? slot.arg0 : i == 1 ? slot.arg1 : slot.arg2;
+    }
+
+    private static String stackTrace(Throwable thrown) {
+        StringWriter trace = new StringWriter();
+        thrown.printStackTrace(new PrintWriter(trace));
+        return trace.toString().trim();
+    }
+
+    private static void appendJsonString(StringBuilder out, CharSequence s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
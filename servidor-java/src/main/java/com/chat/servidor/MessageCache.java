@@ -0,0 +1,220 @@
+package com.chat.servidor;
+
+import Chat.Message;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de mensajes ya decodificados, por conversación, con un presupuesto de
+ * memoria y desalojo LRU.
+ *
+ * De cada conversación se guarda un tramo contiguo de mensajes (por número de
+ * secuencia), normalmente el final, que es lo que se lee más. Los envíos lo
+ * actualizan al escribir ({@link #append}), así que leer el historial de una
+ * conversación activa no vuelve a decodificar nada. Los mensajes guardados se
+ * comparten entre lecturas y no se deben modificar.
+ *
+ * El lock de la caché es uno solo, así que bajo él solo se hace trabajo
+ * acotado: las copias de {@link #get} se hacen fuera (un tramo solo crece
+ * después de su final, y al recortarlo se pasa a otro arreglo) y
+ * {@link #put} une tramos con copias de arreglos, con los tamaños ya
+ * estimados antes de tomarlo.
+ *
+ * Los aciertos, fallos y desalojos se publican en {@link Metrics}
+ * ({@code chat_history_cache_*}), además del resumen que se imprime al cerrar.
+ */
+final class MessageCache {
+
+    // Costo aproximado de un Message y sus cuatro String además de los caracteres
+    private static final int MESSAGE_OVERHEAD = 160;
+
+    /** Tramo de mensajes [base, base + count) de una conversación. */
+    private static final class Entry {
+        int base;
+        Message[] messages = new Message[8];
+        int count;
+        long bytes;
+
+        int end() {
+            return base + count;
+        }
+
+        void add(Message msg) {
+            if (count == messages.length) {
+                messages = Arrays.copyOf(messages, count * 2);
+            }
+            messages[count++] = msg;
+            bytes += estimate(msg);
+        }
+
+        // Descarta los mensajes más antiguos del tramo. Los que quedan pasan a otro arreglo:
+        // una lectura en curso puede estar copiando del anterior
+        void trimFront(int n) {
+            for (int i = 0; i < n; i++) {
+                bytes -= estimate(messages[i]);
+            }
+            Message[] kept = new Message[Math.max(8, messages.length - n)];
+            System.arraycopy(messages, n, kept, 0, count - n);
+            messages = kept;
+            base += n;
+            count -= n;
+        }
+    }
+
+    private final long budgetBytes;
+    // Por identidad del log: una conversación recreada no reutiliza lo cacheado
+    private final LinkedHashMap<ConversationLog, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private static final String REQUESTS_HELP = "Lecturas de historial según si estaban todas en la caché";
+    private static final LongAdder HITS = Metrics.counter("chat_history_cache_requests", REQUESTS_HELP,
+            "result", "hit");
+    private static final LongAdder MISSES = Metrics.counter("chat_history_cache_requests", REQUESTS_HELP,
+            "result", "miss");
+    private static final LongAdder EVICTIONS = Metrics.counter("chat_history_cache_evictions",
+            "Conversaciones desalojadas de la caché de mensajes");
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    MessageCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        // Solo se publica la caché en uso: la última creada reemplaza a la anterior
+        Metrics.gauge("chat_history_cache_bytes", "Memoria estimada de los mensajes en caché", this::getBytes);
+        Metrics.gauge("chat_history_cache_conversations", "Conversaciones con mensajes en caché",
+                this::getConversations);
+    }
+
+    /** Devuelve los mensajes [start, end) si están todos en caché, o null. */
+    Message[] get(ConversationLog index, int start, int end) {
+        Message[] messages;
+        int offset;
+        synchronized (this) {
+            Entry entry = entries.get(index);
+            if (entry == null || start < entry.base || end > entry.end()) {
+                misses++;
+                MISSES.increment();
+                return null;
+            }
+            hits++;
+            HITS.increment();
+            messages = entry.messages;
+            offset = start - entry.base;
+        }
+        return Arrays.copyOfRange(messages, offset, offset + end - start);
+    }
+
+    /**
+     * Guarda mensajes recién decodificados a partir de la secuencia
+     * {@code start}. Si se solapan o continúan el tramo existente se unen (lo
+     * que ya estaba se conserva y se agrega lo que falta antes y después); si
+     * no, se conserva el tramo más reciente.
+     */
+    void put(ConversationLog index, int start, Message[] messages) {
+        if (messages.length == 0 || budgetBytes <= 0) return;
+        // Tamaño de cualquier prefijo de messages, calculado fuera del lock
+        long[] sizes = new long[messages.length + 1];
+        for (int i = 0; i < messages.length; i++) {
+            sizes[i + 1] = sizes[i] + estimate(messages[i]);
+        }
+        int end = start + messages.length;
+
+        synchronized (this) {
+            Entry entry = entries.get(index);
+            if (entry != null && end < entry.base) {
+                return;
+            }
+
+            Entry merged = new Entry();
+            if (entry != null && start <= entry.end()) {
+                int before = Math.max(0, entry.base - start);
+                int after = Math.max(0, end - entry.end());
+                merged.base = Math.min(start, entry.base);
+                merged.count = before + entry.count + after;
+                merged.messages = new Message[Math.max(8, merged.count + merged.count / 4)];
+                System.arraycopy(messages, 0, merged.messages, 0, before);
+                System.arraycopy(entry.messages, 0, merged.messages, before, entry.count);
+                System.arraycopy(messages, messages.length - after, merged.messages, before + entry.count, after);
+                merged.bytes = sizes[before] + entry.bytes + sizes[messages.length] - sizes[messages.length - after];
+            } else {
+                merged.base = start;
+                merged.count = messages.length;
+                merged.messages = Arrays.copyOf(messages, Math.max(8, messages.length + messages.length / 4));
+                merged.bytes = sizes[messages.length];
+            }
+            if (entry != null) {
+                bytes -= entry.bytes;
+            }
+            entries.put(index, merged);
+            bytes += merged.bytes;
+            fitBudget(merged);
+        }
+    }
+
+    /**
+     * Agrega un mensaje recién enviado si el tramo cacheado llega hasta el
+     * final de la conversación. Lo llama quien envía, después de escribir en el
+     * log y con el lock de la conversación tomado, así que llega en orden.
+     */
+    synchronized void append(ConversationLog index, int sequence, Message msg) {
+        Entry entry = entries.get(index);
+        if (entry == null || entry.end() != sequence) return;
+        entry.add(msg);
+        bytes += estimate(msg);
+        fitBudget(entry);
+    }
+
+    // Desaloja las conversaciones menos usadas y, si con eso no alcanza,
+    // recorta los mensajes más antiguos de la que se acaba de usar
+    private void fitBudget(Entry current) {
+        Iterator<Map.Entry<ConversationLog, Entry>> it = entries.entrySet().iterator();
+        while (bytes > budgetBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest == current) continue;
+            it.remove();
+            bytes -= eldest.bytes;
+            evictions++;
+            EVICTIONS.increment();
+        }
+        if (bytes > budgetBytes) {
+            long before = current.bytes;
+            int n = 0;
+            long freed = 0;
+            while (n < current.count && bytes - freed > budgetBytes) {
+                freed += estimate(current.messages[n++]);
+            }
+            current.trimFront(n);
+            bytes -= before - current.bytes;
+        }
+    }
+
+    static long estimate(Message msg) {
+        long chars = length(msg.from) + length(msg.to) + length(msg.content) + length(msg.type);
+        return MESSAGE_OVERHEAD + 2 * chars + (msg.data != null ? msg.data.length : 0);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized long getConversations() {
+        return entries.size();
+    }
+
+    synchronized String getStats() {
+        long total = hits + misses;
+        return String.format("Caché de mensajes: %d aciertos, %d fallos (%.1f%% aciertos), %d desalojos, " +
+                        "%d conversaciones, %d/%d KB",
+                hits, misses, total == 0 ? 0.0 : hits * 100.0 / total, evictions, entries.size(),
+                bytes / 1024, budgetBytes / 1024);
+    }
+}
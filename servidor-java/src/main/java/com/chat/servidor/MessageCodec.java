@@ -0,0 +1,275 @@
+package com.chat.servidor;
+
+import Chat.Message;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec binario versionado para los mensajes guardados en el historial.
+ *
+ * Formato v1:
+ * <pre>
+ * [versión:1][flags:1][tipo:1][timestamp:8]
+ * [tipo personalizado: varint + utf8]   (solo si tipo == TYPE_CUSTOM)
+ * [from: varint + utf8][to: varint + utf8][content: varint + utf8]
+ * [data: varint + bytes]                 (sin FLAG_BLOB)
+ * [sha256:32][tamaño: varint][duración ms: varint]   (con FLAG_BLOB)
+ * </pre>
+ * Los textos se escriben en UTF-8 directamente sobre el buffer de destino.
+ * Las notas de voz se guardan aparte en el {@link BlobStore} y el registro
+ * solo lleva su referencia. El timestamp va en una posición
+ * fija para poder indexar sin decodificar el resto del mensaje.
+ */
+public final class MessageCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final byte FLAG_GROUP = 0x01;
+    private static final byte FLAG_BLOB = 0x02;
+
+    public static final byte TYPE_TEXT = 0;
+    public static final byte TYPE_AUDIO = 1;
+    public static final byte TYPE_CALL = 2;
+    public static final byte TYPE_CUSTOM = (byte) 0xFF;
+
+    private static final int TYPE_OFFSET = 2;
+    private static final int TIMESTAMP_OFFSET = 3;
+    private static final int HEADER_SIZE = 11;
+    private static final byte[] EMPTY = new byte[0];
+
+    private MessageCodec() {
+    }
+
+    public static int encodedSize(Message msg) {
+        return encodedSize(msg, null);
+    }
+
+    /** Tamaño codificado; si {@code blob} no es null el audio se reemplaza por su referencia. */
+    public static int encodedSize(Message msg, BlobStore.BlobRef blob) {
+        int size = 3 + 8;
+        if (typeCode(msg.type) == TYPE_CUSTOM) {
+            size += stringSize(msg.type);
+        }
+        size += stringSize(msg.from) + stringSize(msg.to) + stringSize(msg.content);
+        if (blob != null) {
+            return size + BlobStore.HASH_SIZE + varintSize(blob.size()) + varintSize(blob.durationMillis());
+        }
+        int dataLength = msg.data != null ? msg.data.length : 0;
+        return size + varintSize(dataLength) + dataLength;
+    }
+
+    public static void encode(Message msg, ByteBuffer out) {
+        encode(msg, null, out);
+    }
+
+    public static void encode(Message msg, BlobStore.BlobRef blob, ByteBuffer out) {
+        byte type = typeCode(msg.type);
+        byte flags = msg.isGroup ? FLAG_GROUP : 0;
+        if (blob != null) {
+            flags |= FLAG_BLOB;
+        }
+        out.put(VERSION);
+        out.put(flags);
+        out.put(type);
+        out.putLong(msg.timestamp);
+        if (type == TYPE_CUSTOM) {
+            putString(out, msg.type);
+        }
+        putString(out, msg.from);
+        putString(out, msg.to);
+        putString(out, msg.content);
+        if (blob != null) {
+            blob.putHash(out);
+            putVarint(out, blob.size());
+            putVarint(out, blob.durationMillis());
+            return;
+        }
+        byte[] data = msg.data != null ? msg.data : EMPTY;
+        putVarint(out, data.length);
+        out.put(data);
+    }
+
+    public static byte[] encode(Message msg) {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(msg));
+        encode(msg, out);
+        return out.array();
+    }
+
+    public static Message decode(ByteBuffer in) {
+        return decode(in, null);
+    }
+
+    /** Decodifica un mensaje, leyendo su audio del {@link BlobStore} si se guardó aparte. */
+    public static Message decode(ByteBuffer in, BlobStore blobs) {
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Versión de mensaje no soportada: " + version);
+        }
+        byte flags = in.get();
+        byte type = in.get();
+        long timestamp = in.getLong();
+        String typeName = type == TYPE_CUSTOM ? getString(in) : typeName(type);
+        String from = getString(in);
+        String to = getString(in);
+        String content = getString(in);
+        byte[] data;
+        if ((flags & FLAG_BLOB) != 0) {
+            data = readBlob(in, blobs);
+        } else {
+            int dataLength = getVarint(in);
+            data = dataLength == 0 ? EMPTY : new byte[dataLength];
+            in.get(data);
+        }
+        return new Message(from, to, content, timestamp, (flags & FLAG_GROUP) != 0, typeName, data);
+    }
+
+    /** Lee el timestamp de un mensaje codificado sin avanzar el buffer. */
+    public static long peekTimestamp(ByteBuffer in) {
+        return in.getLong(in.position() + TIMESTAMP_OFFSET);
+    }
+
+    /** Lee el código de tipo de un mensaje codificado sin avanzar el buffer. */
+    public static byte peekType(ByteBuffer in) {
+        return in.get(in.position() + TYPE_OFFSET);
+    }
+
+    /** Lee el remitente de un mensaje codificado sin avanzar el buffer. */
+    public static String peekSender(ByteBuffer in) {
+        ByteBuffer header = in.duplicate();
+        header.position(in.position() + HEADER_SIZE);
+        if (peekType(in) == TYPE_CUSTOM) {
+            int typeLength = getVarint(header);
+            header.position(header.position() + typeLength);
+        }
+        return getString(header);
+    }
+
+    private static byte[] readBlob(ByteBuffer in, BlobStore blobs) {
+        byte[] hash = new byte[BlobStore.HASH_SIZE];
+        in.get(hash);
+        BlobStore.BlobRef ref = new BlobStore.BlobRef(hash, getVarint(in), getVarint(in));
+        if (blobs == null) {
+            throw new IllegalStateException("Mensaje con nota de voz " + ref.id() + " sin almacén de blobs");
+        }
+        try {
+            return blobs.read(ref);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la nota de voz " + ref.id(), e);
+        }
+    }
+
+    /** Código de tipo con el que se guarda un mensaje; {@link #TYPE_CUSTOM} si no es uno de los conocidos. */
+    public static byte typeCode(String type) {
+        if (type == null || "text".equals(type)) return TYPE_TEXT;
+        if ("audio".equals(type)) return TYPE_AUDIO;
+        if ("call".equals(type)) return TYPE_CALL;
+        return TYPE_CUSTOM;
+    }
+
+    private static String typeName(byte code) {
+        switch (code) {
+            case TYPE_AUDIO: return "audio";
+            case TYPE_CALL: return "call";
+            default: return "text";
+        }
+    }
+
+    private static int stringSize(String value) {
+        int length = utf8Length(value);
+        return varintSize(length) + length;
+    }
+
+    private static int utf8Length(String value) {
+        if (value == null) return 0;
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // Escribe el UTF-8 directamente en el buffer, sin pasar por un byte[] intermedio.
+    // Los surrogates sueltos se escriben como U+FFFD.
+    private static void putString(ByteBuffer out, String value) {
+        putVarint(out, utf8Length(value));
+        if (value == null) return;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) 0xEF).put((byte) 0xBF).put((byte) 0xBD);
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarint(in);
+        if (length == 0) return "";
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,351 @@
+package com.chat.servidor;
+
+import Chat.Message;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Log de solo escritura al final (write-ahead log) para el historial del chat,
+ * repartido en segmentos de tamaño fijo que se leen y escriben a través de
+ * {@link MappedByteBuffer}.
+ *
+ * Cada registro se guarda como [longitud:int][crc32:int][payload]. Una longitud
+ * cero marca el final de los datos de un segmento (el archivo se crea
+ * preasignado con ceros). La posición global de un registro es
+ * {@code segmento * tamañoSegmento + offset}, de modo que el índice de cada
+ * conversación solo guarda un long por mensaje y los mensajes se leen
+ * directamente de los segmentos mapeados sin mantenerlos en el heap.
+ */
+public class MessageLog implements Closeable {
+
+    private static final Log LOG = Log.get(MessageLog.class);
+
+    // Mensaje como texto JSON (formato anterior al codec binario, solo lectura)
+    static final byte RECORD_MESSAGE_JSON = 1;
+    static final byte RECORD_GROUP = 2;
+    // Mensaje codificado con MessageCodec, sin enlace al anterior (solo lectura)
+    static final byte RECORD_MESSAGE = 3;
+    static final byte RECORD_USER = 4;
+    // Mensaje codificado con MessageCodec y la posición del anterior de su conversación
+    static final byte RECORD_MESSAGE_LINKED = 5;
+    // Alta y baja de un miembro de un grupo: [tipo][grupo][usuario]
+    static final byte RECORD_GROUP_JOIN = 6;
+    static final byte RECORD_GROUP_LEAVE = 7;
+
+    static final int HEADER_SIZE = 8;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /** Recibe cada registro válido durante {@link #replay}. */
+    public interface RecordVisitor {
+        void visit(long position, ByteBuffer payload);
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final BitSet dirtySegments = new BitSet();
+
+    // Posición global donde se escribirá el siguiente registro
+    private long writePosition;
+
+    public MessageLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!files.get(i).getFileName().toString().equals(segmentName(i))) {
+                throw new IOException("Falta el segmento " + segmentName(i) + " en " + directory);
+            }
+            segments.add(map(files.get(i)));
+        }
+        if (segments.isEmpty()) {
+            segments.add(map(directory.resolve(segmentName(0))));
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getWritePosition() {
+        return writePosition;
+    }
+
+    public long append(ByteBuffer record) throws IOException {
+        return append(record, null);
+    }
+
+    /**
+     * Copia el registro ya codificado en el segmento actual y devuelve su
+     * posición global. Si no cabe, se abre un segmento nuevo. La escritura
+     * queda visible de inmediato para los lectores; la durabilidad la da
+     * {@link #force()}.
+     *
+     * {@code onAppend} se ejecuta con la posición antes de soltar el lock del
+     * log, de modo que cuando {@link #getWritePosition()} devuelve P todos los
+     * registros anteriores a P ya están aplicados al estado en memoria.
+     */
+    public synchronized long append(ByteBuffer record, LongConsumer onAppend) throws IOException {
+        int size = record.remaining();
+        if (size > segmentSize) {
+            throw new IOException("Registro de " + size + " bytes excede el tamaño de segmento (" +
+                    segmentSize + ")");
+        }
+
+        int segment = (int) (writePosition / segmentSize);
+        int offset = (int) (writePosition % segmentSize);
+        if (offset + size > segmentSize) {
+            segment++;
+            offset = 0;
+        }
+        while (segment >= segments.size()) {
+            segments.add(map(directory.resolve(segmentName(segments.size()))));
+        }
+
+        ByteBuffer target = segments.get(segment).duplicate();
+        target.position(offset);
+        target.put(record);
+        dirtySegments.set(segment);
+
+        long position = (long) segment * segmentSize + offset;
+        writePosition = position + size;
+        if (onAppend != null) {
+            onAppend.accept(position);
+        }
+        return position;
+    }
+
+    /**
+     * Devuelve una vista de solo lectura del payload del registro que empieza
+     * en la posición indicada, sin copiarlo al heap.
+     */
+    public ByteBuffer read(long position) {
+        MappedByteBuffer segment;
+        synchronized (this) {
+            segment = segments.get((int) (position / segmentSize));
+        }
+        int offset = (int) (position % segmentSize);
+        ByteBuffer view = segment.duplicate();
+        int length = view.getInt(offset);
+        view.position(offset + HEADER_SIZE);
+        view.limit(offset + HEADER_SIZE + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /** Fuerza a disco (msync) los segmentos modificados desde el último force. */
+    public void force() {
+        List<MappedByteBuffer> dirty = new ArrayList<>();
+        synchronized (this) {
+            for (int i = dirtySegments.nextSetBit(0); i >= 0; i = dirtySegments.nextSetBit(i + 1)) {
+                dirty.add(segments.get(i));
+            }
+            dirtySegments.clear();
+        }
+        for (MappedByteBuffer segment : dirty) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Recorre en orden los registros válidos a partir de la posición indicada
+     * (0 para todo el log, o la posición cubierta por un snapshot) y deja la
+     * posición de escritura al final. Si el último registro quedó incompleto o
+     * corrupto se descarta y se limpia el resto del segmento.
+     */
+    public synchronized int replay(long fromPosition, RecordVisitor visitor) {
+        int records = 0;
+        long position = fromPosition;
+        int firstSegment = (int) (fromPosition / segmentSize);
+
+        for (int s = firstSegment; s < segments.size(); s++) {
+            MappedByteBuffer segment = segments.get(s);
+            int offset = s == firstSegment ? (int) (fromPosition % segmentSize) : 0;
+            while (offset + HEADER_SIZE <= segmentSize) {
+                int length = segment.getInt(offset);
+                if (length == 0) break;
+
+                int checksum = segment.getInt(offset + 4);
+                ByteBuffer payload = null;
+                if (length > 0 && offset + HEADER_SIZE + length <= segmentSize) {
+                    ByteBuffer view = segment.duplicate();
+                    view.position(offset + HEADER_SIZE);
+                    view.limit(offset + HEADER_SIZE + length);
+                    payload = view.slice();
+                }
+                if (payload == null || crc(payload.duplicate()) != checksum) {
+                    LOG.warn("Segmento {} con registro inválido en el byte {}, descartando el resto del segmento",
+                            segmentName(s), offset);
+                    clear(segment, offset);
+                    break;
+                }
+
+                position = (long) s * segmentSize + offset + HEADER_SIZE + length;
+                visitor.visit((long) s * segmentSize + offset, payload.asReadOnlyBuffer());
+                offset += HEADER_SIZE + length;
+                records++;
+            }
+            if (offset == 0 && s > firstSegment) {
+                // Segmento vacío al final (se creó pero no llegó a escribirse)
+                position = Math.max(position, (long) s * segmentSize);
+            }
+        }
+
+        writePosition = position;
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        segments.clear();
+    }
+
+    /**
+     * Registro de mensaje: [tipo][clave][posición del anterior][mensaje]. El
+     * enlace al anterior permite reconstruir el índice de una conversación
+     * sin recorrer todo el log.
+     */
+    static ByteBuffer encodeMessage(String historyKey, long previous, Message msg) {
+        return encodeMessage(historyKey, previous, msg, null);
+    }
+
+    /** Igual que {@link #encodeMessage(String, long, Message)}, con el audio guardado aparte. */
+    static ByteBuffer encodeMessage(String historyKey, long previous, Message msg, BlobStore.BlobRef blob) {
+        byte[] key = historyKey.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = allocate(1 + 4 + key.length + 8 + MessageCodec.encodedSize(msg, blob));
+        record.put(RECORD_MESSAGE_LINKED);
+        record.putInt(key.length).put(key);
+        record.putLong(previous);
+        MessageCodec.encode(msg, blob, record);
+        return seal(record);
+    }
+
+    static ByteBuffer encodeGroup(String groupName) {
+        return encodeName(RECORD_GROUP, groupName);
+    }
+
+    static ByteBuffer encodeUser(String username) {
+        return encodeName(RECORD_USER, username);
+    }
+
+    static ByteBuffer encodeMembership(boolean join, String groupName, String username) {
+        byte[] group = groupName.getBytes(StandardCharsets.UTF_8);
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = allocate(1 + 4 + group.length + 4 + user.length);
+        record.put(join ? RECORD_GROUP_JOIN : RECORD_GROUP_LEAVE);
+        record.putInt(group.length).put(group);
+        record.putInt(user.length).put(user);
+        return seal(record);
+    }
+
+    private static ByteBuffer encodeName(byte kind, String value) {
+        byte[] name = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = allocate(1 + 4 + name.length);
+        record.put(kind);
+        record.putInt(name.length).put(name);
+        return seal(record);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Recorre un log antiguo de un solo archivo (formato anterior a los
+     * segmentos) para importarlo. Se detiene en el primer registro inválido.
+     */
+    static int scanLegacyFile(Path file, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int records = 0;
+            while (data.remaining() >= HEADER_SIZE) {
+                int start = data.position();
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length <= 0 || length > data.remaining()) break;
+                ByteBuffer payload = data.slice();
+                payload.limit(length);
+                if (crc(payload.duplicate()) != checksum) break;
+                visitor.visit(start, payload);
+                data.position(data.position() + length);
+                records++;
+            }
+            return records;
+        }
+    }
+
+    private static ByteBuffer allocate(int payloadLength) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+        record.position(HEADER_SIZE);
+        return record;
+    }
+
+    private static ByteBuffer seal(ByteBuffer record) {
+        int length = record.position() - HEADER_SIZE;
+        record.putInt(0, length);
+        record.putInt(4, crc(ByteBuffer.wrap(record.array(), HEADER_SIZE, length)));
+        record.flip();
+        return record;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < segmentSize) {
+                // Preasigna el segmento escribiendo el último byte (archivo disperso lleno de ceros)
+                channel.write(ByteBuffer.wrap(new byte[1]), segmentSize - 1);
+            }
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private static void clear(MappedByteBuffer segment, int from) {
+        byte[] zeros = new byte[64 * 1024];
+        ByteBuffer target = segment.duplicate();
+        target.position(from);
+        while (target.hasRemaining()) {
+            target.put(zeros, 0, Math.min(zeros.length, target.remaining()));
+        }
+        segment.force();
+    }
+
+    private static String segmentName(int index) {
+        return String.format("%08d%s", index, SEGMENT_SUFFIX);
+    }
+
+    private static int crc(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
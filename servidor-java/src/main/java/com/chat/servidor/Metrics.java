@@ -0,0 +1,291 @@
+package com.chat.servidor;
+
+import Chat.OperationStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro de métricas del servidor: latencias por operación, contadores y
+ * valores instantáneos.
+ *
+ * Cada {@link Timer} guarda un {@link LatencyHistogram} en nanosegundos, los
+ * errores y un ritmo por segundo suavizado sobre el último minuto (media
+ * exponencial recalculada cada 5 segundos, como la tasa de un minuto de
+ * {@code uptime}). Registrar una muestra no toma locks; el trabajo de los
+ * percentiles se hace al leer. {@link #scrape()} lo devuelve todo en el
+ * formato de texto de Prometheus.
+ */
+public final class Metrics {
+
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.99", "0.999" };
+    private static final long TICK_SECONDS = 5;
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60.0);
+
+    // Nombre completo (con etiquetas) -> métrica; el TreeMap al leer las agrupa por familia
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, String> help = new ConcurrentHashMap<>();
+
+    static {
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(Metrics::tick, TICK_SECONDS, TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private Metrics() {
+    }
+
+    /** Latencia y ritmo de una operación. */
+    public static final class Timer {
+        private final String name;
+        private final String labelName;
+        private final String labelValue;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private long lastCount;
+        private volatile double rate;
+        private boolean rateStarted;
+
+        private Timer(String name, String labelName, String labelValue) {
+            this.name = name;
+            this.labelName = labelName;
+            this.labelValue = labelValue;
+        }
+
+        /** Registra una operación que empezó en {@code startNanos} ({@link System#nanoTime()}). */
+        public void recordSince(long startNanos, boolean ok) {
+            record(System.nanoTime() - startNanos, ok);
+        }
+
+        public void record(long nanos, boolean ok) {
+            histogram.record(nanos);
+            if (!ok) {
+                errors.increment();
+            }
+        }
+
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        /** Percentiles 50, 99 y 99,9 en nanosegundos. */
+        public long[] getPercentiles() {
+            return histogram.percentiles(QUANTILES);
+        }
+
+        private synchronized void tick() {
+            long count = histogram.getCount();
+            double instant = (count - lastCount) / (double) TICK_SECONDS;
+            lastCount = count;
+            if (rateStarted) {
+                rate += ALPHA * (instant - rate);
+            } else {
+                rate = instant;
+                rateStarted = true;
+            }
+        }
+    }
+
+    private static final class Counter {
+        final String name;
+        final String labels;
+        final LongAdder value = new LongAdder();
+
+        Counter(String name, String labels) {
+            this.name = name;
+            this.labels = labels;
+        }
+    }
+
+    private static final class Gauge {
+        final String name;
+        final String labels;
+        final LongSupplier value;
+
+        Gauge(String name, String labels, LongSupplier value) {
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Timer de la familia {@code name} (se publica como {@code name_seconds},
+     * {@code name_errors_total} y {@code name_rate1m}).
+     */
+    public static Timer timer(String name, String description) {
+        return timer(name, description, null, null);
+    }
+
+    public static Timer timer(String name, String description, String labelName, String labelValue) {
+        help.putIfAbsent(name, description);
+        return timers.computeIfAbsent(key(name, labels(labelName, labelValue)),
+                k -> new Timer(name, labelName, labelValue));
+    }
+
+    public static LongAdder counter(String name, String description) {
+        return counter(name, description, null, null);
+    }
+
+    public static LongAdder counter(String name, String description, String labelName, String labelValue) {
+        help.putIfAbsent(name, description);
+        String labels = labels(labelName, labelValue);
+        return counters.computeIfAbsent(key(name, labels), k -> new Counter(name, labels)).value;
+    }
+
+    /** Valor que se lee en cada consulta; registrar otra vez el mismo nombre lo reemplaza. */
+    public static void gauge(String name, String description, LongSupplier value) {
+        gauge(name, description, null, null, value);
+    }
+
+    public static void gauge(String name, String description, String labelName, String labelValue,
+                             LongSupplier value) {
+        help.putIfAbsent(name, description);
+        String labels = labels(labelName, labelValue);
+        gauges.put(key(name, labels), new Gauge(name, labels, value));
+    }
+
+    /** Estadísticas de todos los timers, para la faceta de administración de Ice. */
+    public static OperationStats[] operationStats() {
+        List<OperationStats> stats = new ArrayList<>();
+        for (Timer timer : new TreeMap<>(timers).values()) {
+            long[] p = timer.getPercentiles();
+            stats.add(new OperationStats(timer.name, timer.labelValue == null ? "" : timer.labelValue,
+                    timer.getCount(), timer.getErrors(), timer.getRate(),
+                    micros(p[0]), micros(p[1]), micros(p[2]), micros(timer.histogram.getMax())));
+        }
+        return stats.toArray(new OperationStats[0]);
+    }
+
+    /** Todas las métricas en el formato de texto de Prometheus (versión 0.0.4). */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        String family = null;
+        List<Timer> sameFamily = new ArrayList<>();
+        for (Timer timer : new TreeMap<>(timers).values()) {
+            if (!timer.name.equals(family)) {
+                appendTimers(out, sameFamily);
+                sameFamily.clear();
+                family = timer.name;
+            }
+            sameFamily.add(timer);
+        }
+        appendTimers(out, sameFamily);
+
+        family = null;
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            if (!counter.name.equals(family)) {
+                family = counter.name;
+                header(out, counter.name + "_total", help.get(family), "counter");
+            }
+            sample(out, counter.name + "_total", counter.labels, counter.value.sum());
+        }
+
+        family = null;
+        for (Gauge gauge : new TreeMap<>(gauges).values()) {
+            if (!gauge.name.equals(family)) {
+                family = gauge.name;
+                header(out, gauge.name, help.get(family), "gauge");
+            }
+            sample(out, gauge.name, gauge.labels, gauge.value.getAsLong());
+        }
+        return out.toString();
+    }
+
+    private static void appendTimers(StringBuilder out, List<Timer> family) {
+        if (family.isEmpty()) return;
+        String name = family.get(0).name;
+
+        header(out, name + "_seconds", help.get(name), "summary");
+        for (Timer timer : family) {
+            String labels = labels(timer.labelName, timer.labelValue);
+            long[] p = timer.getPercentiles();
+            for (int i = 0; i < QUANTILES.length; i++) {
+                String quantile = "quantile=\"" + QUANTILE_LABELS[i] + "\"";
+                sample(out, name + "_seconds", labels.isEmpty() ? quantile : labels + "," + quantile, seconds(p[i]));
+            }
+            sample(out, name + "_seconds_sum", labels, seconds(timer.histogram.getSum()));
+            sample(out, name + "_seconds_count", labels, timer.getCount());
+        }
+
+        header(out, name + "_seconds_max", "Máximo desde el arranque: " + help.get(name), "gauge");
+        for (Timer timer : family) {
+            sample(out, name + "_seconds_max", labels(timer.labelName, timer.labelValue),
+                    seconds(timer.histogram.getMax()));
+        }
+
+        header(out, name + "_errors_total", "Terminadas con error: " + help.get(name), "counter");
+        for (Timer timer : family) {
+            sample(out, name + "_errors_total", labels(timer.labelName, timer.labelValue), timer.getErrors());
+        }
+
+        header(out, name + "_rate1m", "Por segundo, media del último minuto: " + help.get(name), "gauge");
+        for (Timer timer : family) {
+            sample(out, name + "_rate1m", labels(timer.labelName, timer.labelValue), timer.getRate());
+        }
+    }
+
+    private static void header(StringBuilder out, String metric, String description, String type) {
+        if (description != null) {
+            out.append("# HELP ").append(metric).append(' ').append(description).append('\n');
+        }
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String labels, long value) {
+        out.append(metric);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String metric, String labels, double value) {
+        out.append(metric);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void tick() {
+        for (Timer timer : timers.values()) {
+            timer.tick();
+        }
+    }
+
+    private static String labels(String labelName, String labelValue) {
+        if (labelName == null) return "";
+        return labelName + "=\"" + labelValue.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String key(String name, String labels) {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
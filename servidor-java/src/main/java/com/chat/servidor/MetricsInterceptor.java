@@ -0,0 +1,77 @@
+package com.chat.servidor;
+
+import com.zeroc.Ice.DispatchInterceptor;
+import com.zeroc.Ice.Object;
+import com.zeroc.Ice.OutputStream;
+import com.zeroc.Ice.Request;
+import com.zeroc.Ice.UserException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Mide cada operación que despacha Ice sobre un servant: se registra en el
+ * adaptador en lugar del servant y anota en {@link Metrics} la latencia y si
+ * terminó con error, bajo {@code chat_operation{op="..."}}.
+ *
+ * Las operaciones síncronas se miden al volver del servant; las AMD
+ * ({@code sendMessage}, {@code sendAudio}, {@code getHistory}) cuando se
+ * completa su futuro, así incluyen la espera del disco.
+ *
+ * Cada operación es además un {@link OperationEvent} de JFR, con los mismos
+ * límites, cuando se está grabando.
+ */
+final class MetricsInterceptor extends DispatchInterceptor {
+
+    private static final String NAME = "chat_operation";
+    private static final String HELP = "Latencia de las operaciones de ChatService";
+
+    private final Object servant;
+    // Solo las operaciones conocidas tienen timer propio; un nombre cualquiera
+    // enviado por un cliente va a "other" y no hace crecer el registro
+    private final Map<String, Metrics.Timer> timers = new HashMap<>();
+    private final Metrics.Timer other = Metrics.timer(NAME, HELP, "op", "other");
+
+    /** @param operations las operaciones del servant ({@code ChatService._iceOps}) */
+    MetricsInterceptor(Object servant, String[] operations) {
+        this.servant = servant;
+        for (String op : operations) {
+            timers.put(op, Metrics.timer(NAME, HELP, "op", op));
+        }
+    }
+
+    @Override
+    public CompletionStage<OutputStream> dispatch(Request request) throws UserException {
+        Metrics.Timer timer = timers.getOrDefault(request.getCurrent().operation, other);
+        OperationEvent event = new OperationEvent();
+        boolean recording = event.isEnabled();
+        if (recording) {
+            event.operation = request.getCurrent().operation;
+            event.begin();
+            OperationEvent.setCurrent(event);
+        }
+        long start = System.nanoTime();
+        CompletionStage<OutputStream> result;
+        try {
+            result = servant.ice_dispatch(request);
+        } catch (UserException | RuntimeException | Error e) {
+            timer.recordSince(start, false);
+            if (recording) event.finish(e);
+            throw e;
+        } finally {
+            if (recording) OperationEvent.clearCurrent();
+        }
+        if (result == null) {
+            // Despacho síncrono: la respuesta ya está escrita
+            timer.recordSince(start, true);
+            if (recording) event.finish(null);
+        } else {
+            result.whenComplete((out, error) -> {
+                timer.recordSince(start, error == null);
+                if (recording) event.finish(error);
+            });
+        }
+        return result;
+    }
+}
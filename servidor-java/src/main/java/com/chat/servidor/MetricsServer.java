@@ -0,0 +1,92 @@
+package com.chat.servidor;
+
+import Chat.ChatMetrics;
+import Chat.OperationStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zeroc.Ice.Communicator;
+import com.zeroc.Ice.Current;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Publica {@link Metrics} de dos formas:
+ * <ul>
+ *   <li>la faceta {@code ChatMetrics} del objeto de administración de Ice, que
+ *       solo es accesible si se configura {@code Ice.Admin.Endpoints} (y
+ *       {@code Ice.Admin.InstanceName});</li>
+ *   <li>{@code GET /metrics} en texto plano con el servidor HTTP del JDK, en
+ *       {@code chat.metrics.host}:{@code chat.metrics.port} (por defecto
+ *       127.0.0.1:10080; puerto 0 lo desactiva).</li>
+ * </ul>
+ */
+final class MetricsServer {
+
+    static final String FACET = "ChatMetrics";
+
+    private static final Log LOG = Log.get(MetricsServer.class);
+
+    private static HttpServer http;
+
+    private MetricsServer() {
+    }
+
+    static void start(Communicator communicator) {
+        communicator.addAdminFacet(new AdminFacet(), FACET);
+        Metrics.gauge("chat_log_dropped", "Líneas de log descartadas con el buffer lleno", Log::getDropped);
+
+        String host = System.getProperty("chat.metrics.host", "127.0.0.1");
+        int port = Integer.getInteger("chat.metrics.port", 10080);
+        if (port <= 0) return;
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext("/metrics", MetricsServer::handle);
+            server.start();
+            http = server;
+            LOG.info("Métricas en http://{}:{}/metrics", host, port);
+        } catch (IOException e) {
+            // Sin el endpoint el chat sigue funcionando; queda la faceta de Ice
+            LOG.error("No se pudo abrir el endpoint de métricas en {}:{}: {}", host, port, e.getMessage());
+        }
+    }
+
+    static void stop() {
+        if (http != null) {
+            http.stop(0);
+            http = null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static class AdminFacet implements ChatMetrics {
+
+        @Override
+        public OperationStats[] getOperationStats(Current current) {
+            return Metrics.operationStats();
+        }
+
+        @Override
+        public String scrape(Current current) {
+            return Metrics.scrape();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.chat.servidor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento de JFR de cada operación de ChatService, de que Ice la despacha a
+ * que se completa (en las AMD, cuando el mensaje quedó en disco).
+ *
+ * Lo empieza {@link MetricsInterceptor}; mientras el servant atiende la
+ * petición en el hilo de Ice lo encuentra con {@link #current()} y completa
+ * la conversación, el tamaño y la espera del lock. Si JFR no está grabando
+ * este evento, {@code current()} devuelve null y no se mide nada más.
+ */
+@Name("com.chat.Operation")
+@Label("Operación de chat")
+@Category("Chat")
+@Description("Una operación de ChatService, de principio a fin")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    private static final ThreadLocal<OperationEvent> CURRENT = new ThreadLocal<>();
+
+    @Label("Operación")
+    String operation;
+
+    @Label("Conversación")
+    @Description("Clave del historial: el grupo, o los dos usuarios")
+    String conversation;
+
+    @Label("Tamaño")
+    @DataAmount
+    long payloadBytes;
+
+    @Label("Espera del lock")
+    @Description("Tiempo esperando el lock de la conversación")
+    @Timespan(Timespan.NANOSECONDS)
+    long lockWait;
+
+    @Label("Resultado")
+    String outcome;
+
+    /** El evento de la operación que se está despachando en este hilo, o null. */
+    static OperationEvent current() {
+        return CURRENT.get();
+    }
+
+    static void setCurrent(OperationEvent event) {
+        CURRENT.set(event);
+    }
+
+    static void clearCurrent() {
+        CURRENT.remove();
+    }
+
+    void finish(Throwable error) {
+        if (shouldCommit()) {
+            outcome = error == null ? "ok" : error.getClass().getSimpleName();
+            commit();
+        }
+    }
+}
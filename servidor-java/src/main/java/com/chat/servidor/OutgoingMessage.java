@@ -0,0 +1,137 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import Chat.MessageCallbackPrx;
+import com.zeroc.Ice.Communicator;
+import com.zeroc.Ice.EncodingVersion;
+import com.zeroc.Ice.ObjectPrx;
+import com.zeroc.Ice.OutputStream;
+import com.zeroc.IceInternal.OutgoingAsync;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Un mensaje a notificar, compartido por todos sus destinatarios. El
+ * {@link Message} (audio incluido) se serializa una sola vez, la primera vez
+ * que hace falta, y cada entrega copia esos bytes en la petición en lugar de
+ * que el stub generado vuelva a serializar el struct por cada suscriptor.
+ *
+ * Las invocaciones se arman como en el stub generado ({@link OutgoingAsync}
+ * con un marshaler propio) y no con {@code ice_invokeAsync}: así siguen
+ * reutilizando los buffers que Ice guarda por proxy, mientras que
+ * {@code ice_invokeAsync} reserva uno nuevo en cada llamada.
+ */
+final class OutgoingMessage {
+
+    /** Codificación de los bytes guardados; los proxies con otra usan el stub. */
+    static final EncodingVersion ENCODING = com.zeroc.Ice.Util.currentEncoding();
+
+    final Message msg;
+    /** Null para los mensajes directos. */
+    final String groupName;
+
+    // Message serializado, sin encapsulación
+    private byte[] body;
+    // El mismo mensaje sin el audio, para los suscriptores degradados
+    private OutgoingMessage summary;
+
+    OutgoingMessage(Message msg, String groupName) {
+        this.msg = msg;
+        this.groupName = groupName;
+    }
+
+    /** Avisos que no se guardan en el historial (llamadas): si llegan tarde no sirven. */
+    boolean isEphemeral() {
+        return "call".equals(msg.type);
+    }
+
+    /**
+     * El mensaje sin el audio (el cliente lo ve como "[Nota de voz]" y lo
+     * obtiene del historial). Es el mismo objeto si no hay audio.
+     */
+    synchronized OutgoingMessage summary() {
+        if (msg.data == null || msg.data.length == 0) {
+            return this;
+        }
+        if (summary == null) {
+            Message stripped = msg.clone();
+            stripped.data = new byte[0];
+            summary = new OutgoingMessage(stripped, groupName);
+        }
+        return summary;
+    }
+
+    synchronized byte[] body(Communicator communicator) {
+        if (body == null) {
+            OutputStream out = new OutputStream(communicator, ENCODING);
+            Message.ice_write(out, msg);
+            body = out.finished();
+        }
+        return body;
+    }
+
+    /** Equivale a {@code onMessageAsync}/{@code onGroupMessageAsync} con el mensaje ya serializado. */
+    CompletableFuture<Void> sendTo(MessageCallbackPrx callback) {
+        byte[] bytes = body(callback.ice_getCommunicator());
+        String operation = groupName != null ? "onGroupMessage" : "onMessage";
+        OutgoingAsync<Void> f = new OutgoingAsync<>(callback, operation, null, false, null);
+        f.invoke(false, ObjectPrx.noExplicitContext, null, ostr -> {
+            ostr.writeBlob(bytes);
+            if (groupName != null) {
+                ostr.writeString(groupName);
+            }
+        }, null);
+        return f;
+    }
+
+    /**
+     * Equivale a {@code onMessagesAsync}: la secuencia se arma copiando el
+     * cuerpo ya serializado de cada mensaje.
+     */
+    static CompletableFuture<Void> sendBatch(MessageCallbackPrx callback, OutgoingMessage[] batch) {
+        Communicator communicator = callback.ice_getCommunicator();
+        byte[][] bodies = new byte[batch.length][];
+        for (int i = 0; i < batch.length; i++) {
+            bodies[i] = batch[i].body(communicator);
+        }
+        OutgoingAsync<Void> f = new OutgoingAsync<>(callback, "onMessages", null, false, null);
+        f.invoke(false, ObjectPrx.noExplicitContext, null, ostr -> {
+            ostr.writeSize(bodies.length);
+            for (byte[] bytes : bodies) {
+                ostr.writeBlob(bytes);
+            }
+        }, null);
+        return f;
+    }
+
+    /** Equivale a {@code deliverAsync} con el mensaje ya serializado. */
+    CompletableFuture<Void> deliverTo(MessageCallbackPrx callback, String[] recipients) {
+        byte[] bytes = body(callback.ice_getCommunicator());
+        OutgoingAsync<Void> f = new OutgoingAsync<>(callback, "deliver", null, false, null);
+        f.invoke(false, ObjectPrx.noExplicitContext, null, ostr -> {
+            ostr.writeBlob(bytes);
+            ostr.writeStringSeq(recipients);
+        }, null);
+        return f;
+    }
+
+    /** Equivale a {@code deliverBatchAsync}; recipients va en paralelo con batch. */
+    static CompletableFuture<Void> deliverBatch(MessageCallbackPrx callback, OutgoingMessage[] batch,
+                                                String[][] recipients) {
+        Communicator communicator = callback.ice_getCommunicator();
+        byte[][] bodies = new byte[batch.length][];
+        for (int i = 0; i < batch.length; i++) {
+            bodies[i] = batch[i].body(communicator);
+        }
+        OutgoingAsync<Void> f = new OutgoingAsync<>(callback, "deliverBatch", null, false, null);
+        f.invoke(false, ObjectPrx.noExplicitContext, null, ostr -> {
+            ostr.writeSize(bodies.length);
+            for (int i = 0; i < bodies.length; i++) {
+                // Cada Delivery: el Message y sus destinatarios
+                ostr.writeBlob(bodies[i]);
+                ostr.writeStringSeq(recipients[i]);
+            }
+        }, null);
+        return f;
+    }
+}
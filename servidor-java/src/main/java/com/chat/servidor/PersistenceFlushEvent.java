@@ -0,0 +1,28 @@
+package com.chat.servidor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Evento de JFR de cada sincronización a disco de un lote del log de historial. */
+@Name("com.chat.PersistenceFlush")
+@Label("Sincronización del historial")
+@Category("Chat")
+@Description("El fsync de un lote del log de historial; la duración es la del fsync")
+@StackTrace(false)
+final class PersistenceFlushEvent extends Event {
+
+    @Label("Registros")
+    int records;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Error")
+    String error;
+}
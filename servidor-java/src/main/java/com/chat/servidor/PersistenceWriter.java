@@ -0,0 +1,246 @@
+package com.chat.servidor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hilo dedicado de persistencia con group commit.
+ *
+ * Los envíos copian su registro en el segmento mapeado del {@link MessageLog}
+ * y piden aquí su sincronización; este hilo agrupa todas las peticiones
+ * pendientes en un solo fsync (msync de los segmentos modificados).
+ * El modo de durabilidad se elige con la propiedad {@code chat.persistence.mode}:
+ * <ul>
+ *   <li>{@code none}: nunca se hace fsync; el sistema operativo vuelca las páginas.</li>
+ *   <li>{@code async}: se confirma de inmediato; el fsync del lote se hace después.</li>
+ *   <li>{@code group-fsync}: se confirma cuando el lote que contiene el registro ya está en disco.</li>
+ * </ul>
+ * Sin ventana de espera ({@code chat.persistence.batchWindowMicros=0}) el lote
+ * se forma con las peticiones que se acumularon durante el fsync anterior.
+ */
+public class PersistenceWriter implements AutoCloseable {
+
+    private static final Log LOG = Log.get(PersistenceWriter.class);
+
+    public enum Mode {
+        NONE("none"), ASYNC("async"), GROUP_FSYNC("group-fsync");
+
+        private final String name;
+
+        Mode(String name) {
+            this.name = name;
+        }
+
+        public static Mode parse(String value) {
+            for (Mode mode : values()) {
+                if (mode.name.equalsIgnoreCase(value)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Modo de persistencia desconocido: " + value);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private static final Metrics.Timer FLUSH = Metrics.timer("chat_persistence_flush",
+            "Duración de cada sincronización del log de historial (un lote)");
+    private static final LongAdder FLUSHED = Metrics.counter("chat_persistence_records",
+            "Registros confirmados en disco");
+
+    private final MessageLog log;
+    private final Mode mode;
+    private final long batchWindowNanos;
+    private final int maxBatch;
+    private final long statsIntervalNanos;
+
+    private final BlockingQueue<CompletableFuture<Void>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Métricas del group commit
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private volatile int maxBatchSeen;
+    private volatile long maxFlushNanos;
+    private long lastSyncedPosition;
+
+    public PersistenceWriter(MessageLog log, Mode mode, long batchWindowMicros, int maxBatch,
+                             long statsIntervalSeconds) {
+        this.log = log;
+        this.mode = mode;
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+        this.maxBatch = maxBatch;
+        this.statsIntervalNanos = TimeUnit.SECONDS.toNanos(statsIntervalSeconds);
+        this.lastSyncedPosition = log.getWritePosition();
+        this.thread = new Thread(this::run, "chat-persistence");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Metrics.gauge("chat_persistence_queue", "Registros esperando sincronización", queue::size);
+    }
+
+    /** Crea el escritor leyendo la configuración de las propiedades del sistema. */
+    public static PersistenceWriter fromSystemProperties(MessageLog log) {
+        Mode mode = modeFromSystemProperties();
+        long window = Long.getLong("chat.persistence.batchWindowMicros", 0);
+        int maxBatch = Integer.getInteger("chat.persistence.maxBatch", 512);
+        long statsInterval = Long.getLong("chat.persistence.statsIntervalSeconds", 60);
+        return new PersistenceWriter(log, mode, window, maxBatch, statsInterval);
+    }
+
+    public static Mode modeFromSystemProperties() {
+        return Mode.parse(System.getProperty("chat.persistence.mode", "group-fsync"));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Pide la sincronización de lo ya escrito en el log. El futuro devuelto se
+     * completa según el modo: inmediatamente en {@code none}/{@code async}, o
+     * tras el fsync del lote en {@code group-fsync}.
+     */
+    public CompletableFuture<Void> sync() {
+        if (mode == Mode.NONE) {
+            return DONE;
+        }
+        if (!running) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("El escritor de persistencia está cerrado"));
+            return failed;
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(done);
+        return mode == Mode.GROUP_FSYNC ? done : DONE;
+    }
+
+    /** Vacía lo pendiente y detiene el hilo. */
+    @Override
+    public void close() {
+        // No se interrumpe el hilo: interrumpir una escritura en curso cerraría el FileChannel
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        CompletableFuture<Void> late;
+        while ((late = queue.poll()) != null) {
+            late.completeExceptionally(new IllegalStateException("El escritor de persistencia está cerrado"));
+        }
+        LOG.info(getStats());
+    }
+
+    public String getStats() {
+        long b = batches.get();
+        long r = records.get();
+        return String.format(Locale.ROOT,
+                "Persistencia [%s]: %d fsync, %d registros, %d bytes, lote medio %.1f (máx %d), " +
+                "flush medio %.3f ms (máx %.3f ms)",
+                mode, b, r, bytes.get(), b == 0 ? 0.0 : (double) r / b, maxBatchSeen,
+                b == 0 ? 0.0 : flushNanosTotal.get() / (double) b / 1_000_000.0, maxFlushNanos / 1_000_000.0);
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getRecordCount() {
+        return records.get();
+    }
+
+    private void run() {
+        List<CompletableFuture<Void>> batch = new ArrayList<>(maxBatch);
+        long nextStats = System.nanoTime() + statsIntervalNanos;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                CompletableFuture<Void> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    collect(batch);
+                    flush(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (statsIntervalNanos > 0 && System.nanoTime() - nextStats >= 0) {
+                if (batches.get() > 0) {
+                    LOG.info(getStats());
+                }
+                nextStats = System.nanoTime() + statsIntervalNanos;
+            }
+        }
+    }
+
+    // Espera hasta batchWindow para juntar más registros en el mismo lote
+    private void collect(List<CompletableFuture<Void>> batch) throws InterruptedException {
+        queue.drainTo(batch, maxBatch - batch.size());
+        if (batchWindowNanos <= 0 || !running) return;
+
+        long deadline = System.nanoTime() + batchWindowNanos;
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            CompletableFuture<Void> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    private void flush(List<CompletableFuture<Void>> batch) {
+        PersistenceFlushEvent event = new PersistenceFlushEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            long position = log.getWritePosition();
+            log.force();
+            long elapsed = System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.records = batch.size();
+                event.bytes = position - lastSyncedPosition;
+                event.commit();
+            }
+            FLUSH.record(elapsed, true);
+            FLUSHED.add(batch.size());
+
+            batches.incrementAndGet();
+            records.addAndGet(batch.size());
+            bytes.addAndGet(position - lastSyncedPosition);
+            lastSyncedPosition = position;
+            flushNanosTotal.addAndGet(elapsed);
+            if (batch.size() > maxBatchSeen) maxBatchSeen = batch.size();
+            if (elapsed > maxFlushNanos) maxFlushNanos = elapsed;
+
+            for (CompletableFuture<Void> done : batch) {
+                done.complete(null);
+            }
+        } catch (Exception e) {
+            FLUSH.recordSince(start, false);
+            if (event.shouldCommit()) {
+                event.records = batch.size();
+                event.error = e.toString();
+                event.commit();
+            }
+            LOG.error("Error al sincronizar lote de historial ({} registros): {}", batch.size(), e.getMessage());
+            for (CompletableFuture<Void> done : batch) {
+                done.completeExceptionally(e);
+            }
+        }
+    }
+}
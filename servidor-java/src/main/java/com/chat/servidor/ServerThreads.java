@@ -0,0 +1,84 @@
+package com.chat.servidor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hilos del servidor según {@code chat.server.threads}: {@code platform}
+ * (por defecto) usa pools fijos de hilos del sistema; {@code virtual} usa un
+ * hilo virtual por tarea, tanto para despachar las peticiones de Ice (y las
+ * respuestas de las entregas asíncronas a los suscriptores) como para el
+ * trabajo bloqueante del servant.
+ *
+ * Los hilos virtuales necesitan Java 21 ({@code ./gradlew run -Pjava21}). Se
+ * crean por reflexión para que el servidor siga compilando con Java 17; si
+ * no están disponibles se avisa y se usan hilos del sistema.
+ */
+final class ServerThreads {
+
+    private static final Log LOG = Log.get(ServerThreads.class);
+
+    enum Mode { PLATFORM, VIRTUAL }
+
+    private ServerThreads() {
+    }
+
+    static Mode modeFromSystemProperties() {
+        String value = System.getProperty("chat.server.threads", "platform").trim().toLowerCase();
+        switch (value) {
+            case "platform":
+                return Mode.PLATFORM;
+            case "virtual":
+                if (virtualThreadsAvailable()) {
+                    return Mode.VIRTUAL;
+                }
+                LOG.warn("chat.server.threads=virtual requiere Java 21 (versión actual {}), se usarán hilos del sistema",
+                        Runtime.version().feature());
+                return Mode.PLATFORM;
+            default:
+                throw new IllegalArgumentException("chat.server.threads desconocido: " + value +
+                        " (platform o virtual)");
+        }
+    }
+
+    /**
+     * Pool para el modo indicado: {@code threads} hilos daemon del sistema, o
+     * un hilo virtual por tarea.
+     */
+    static ExecutorService newPool(Mode mode, String name, int threads) {
+        if (mode == Mode.VIRTUAL) {
+            return newVirtualThreadPerTask(name);
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // Equivale a Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory())
+    private static ExecutorService newVirtualThreadPerTask(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudieron crear hilos virtuales", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.chat.servidor;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cuándo un suscriptor se considera lento y qué se hace con él, más los
+ * contadores de cuántos suscriptores hay en cada estado.
+ *
+ * Un suscriptor pasa a degradado cuando su cola supera
+ * {@code chat.fanout.slow.degradeQueue} mensajes o la latencia media de sus
+ * entregas supera {@code chat.fanout.slow.degradeLatencyMs}; vuelve a normal
+ * cuando ambas bajan a la mitad del umbral (la cola a un cuarto). Si está
+ * degradado y pasa {@code chat.fanout.slow.evictAfterMs} sin completar ninguna
+ * entrega teniendo mensajes pendientes, se lo desconecta.
+ */
+final class SlowConsumerPolicy {
+
+    enum State { HEALTHY, DEGRADED, EVICTED }
+
+    private final int degradeQueue;
+    private final long degradeLatencyNanos;
+    private final long evictAfterNanos;
+
+    // Suscriptores en cada estado ahora (los desconectados son un total)
+    private final LongAdder healthy = new LongAdder();
+    private final LongAdder degraded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder degradations = new LongAdder();
+    private final LongAdder recoveries = new LongAdder();
+    // Lo que no se entregó por estar degradado o con la cola llena
+    private final LongAdder ephemeralDropped = new LongAdder();
+    private final LongAdder summarized = new LongAdder();
+    private final LongAdder queueFullDropped = new LongAdder();
+
+    SlowConsumerPolicy(int degradeQueue, long degradeLatencyMillis, long evictAfterMillis) {
+        this.degradeQueue = degradeQueue;
+        this.degradeLatencyNanos = TimeUnit.MILLISECONDS.toNanos(degradeLatencyMillis);
+        this.evictAfterNanos = TimeUnit.MILLISECONDS.toNanos(evictAfterMillis);
+    }
+
+    /** Lee los umbrales de las propiedades del sistema ({@code 0} desactiva cada uno). */
+    static SlowConsumerPolicy fromSystemProperties() {
+        return new SlowConsumerPolicy(
+                Integer.getInteger("chat.fanout.slow.degradeQueue", 250),
+                Long.getLong("chat.fanout.slow.degradeLatencyMs", 1000),
+                Long.getLong("chat.fanout.slow.evictAfterMs", 30000));
+    }
+
+    boolean shouldDegrade(int queued, long latencyNanos) {
+        return (degradeQueue > 0 && queued >= degradeQueue)
+                || (degradeLatencyNanos > 0 && latencyNanos >= degradeLatencyNanos);
+    }
+
+    boolean shouldRecover(int queued, long latencyNanos) {
+        return (degradeQueue == 0 || queued <= degradeQueue / 4)
+                && (degradeLatencyNanos == 0 || latencyNanos < degradeLatencyNanos / 2);
+    }
+
+    /** @param stalledNanos tiempo desde la última entrega completada teniendo algo pendiente */
+    boolean shouldEvict(long stalledNanos) {
+        return evictAfterNanos > 0 && stalledNanos >= evictAfterNanos;
+    }
+
+    void subscriberCreated() {
+        healthy.increment();
+    }
+
+    void transition(State from, State to) {
+        counter(from).decrement();
+        if (to != null) {
+            counter(to).increment();
+        }
+        if (to == State.DEGRADED) {
+            degradations.increment();
+        } else if (to == State.HEALTHY) {
+            recoveries.increment();
+        }
+    }
+
+    void ephemeralDropped() {
+        ephemeralDropped.increment();
+    }
+
+    void summarized() {
+        summarized.increment();
+    }
+
+    void queueFullDropped() {
+        queueFullDropped.increment();
+    }
+
+    long getHealthy() {
+        return healthy.sum();
+    }
+
+    long getDegraded() {
+        return degraded.sum();
+    }
+
+    long getEvicted() {
+        return evicted.sum();
+    }
+
+    String getStats() {
+        return String.format(Locale.ROOT,
+                "Suscriptores: %d normales, %d degradados, %d desconectados por lentos " +
+                "(%d degradaciones, %d recuperaciones); %d avisos descartados, %d notas de voz resumidas, " +
+                "%d mensajes descartados con la cola llena",
+                healthy.sum(), degraded.sum(), evicted.sum(), degradations.sum(), recoveries.sum(),
+                ephemeralDropped.sum(), summarized.sum(), queueFullDropped.sum());
+    }
+
+    private LongAdder counter(State state) {
+        switch (state) {
+            case HEALTHY:
+                return healthy;
+            case DEGRADED:
+                return degraded;
+            default:
+                return evicted;
+        }
+    }
+}
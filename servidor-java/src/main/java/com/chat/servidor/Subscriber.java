@@ -0,0 +1,506 @@
+package com.chat.servidor;
+
+import Chat.Delivery;
+import Chat.Message;
+import Chat.MessageCallbackPrx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Un callback suscrito a los mensajes en tiempo real, con su cola de salida,
+ * y los usuarios suscritos con él. El proxy HTTP suscribe a todos sus
+ * usuarios con el mismo callback: cada mensaje se le envía una sola vez con
+ * {@code deliver}, junto con los destinatarios que atiende, y él lo reparte.
+ *
+ * Las entregas son invocaciones asíncronas con un máximo en curso por
+ * callback y un timeout: un cliente lento o medio caído no frena a los
+ * demás ni al envío. El envío se adapta a la carga: si no hay nada en curso
+ * el mensaje sale enseguida; si no, se junta en la cola y sale en un único
+ * {@code deliverBatch} cuando se completa una entrega, cuando se acumulan
+ * {@code chat.fanout.batchMax} mensajes o tras
+ * {@code chat.fanout.batchDelayMicros}, lo que pase primero. A los clientes
+ * que no implementan {@code deliver} se les notifica como antes, una vez por
+ * destinatario, con {@code onMessages} o, si tampoco lo tienen, con
+ * {@code onMessage}/{@code onGroupMessage} de a uno. Si la cola se llena, se
+ * descarta.
+ *
+ * Las entregas salen en el orden de la cola aunque haya varias en curso: las
+ * que se sacan de la cola pasan por una bandeja que vacía un solo hilo a la
+ * vez. Mientras no se sabe si el cliente implementa {@code deliver} (o
+ * {@code onMessages}) hay una sola entrega en curso, así la que vuelve a la
+ * cola al pasar al modo anterior no queda detrás de otras ya enviadas.
+ *
+ * Un mismo {@link OutgoingMessage} se entrega a todos sus destinatarios, así
+ * que se serializa una vez y cada callback solo copia los bytes.
+ *
+ * Cada suscriptor lleva la profundidad de su cola y la latencia media de sus
+ * entregas. Si se atrasa pasa a degradado (ver {@link SlowConsumerPolicy}):
+ * se descartan los avisos de llamada y las notas de voz se envían sin el
+ * audio, que el cliente puede pedir al historial. Si sigue sin completar
+ * entregas se lo desconecta como si se hubiera perdido la conexión.
+ */
+final class Subscriber {
+
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("chat.fanout.maxInFlight", 8);
+    private static final int MAX_PENDING = Integer.getInteger("chat.fanout.maxPending", 1000);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("chat.fanout.timeoutMs", 5000);
+    private static final int BATCH_MAX = Math.max(1, Integer.getInteger("chat.fanout.batchMax", 64));
+    private static final long BATCH_DELAY_MICROS = Long.getLong("chat.fanout.batchDelayMicros", 1000);
+    // Con false cada entrega la serializa el stub generado, como antes
+    private static final boolean MARSHAL_ONCE = Boolean.parseBoolean(
+            System.getProperty("chat.fanout.marshalOnce", "true"));
+
+    private static final Log LOG = Log.get(Subscriber.class);
+    private static final SlowConsumerPolicy POLICY = SlowConsumerPolicy.fromSystemProperties();
+
+    // Desde que sale cada entrega hasta que el cliente responde (o falla)
+    private static final String DELIVERY = "chat_fanout_delivery";
+    private static final String DELIVERY_HELP = "Latencia de cada entrega a un callback";
+    private static final Metrics.Timer ROUTED = Metrics.timer(DELIVERY, DELIVERY_HELP, "op", "deliver");
+    private static final Metrics.Timer LEGACY = Metrics.timer(DELIVERY, DELIVERY_HELP, "op", "legacy");
+
+    static {
+        String help = "Suscriptores por estado (los desconectados por lentos son un total)";
+        Metrics.gauge("chat_subscribers", help, "state", "healthy", POLICY::getHealthy);
+        Metrics.gauge("chat_subscribers", help, "state", "degraded", POLICY::getDegraded);
+        Metrics.gauge("chat_subscribers", help, "state", "evicted", POLICY::getEvicted);
+    }
+
+    // Un único hilo para los vencimientos de batchDelayMicros de todos los suscriptores
+    private static final ScheduledExecutorService FLUSH_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-fanout-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Un mensaje en la cola y los usuarios de este callback a los que va. */
+    private static final class Entry {
+        final OutgoingMessage outgoing;
+        final String[] recipients;
+
+        Entry(OutgoingMessage outgoing, String[] recipients) {
+            this.outgoing = outgoing;
+            this.recipients = recipients;
+        }
+    }
+
+    private final MessageCallbackPrx target;
+    private final MessageCallbackPrx callback;
+    private final boolean marshalOnce;
+    private final Consumer<Subscriber> onLost;
+    private final Set<String> usernames = ConcurrentHashMap.newKeySet();
+
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    // Entregas sacadas de la cola que todavía no salieron; las envía en orden quien tenga sending
+    private final ArrayDeque<Entry[]> outbox = new ArrayDeque<>();
+    private boolean sending;
+    private int inFlight;
+    private boolean flushScheduled;
+    private boolean closed;
+    private long dropped;
+    private SlowConsumerPolicy.State state = SlowConsumerPolicy.State.HEALTHY;
+    // Latencia media de las entregas (media móvil exponencial)
+    private long latencyNanos;
+    // Última entrega completada o, si estaba sin nada pendiente, cuando llegó el siguiente mensaje
+    private long lastProgressNanos = System.nanoTime();
+    // Pasan a false si el cliente responde que no tiene deliver u onMessages
+    private volatile boolean routing = Boolean.parseBoolean(System.getProperty("chat.fanout.deliver", "true"));
+    private volatile boolean batching = Boolean.parseBoolean(System.getProperty("chat.fanout.batching", "true"));
+    // Hasta que una entrega con deliver u onMessages sale bien, una sola en curso
+    private boolean probing = routing || batching;
+
+    /**
+     * @param onLost se llama una vez si la conexión con el cliente se perdió,
+     *               para quitarlo de los suscriptores.
+     */
+    Subscriber(MessageCallbackPrx callback, Consumer<Subscriber> onLost) {
+        this.target = callback;
+        this.callback = callback.ice_invocationTimeout(TIMEOUT_MILLIS);
+        this.marshalOnce = MARSHAL_ONCE && callback.ice_getEncodingVersion().equals(OutgoingMessage.ENCODING);
+        this.onLost = onLost;
+        POLICY.subscriberCreated();
+    }
+
+    /** Umbrales y contadores por estado de todos los suscriptores. */
+    static SlowConsumerPolicy getPolicy() {
+        return POLICY;
+    }
+
+    /** El proxy tal como se suscribió; identifica al suscriptor. */
+    MessageCallbackPrx getCallback() {
+        return target;
+    }
+
+    Set<String> getUsernames() {
+        return usernames;
+    }
+
+    void addUser(String username) {
+        usernames.add(username);
+    }
+
+    /** Quita un usuario; devuelve true si no queda ninguno. */
+    boolean removeUser(String username) {
+        usernames.remove(username);
+        return usernames.isEmpty();
+    }
+
+    /**
+     * Entrega un mensaje a los usuarios indicados, todos suscritos con este
+     * callback. No bloquea.
+     */
+    void deliver(OutgoingMessage outgoing, String[] recipients) {
+        boolean drain = false;
+        boolean evict;
+        synchronized (this) {
+            if (closed) return;
+            if (state == SlowConsumerPolicy.State.DEGRADED) {
+                if (outgoing.isEphemeral()) {
+                    POLICY.ephemeralDropped();
+                    return;
+                }
+                OutgoingMessage summary = outgoing.summary();
+                if (summary != outgoing) {
+                    POLICY.summarized();
+                    outgoing = summary;
+                }
+            }
+            if (inFlight == 0 && pending.isEmpty()) {
+                lastProgressNanos = System.nanoTime();
+            }
+            if (pending.size() >= MAX_PENDING) {
+                // Se avisa la primera vez y luego cada 1000 descartes
+                POLICY.queueFullDropped();
+                if (dropped++ % 1000 == 0) {
+                    LOG.warn("⚠️  Cola llena para {}, se descartan mensajes ({} descartados)", describeUsers(), dropped);
+                }
+                evict = updateState();
+            } else {
+                pending.add(new Entry(outgoing, recipients));
+                evict = updateState();
+                if (evict) {
+                    // Se desconecta: no sale nada más
+                } else if (inFlight == 0 || (inFlight < maxInFlight() && pending.size() >= BATCH_MAX)) {
+                    drain = takeBatch();
+                } else if (inFlight < maxInFlight() && !flushScheduled) {
+                    // Ocupado pero con lugar: se espera un poco a que se junten más
+                    flushScheduled = true;
+                    FLUSH_TIMER.schedule(this::flushAfterDelay, BATCH_DELAY_MICROS, TimeUnit.MICROSECONDS);
+                }
+                // Sin lugar para más entregas en curso: sale al completarse una
+            }
+        }
+        if (evict) {
+            onLost.accept(this);
+        } else if (drain) {
+            drainOutbox();
+        }
+    }
+
+    /** Deja de entregar y descarta lo pendiente. */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            POLICY.transition(state, null);
+        }
+        pending.clear();
+        outbox.clear();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void flushAfterDelay() {
+        boolean drain = false;
+        synchronized (this) {
+            flushScheduled = false;
+            if (!closed && inFlight < maxInFlight() && !pending.isEmpty()) {
+                drain = takeBatch();
+            }
+        }
+        if (drain) {
+            drainOutbox();
+        }
+    }
+
+    // Con el lock tomado
+    private int maxInFlight() {
+        return probing ? 1 : MAX_IN_FLIGHT;
+    }
+
+    // Saca de la cola lo que entra en una entrega, la cuenta como en curso y la deja en
+    // la bandeja. Devuelve true si el que llama debe vaciarla. Con el lock tomado
+    private boolean takeBatch() {
+        Entry[] batch = new Entry[Math.min(pending.size(), routing || batching ? BATCH_MAX : 1)];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = pending.poll();
+        }
+        inFlight++;
+        outbox.add(batch);
+        if (sending) {
+            return false;
+        }
+        sending = true;
+        return true;
+    }
+
+    // Envía lo que haya en la bandeja, en orden, fuera del lock. Si una entrega se
+    // completa en este mismo hilo y saca otra, la deja en la bandeja y sale en esta vuelta
+    private void drainOutbox() {
+        while (true) {
+            Entry[] batch;
+            synchronized (this) {
+                batch = closed ? null : outbox.poll();
+                if (batch == null) {
+                    outbox.clear();
+                    sending = false;
+                    return;
+                }
+            }
+            send(batch);
+        }
+    }
+
+    private void send(Entry[] batch) {
+        // Sin grabación no se mide nada; grabando, solo las que superan el umbral del
+        // perfil se completan con los destinatarios (ver completed)
+        DeliveryEvent event = new DeliveryEvent();
+        if (event.isEnabled()) {
+            event.begin();
+        } else {
+            event = null;
+        }
+        boolean routed = routing;
+        boolean batched = false;
+        CompletableFuture<Void> sent;
+        try {
+            if (routed) {
+                sent = sendRouted(batch);
+            } else {
+                // Como antes de deliver: una notificación por destinatario
+                List<OutgoingMessage> copies = new ArrayList<>();
+                for (Entry entry : batch) {
+                    for (int i = 0; i < entry.recipients.length; i++) {
+                        copies.add(entry.outgoing);
+                    }
+                }
+                batched = batching && copies.size() > 1;
+                sent = batched ? sendMessages(copies) : sendEach(copies);
+            }
+        } catch (com.zeroc.Ice.LocalException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        boolean usedBatch = batched;
+        long sentAt = System.nanoTime();
+        DeliveryEvent recorded = event;
+        sent.whenComplete((ignored, error) -> completed(batch, routed, usedBatch, sentAt, recorded, error));
+    }
+
+    private CompletableFuture<Void> sendRouted(Entry[] batch) {
+        if (batch.length == 1) {
+            Entry entry = batch[0];
+            return marshalOnce
+                    ? entry.outgoing.deliverTo(callback, entry.recipients)
+                    : callback.deliverAsync(entry.outgoing.msg, entry.recipients);
+        }
+        if (marshalOnce) {
+            OutgoingMessage[] outgoing = new OutgoingMessage[batch.length];
+            String[][] recipients = new String[batch.length][];
+            for (int i = 0; i < batch.length; i++) {
+                outgoing[i] = batch[i].outgoing;
+                recipients[i] = batch[i].recipients;
+            }
+            return OutgoingMessage.deliverBatch(callback, outgoing, recipients);
+        }
+        Delivery[] deliveries = new Delivery[batch.length];
+        for (int i = 0; i < batch.length; i++) {
+            deliveries[i] = new Delivery(batch[i].outgoing.msg, batch[i].recipients);
+        }
+        return callback.deliverBatchAsync(deliveries);
+    }
+
+    private CompletableFuture<Void> sendMessages(List<OutgoingMessage> copies) {
+        if (marshalOnce) {
+            return OutgoingMessage.sendBatch(callback, copies.toArray(new OutgoingMessage[0]));
+        }
+        Message[] msgs = new Message[copies.size()];
+        for (int i = 0; i < msgs.length; i++) {
+            msgs[i] = copies.get(i).msg;
+        }
+        return callback.onMessagesAsync(msgs);
+    }
+
+    // Un onMessage/onGroupMessage por copia; la entrega se completa con la última
+    private CompletableFuture<Void> sendEach(List<OutgoingMessage> copies) {
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[copies.size()];
+        for (int i = 0; i < sent.length; i++) {
+            OutgoingMessage outgoing = copies.get(i);
+            if (marshalOnce) {
+                sent[i] = outgoing.sendTo(callback);
+            } else {
+                sent[i] = outgoing.groupName != null
+                        ? callback.onGroupMessageAsync(outgoing.msg, outgoing.groupName)
+                        : callback.onMessageAsync(outgoing.msg);
+            }
+        }
+        return CompletableFuture.allOf(sent);
+    }
+
+    // Completa una entrega: registra el resultado y envía lo que se juntó mientras tanto
+    private void completed(Entry[] batch, boolean routed, boolean batched, long sentAt, DeliveryEvent event,
+                           Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        (routed ? ROUTED : LEGACY).recordSince(sentAt, error == null);
+        if (event != null) {
+            commitEvent(event, batch, routed, batched, error);
+        }
+        boolean retry = false;
+        if (error == null) {
+            // Una línea por entrega: solo en DEBUG
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("✅ Notificación enviada a {}", describe(batch));
+            }
+        } else if (error instanceof com.zeroc.Ice.ConnectionLostException
+                || error instanceof com.zeroc.Ice.ConnectFailedException) {
+            LOG.warn("⚠️  Conexión perdida con {}, removiendo callback", describe(batch));
+            close();
+            onLost.accept(this);
+            return;
+        } else if (error instanceof com.zeroc.Ice.OperationNotExistException && (routed || batched)) {
+            if (routed && routing) {
+                routing = false;
+                LOG.info("ℹ️  {} no implementa deliver, se notifica por usuario", describeUsers());
+            } else if (!routed && batching) {
+                batching = false;
+                LOG.info("ℹ️  {} no implementa onMessages, se notifica de a un mensaje", describeUsers());
+            }
+            retry = true;
+        } else if (error instanceof com.zeroc.Ice.InvocationTimeoutException) {
+            LOG.warn("⚠️  Timeout notificando a {} ({} ms)", describe(batch), TIMEOUT_MILLIS);
+        } else {
+            LOG.error("❌ Error notificando a {}: {}{}", describe(batch),
+                    error.getMessage() != null ? error.getMessage() : error.getClass().getName(),
+                    error.getCause() != null ? " (causa: " + error.getCause().getMessage() + ")" : "");
+        }
+
+        boolean drain = false;
+        boolean evict;
+        synchronized (this) {
+            inFlight--;
+            if (closed) return;
+            long now = System.nanoTime();
+            latencyNanos = latencyNanos == 0 ? now - sentAt : latencyNanos + (now - sentAt - latencyNanos) / 8;
+            if (error == null) {
+                lastProgressNanos = now;
+                if (routed || batched) {
+                    probing = false;
+                }
+            }
+            evict = updateState();
+            if (evict) {
+                // Se desconecta: no sale nada más
+            } else if (retry) {
+                // La entrega no llegó: vuelve al frente de la cola, en orden. Mientras se
+                // prueba hay una sola en curso, así que no salió nada detrás de ella
+                for (int i = batch.length - 1; i >= 0; i--) {
+                    pending.addFirst(batch[i]);
+                }
+                probing = routing || batching;
+            }
+            if (!evict && !pending.isEmpty()) {
+                drain = takeBatch();
+            }
+        }
+        if (evict) {
+            onLost.accept(this);
+        } else if (drain) {
+            drainOutbox();
+        }
+    }
+
+    // Los campos (en especial la lista de usuarios) se arman solo si el evento supera
+    // el umbral y se va a guardar
+    private void commitEvent(DeliveryEvent event, Entry[] batch, boolean routed, boolean batched, Throwable error) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.recipient = describeUsers();
+            event.operation = routed ? (batch.length > 1 ? "deliverBatch" : "deliver")
+                    : batched ? "onMessages" : "onMessage";
+            event.messages = batch.length;
+            event.outcome = error == null ? "ok" : error.getClass().getSimpleName();
+            event.commit();
+        }
+    }
+
+    // Aplica la política de consumidores lentos con la cola y la latencia actuales.
+    // Devuelve true si lo desconectó; entonces hay que llamar a onLost. Con el lock tomado
+    private boolean updateState() {
+        int queued = pending.size();
+        if (state == SlowConsumerPolicy.State.HEALTHY) {
+            if (POLICY.shouldDegrade(queued, latencyNanos)) {
+                setState(SlowConsumerPolicy.State.DEGRADED);
+                LOG.warn("🐢 {} se atrasa ({} en cola, latencia {} ms): se notifica en modo degradado",
+                        describeUsers(), queued, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+            }
+        } else if (state == SlowConsumerPolicy.State.DEGRADED) {
+            boolean busy = inFlight > 0 || queued > 0;
+            if (busy && POLICY.shouldEvict(System.nanoTime() - lastProgressNanos)) {
+                setState(SlowConsumerPolicy.State.EVICTED);
+                closed = true;
+                pending.clear();
+                LOG.warn("⛔ {} lleva {} s sin recibir notificaciones, se lo desconecta ({} en cola)",
+                        describeUsers(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastProgressNanos), queued);
+                return true;
+            }
+            if (POLICY.shouldRecover(queued, latencyNanos)) {
+                setState(SlowConsumerPolicy.State.HEALTHY);
+                LOG.info("ℹ️  {} se puso al día, vuelve al modo normal", describeUsers());
+            }
+        }
+        return false;
+    }
+
+    private void setState(SlowConsumerPolicy.State next) {
+        POLICY.transition(state, next);
+        state = next;
+    }
+
+    // Para los logs: a quién iba la entrega y qué llevaba
+    private String describe(Entry[] batch) {
+        return describeUsers() + (batch.length > 1 ? " (" + batch.length + " mensajes)"
+                : batch[0].outgoing.groupName != null ? " (grupo)" : "");
+    }
+
+    // Para los logs y los eventos: el usuario o, si el callback atiende a varios, algunos de ellos
+    private String describeUsers() {
+        Iterator<String> it = usernames.iterator();
+        if (!it.hasNext()) {
+            return "(sin usuarios)";
+        }
+        StringBuilder sb = new StringBuilder(it.next());
+        int shown = 1;
+        while (it.hasNext() && shown < 3) {
+            sb.append(", ").append(it.next());
+            shown++;
+        }
+        int rest = usernames.size() - shown;
+        if (rest > 0) {
+            sb.append(" y ").append(rest).append(" más");
+        }
+        return sb.toString();
+    }
+}
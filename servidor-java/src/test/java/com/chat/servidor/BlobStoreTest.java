@@ -0,0 +1,74 @@
+package com.chat.servidor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Escritura y lectura de notas de voz en {@link BlobStore}: deduplicación por
+ * contenido, temporales que deja una caída y blobs truncados.
+ */
+class BlobStoreTest {
+
+    @Test
+    void readReturnsStoredContent(@TempDir Path dir) throws IOException {
+        BlobStore blobs = new BlobStore(dir, true);
+        byte[] audio = audio(200_000);
+        BlobStore.BlobRef ref = blobs.put(audio);
+
+        assertEquals(audio.length, ref.size());
+        assertArrayEquals(audio, blobs.read(ref));
+        assertArrayEquals(new byte[0], blobs.read(blobs.put(new byte[0])));
+    }
+
+    @Test
+    void sameContentIsStoredOnce(@TempDir Path dir) throws IOException {
+        BlobStore blobs = new BlobStore(dir, false);
+        BlobStore.BlobRef first = blobs.put(audio(1000));
+        BlobStore.BlobRef second = blobs.put(audio(1000));
+
+        assertEquals(first, second);
+        assertEquals(1, countFiles(dir));
+        assertTrue(blobs.getStats().contains("1 deduplicadas"));
+    }
+
+    @Test
+    void interruptedWritesAreDeletedOnOpen(@TempDir Path dir) throws IOException {
+        BlobStore.BlobRef ref = new BlobStore(dir, false).put(audio(1000));
+        Path shard = dir.resolve(ref.id().substring(0, 2));
+        Files.write(shard.resolve(ref.id() + "123.tmp"), new byte[] {1, 2, 3});
+
+        BlobStore reopened = new BlobStore(dir, false);
+        assertEquals(1, countFiles(dir));
+        assertArrayEquals(audio(1000), reopened.read(ref));
+    }
+
+    @Test
+    void truncatedBlobIsRejected(@TempDir Path dir) throws IOException {
+        BlobStore blobs = new BlobStore(dir, false);
+        BlobStore.BlobRef ref = blobs.put(audio(1000));
+        Files.write(dir.resolve(ref.id().substring(0, 2)).resolve(ref.id()), new byte[10]);
+
+        assertThrows(IOException.class, () -> blobs.read(ref));
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static byte[] audio(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return data;
+    }
+}
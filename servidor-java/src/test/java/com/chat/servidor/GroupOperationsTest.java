@@ -0,0 +1,135 @@
+package com.chat.servidor;
+
+import Chat.ChatException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Usuarios y grupos (AMD): responden cuando el registro es durable, un grupo
+ * se publica recién entonces y dos createGroup del mismo nombre lo escriben
+ * una sola vez.
+ */
+class GroupOperationsTest {
+
+    private static IceChatServer.ChatServiceI service;
+
+    @BeforeAll
+    static void openStore() throws IOException {
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        System.setProperty("chat.log.level", "WARN");
+        deleteDirectory(Paths.get("data"));
+        HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+        service = new IceChatServer.ChatServiceI();
+    }
+
+    @AfterAll
+    static void closeStore() {
+        service.shutdown();
+        HistoryManager.close();
+    }
+
+    @Test
+    void concurrentCreatesOfSameGroupSucceedOnce() {
+        List<CompletableFuture<Void>> creates = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            creates.add(CompletableFuture.supplyAsync(() -> service.createGroupAsync("equipo", null))
+                    .thenCompose(stage -> stage));
+        }
+
+        int created = 0;
+        for (CompletableFuture<Void> create : creates) {
+            try {
+                create.join();
+                created++;
+            } catch (CompletionException e) {
+                assertInstanceOf(ChatException.class, e.getCause());
+            }
+        }
+        assertEquals(1, created);
+        assertTrue(ChatServer.getGrupos().exists("equipo"));
+        assertNotNull(ChatServer.getHistorial().get("equipo"));
+        assertThrows(CompletionException.class,
+                () -> service.createGroupAsync("equipo", null).toCompletableFuture().join());
+    }
+
+    @Test
+    void groupIsPublishedOnlyOncePersisted() {
+        CompletableFuture<Void> created = service.createGroupAsync("nuevo", null).toCompletableFuture();
+        if (!created.isDone()) {
+            assertFalse(ChatServer.getGrupos().exists("nuevo"));
+        }
+        created.join();
+        assertTrue(ChatServer.getGrupos().exists("nuevo"));
+    }
+
+    @Test
+    void joinAndLeaveAnswerAfterPersisting() {
+        service.createGroupAsync("club", null).toCompletableFuture().join();
+        service.joinGroupAsync("club", "ana", null).toCompletableFuture().join();
+        service.joinGroupAsync("club", "beto", null).toCompletableFuture().join();
+        service.joinGroupAsync("club", "ana", null).toCompletableFuture().join();   // ya era miembro
+        service.leaveGroupAsync("club", "beto", null).toCompletableFuture().join();
+        service.leaveGroupAsync("club", "carla", null).toCompletableFuture().join(); // no era miembro
+        assertEquals(Set.of("ana"), ChatServer.getGrupos().members("club"));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> service.joinGroupAsync("sin-crear", "ana", null).toCompletableFuture().join());
+        assertInstanceOf(ChatException.class, error.getCause());
+    }
+
+    @Test
+    void registerUserIsIdempotent() {
+        service.registerUserAsync("zoe", null).toCompletableFuture().join();
+        service.registerUserAsync("zoe", null).toCompletableFuture().join();
+        assertTrue(ChatServer.getUsuariosRegistrados().contains("zoe"));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> service.registerUserAsync(" ", null).toCompletableFuture().join());
+        assertInstanceOf(ChatException.class, error.getCause());
+    }
+
+    // Lo que respondió bien está en el log: al reabrir el almacén sigue ahí
+    @Test
+    void persistedChangesSurviveReopen() throws IOException {
+        service.registerUserAsync("yago", null).toCompletableFuture().join();
+        service.createGroupAsync("durable", null).toCompletableFuture().join();
+        service.joinGroupAsync("durable", "yago", null).toCompletableFuture().join();
+
+        HistoryManager.close();
+        GroupMembership grupos = new GroupMembership();
+        Set<String> usuarios = ConcurrentHashMap.newKeySet();
+        try {
+            HistoryManager.init(new ConcurrentHashMap<>(), grupos, usuarios);
+            assertTrue(usuarios.contains("yago"));
+            assertEquals(Set.of("yago"), grupos.members("durable"));
+        } finally {
+            HistoryManager.close();
+            HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(),
+                    ChatServer.getUsuariosRegistrados());
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lectura del history.json antiguo con {@link JsonHistoryReader}, en especial
+ * los casos que el parser con expresiones regulares resolvía mal: comillas y
+ * barras invertidas escapadas, {@code \\uXXXX} y audios en Base64 más grandes
+ * que el buffer de lectura.
+ */
+class JsonHistoryReaderTest {
+
+    @Test
+    void escapedQuotesAndBackslashes() throws IOException {
+        Message msg = JsonHistoryReader.parseMessage(
+                "{\"from\":\"ana\",\"to\":\"beto\",\"message\":\"dijo \\\"hola\\\" en C:\\\\temp\\\\\"," +
+                "\"timestamp\":\"1700000000000\",\"isGroup\":false}");
+        assertEquals("dijo \"hola\" en C:\\temp\\", msg.content);
+        assertEquals(1700000000000L, msg.timestamp);
+        assertEquals("text", msg.type);
+    }
+
+    @Test
+    void controlAndSlashEscapes() throws IOException {
+        Message msg = JsonHistoryReader.parseMessage(
+                "{\"message\": \"a\\nb\\rc\\td\\/e\\bf\\fg\", \"timestamp\": 1}");
+        assertEquals("a\nb\rc\td/e\bf\fg", msg.content);
+    }
+
+    @Test
+    void unicodeEscapes() throws IOException {
+        // ñ, un carácter de tres bytes y un emoji como par de surrogates
+        Message msg = JsonHistoryReader.parseMessage(
+                "{\"from\":\"\\u00f1and\\u00FA\",\"message\":\"\\u6771\\u4eac \\ud83d\\ude00\",\"timestamp\":1}");
+        assertEquals("ñandú", msg.from);
+        assertEquals("東京 😀", msg.content);
+    }
+
+    @Test
+    void rawUtf8() throws IOException {
+        Message msg = JsonHistoryReader.parseMessage("{\"message\":\"ñandú 東京 😀\",\"timestamp\":1}");
+        assertEquals("ñandú 東京 😀", msg.content);
+    }
+
+    @Test
+    void invalidEscapeIsRejected() {
+        assertThrows(IOException.class, () -> JsonHistoryReader.parseMessage("{\"message\":\"\\x\"}"));
+        assertThrows(IOException.class, () -> JsonHistoryReader.parseMessage("{\"message\":\"\\u12g4\"}"));
+        assertThrows(IOException.class, () -> JsonHistoryReader.parseMessage("{\"message\":\"sin cerrar"));
+    }
+
+    @Test
+    void base64Audio() throws IOException {
+        byte[] audio = audio(1000);
+        Message msg = JsonHistoryReader.parseMessage(
+                "{\"from\":\"ana\",\"to\":\"grupo\",\"message\":\"[Nota de voz]\",\"timestamp\":\"5\"," +
+                "\"isGroup\":true,\"type\":\"audio\",\"audioData\":\"" +
+                Base64.getEncoder().encodeToString(audio) + "\"}");
+        assertEquals("audio", msg.type);
+        assertTrue(msg.isGroup);
+        assertArrayEquals(audio, msg.data);
+    }
+
+    @Test
+    void invalidBase64ImportsWithoutAudio() throws IOException {
+        Message msg = JsonHistoryReader.parseMessage(
+                "{\"message\":\"[Nota de voz]\",\"timestamp\":1,\"type\":\"audio\",\"audioData\":\"no es base64!\"}");
+        assertEquals("audio", msg.type);
+        assertEquals(0, msg.data.length);
+    }
+
+    @Test
+    void fullDocument() throws IOException {
+        byte[] audio = audio(300_000); // mayor que el buffer de 64 KiB
+        String json = "{\n" +
+                "  \"version\": {\"ignorada\": [1, 2, {\"x\": \"\\\"}\"}]},\n" +
+                "  \"historial\": {\n" +
+                "    \"ana_beto\": [\n" +
+                "      {\"from\":\"ana\",\"to\":\"beto\",\"message\":\"hola \\\"beto\\\"\",\"timestamp\":\"1\",\"isGroup\":false},\n" +
+                "      {\"from\":\"beto\",\"to\":\"ana\",\"message\":\"[Nota de voz]\",\"timestamp\":\"2\",\"isGroup\":false," +
+                "\"type\":\"audio\",\"audioData\":\"" + Base64.getEncoder().encodeToString(audio) + "\"},\n" +
+                "      \"{\\\"from\\\":\\\"ana\\\",\\\"message\\\":\\\"guardado como texto\\\",\\\"timestamp\\\":3}\"\n" +
+                "    ],\n" +
+                "    \"vacía\": []\n" +
+                "  },\n" +
+                "  \"grupos\": {\"amigos\": [\"ana\", \"beto\", null], \"solo\": []}\n" +
+                "}";
+
+        Map<String, List<Message>> historial = new LinkedHashMap<>();
+        Map<String, List<String>> grupos = new LinkedHashMap<>();
+        read(json, 1 << 20, historial, grupos);
+
+        assertEquals(List.of("ana_beto"), new ArrayList<>(historial.keySet()));
+        List<Message> messages = historial.get("ana_beto");
+        assertEquals(3, messages.size());
+        assertEquals("hola \"beto\"", messages.get(0).content);
+        assertArrayEquals(audio, messages.get(1).data);
+        assertEquals("guardado como texto", messages.get(2).content);
+        assertEquals(3, messages.get(2).timestamp);
+        assertEquals(List.of("ana", "beto"), grupos.get("amigos"));
+        assertEquals(List.of(), grupos.get("solo"));
+    }
+
+    @Test
+    void chunkBoundariesInsideMultiByteCharacters() throws IOException {
+        // El canal entrega pocos bytes por lectura, así que los caracteres de
+        // varios bytes y los escapes quedan partidos entre lecturas
+        String json = "{\"historial\": {\"ñandú\": [{\"from\":\"zoë\",\"message\":\"東京 😀 \\u00e9 \\\\ \\\"\"," +
+                "\"timestamp\":7}]}, \"grupos\": {}}";
+        for (int chunk = 1; chunk <= 5; chunk++) {
+            Map<String, List<Message>> historial = new LinkedHashMap<>();
+            read(json, chunk, historial, new LinkedHashMap<>());
+            Message msg = historial.get("ñandú").get(0);
+            assertEquals("zoë", msg.from);
+            assertEquals("東京 😀 é \\ \"", msg.content);
+        }
+    }
+
+    @Test
+    void truncatedDocumentIsRejected() {
+        String json = "{\"historial\": {\"ana_beto\": [{\"from\":\"ana\",\"message\":\"hola\"";
+        assertThrows(IOException.class, () -> read(json, 1 << 20, new LinkedHashMap<>(), new LinkedHashMap<>()));
+    }
+
+    private static void read(String json, int chunk, Map<String, List<Message>> historial,
+                             Map<String, List<String>> grupos) throws IOException {
+        new JsonHistoryReader(new ChunkedChannel(json.getBytes(StandardCharsets.UTF_8), chunk))
+                .read(new JsonHistoryReader.Handler() {
+                    @Override
+                    public void message(String conversation, Message msg) {
+                        historial.computeIfAbsent(conversation, k -> new ArrayList<>()).add(msg);
+                    }
+
+                    @Override
+                    public void group(String name, List<String> members) {
+                        grupos.put(name, members);
+                    }
+                });
+    }
+
+    private static byte[] audio(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + (i >> 8));
+        }
+        return data;
+    }
+
+    // Canal en memoria que entrega como máximo chunk bytes por lectura
+    private static final class ChunkedChannel implements ReadableByteChannel {
+        private final ByteBuffer data;
+        private final int chunk;
+
+        ChunkedChannel(byte[] data, int chunk) {
+            this.data = ByteBuffer.wrap(data);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) return -1;
+            int n = Math.min(chunk, Math.min(dst.remaining(), data.remaining()));
+            ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + n);
+            dst.put(slice);
+            data.position(data.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.chat.servidor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Importación de un history.json antiguo al arrancar: las versiones
+ * anteriores no guardaban miembros, así que cada grupo queda con los que
+ * figuran en el archivo y con quienes escribieron en él.
+ */
+class LegacyImportTest {
+
+    private static final Path DATA = Paths.get("data");
+
+    @BeforeEach
+    void writeHistoryJson() throws IOException {
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        System.setProperty("chat.log.level", "WARN");
+        deleteDirectory(DATA);
+        Files.createDirectories(DATA);
+        Files.writeString(DATA.resolve("history.json"), "{\n" +
+                "  \"historial\": {\n" +
+                "    \"amigos\": [\n" +
+                "      {\"from\":\"beto\",\"to\":\"amigos\",\"message\":\"hola\",\"timestamp\":\"1\",\"isGroup\":true},\n" +
+                "      {\"from\":\"carla\",\"to\":\"amigos\",\"message\":\"buenas\",\"timestamp\":\"2\",\"isGroup\":true},\n" +
+                "      {\"from\":\"beto\",\"to\":\"amigos\",\"message\":\"¿vamos?\",\"timestamp\":\"3\",\"isGroup\":true}\n" +
+                "    ],\n" +
+                "    \"fantasma\": [\n" +
+                "      {\"from\":\"dario\",\"to\":\"fantasma\",\"message\":\"¿hay alguien?\",\"timestamp\":\"4\",\"isGroup\":true}\n" +
+                "    ],\n" +
+                "    \"ana_beto\": [\n" +
+                "      {\"from\":\"ana\",\"to\":\"beto\",\"message\":\"hola\",\"timestamp\":\"5\",\"isGroup\":false}\n" +
+                "    ]\n" +
+                "  },\n" +
+                "  \"grupos\": {\"amigos\": [\"ana\"], \"vacío\": []}\n" +
+                "}", StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    void closeStore() throws IOException {
+        HistoryManager.close();
+        deleteDirectory(DATA);
+    }
+
+    @Test
+    void groupSendersBecomeMembers() throws IOException {
+        GroupMembership grupos = open();
+        assertEquals(Set.of("ana", "beto", "carla"), grupos.members("amigos"));
+        assertEquals(Set.of("amigos"), grupos.groupsOf("carla"));
+        assertTrue(grupos.exists("vacío"));
+        assertEquals(Set.of(), grupos.members("vacío"));
+
+        // Al volver a arrancar los miembros salen del log, sin importar de nuevo
+        HistoryManager.close();
+        assertFalse(Files.exists(DATA.resolve("history.json")));
+        assertEquals(Set.of("ana", "beto", "carla"), open().members("amigos"));
+    }
+
+    @Test
+    void messagesToUndeclaredGroupsKeepTheirHistory() throws IOException {
+        Map<String, ConversationLog> conversaciones = new ConcurrentHashMap<>();
+        GroupMembership grupos = new GroupMembership();
+        HistoryManager.init(conversaciones, grupos, ConcurrentHashMap.newKeySet());
+
+        assertFalse(grupos.exists("fantasma"));
+        assertEquals(Set.of(), grupos.groupsOf("dario"));
+        assertEquals(1, HistoryManager.readMessages(conversaciones.get("fantasma")).length);
+        assertEquals(3, HistoryManager.readMessages(conversaciones.get("amigos")).length);
+    }
+
+    private static GroupMembership open() throws IOException {
+        GroupMembership grupos = new GroupMembership();
+        HistoryManager.init(new ConcurrentHashMap<>(), grupos, ConcurrentHashMap.newKeySet());
+        return grupos;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
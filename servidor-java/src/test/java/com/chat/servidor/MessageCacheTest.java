@@ -0,0 +1,111 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tramos de {@link MessageCache}: unión de lecturas solapadas o contiguas,
+ * mensajes agregados al enviar y recorte por presupuesto, con la memoria
+ * estimada siempre igual a la suma de lo que queda en caché.
+ */
+class MessageCacheTest {
+
+    private static final Message[] CONVERSATION = messages(0, 100);
+
+    @Test
+    void mergesOverlappingAndAdjacentRanges() {
+        MessageCache cache = new MessageCache(1 << 20);
+        ConversationLog index = new ConversationLog();
+        cache.put(index, 40, range(40, 60));
+        cache.put(index, 30, range(30, 45));   // solapa por delante
+        cache.put(index, 55, range(55, 70));   // solapa por detrás
+        cache.put(index, 70, range(70, 80));   // contiguo
+        cache.put(index, 20, range(20, 30));   // contiguo por delante
+
+        assertArrayEquals(range(20, 80), cache.get(index, 20, 80));
+        assertArrayEquals(range(35, 36), cache.get(index, 35, 36));
+        assertNull(cache.get(index, 19, 25));
+        assertNull(cache.get(index, 75, 81));
+        assertEquals(sizeOf(20, 80), cache.getBytes());
+    }
+
+    @Test
+    void keepsNewestRangeWhenDisjoint() {
+        MessageCache cache = new MessageCache(1 << 20);
+        ConversationLog index = new ConversationLog();
+        cache.put(index, 50, range(50, 60));
+        cache.put(index, 10, range(10, 20));   // más viejo y separado: se ignora
+        assertNull(cache.get(index, 10, 20));
+        cache.put(index, 80, range(80, 90));   // más nuevo y separado: reemplaza
+        assertNull(cache.get(index, 50, 60));
+        assertArrayEquals(range(80, 90), cache.get(index, 80, 90));
+        assertEquals(sizeOf(80, 90), cache.getBytes());
+    }
+
+    @Test
+    void appendExtendsOnlyTheTail() {
+        MessageCache cache = new MessageCache(1 << 20);
+        ConversationLog index = new ConversationLog();
+        cache.put(index, 0, range(0, 10));
+        for (int seq = 10; seq < 30; seq++) {
+            cache.append(index, seq, CONVERSATION[seq]);
+        }
+        cache.append(index, 31, CONVERSATION[31]);   // hueco: no se agrega
+
+        assertArrayEquals(range(0, 30), cache.get(index, 0, 30));
+        assertNull(cache.get(index, 0, 32));
+        assertEquals(sizeOf(0, 30), cache.getBytes());
+    }
+
+    @Test
+    void returnedArraysAreCopies() {
+        MessageCache cache = new MessageCache(1 << 20);
+        ConversationLog index = new ConversationLog();
+        Message[] read = range(0, 10);
+        cache.put(index, 0, read);
+        read[0] = null;
+        cache.get(index, 0, 10)[1] = null;
+        assertArrayEquals(range(0, 10), cache.get(index, 0, 10));
+    }
+
+    @Test
+    void trimsOldestMessagesOverBudget() {
+        long budget = sizeOf(0, 20);
+        MessageCache cache = new MessageCache(budget);
+        ConversationLog index = new ConversationLog();
+        cache.put(index, 0, range(0, 15));
+        for (int seq = 15; seq < 40; seq++) {
+            cache.append(index, seq, CONVERSATION[seq]);
+        }
+
+        assertTrue(cache.getBytes() <= budget);
+        assertArrayEquals(range(20, 40), cache.get(index, 20, 40));
+        assertNull(cache.get(index, 19, 40));
+        assertEquals(sizeOf(20, 40), cache.getBytes());
+    }
+
+    private static Message[] range(int start, int end) {
+        return Arrays.copyOfRange(CONVERSATION, start, end);
+    }
+
+    private static long sizeOf(int start, int end) {
+        long bytes = 0;
+        for (int i = start; i < end; i++) {
+            bytes += MessageCache.estimate(CONVERSATION[i]);
+        }
+        return bytes;
+    }
+
+    private static Message[] messages(int start, int end) {
+        Message[] messages = new Message[end - start];
+        for (int i = start; i < end; i++) {
+            messages[i - start] = new Message(i % 2 == 0 ? "ana" : "beto", i % 2 == 0 ? "beto" : "ana",
+                    String.format("mensaje %03d", i), 1700000000000L + i, false, "text", new byte[0]);
+        }
+        return messages;
+    }
+}
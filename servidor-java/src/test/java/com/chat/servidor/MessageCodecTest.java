@@ -0,0 +1,207 @@
+package com.chat.servidor;
+
+import Chat.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ida y vuelta del formato v1 de {@link MessageCodec} y su tamaño frente al
+ * history.json con el que se guardaban los mensajes antes.
+ */
+class MessageCodecTest {
+
+    private static final long TIMESTAMP = 1700000000123L;
+
+    @Test
+    void roundTripText() {
+        assertRoundTrip(new Message("ana", "beto", "hola, ¿cómo va?", TIMESTAMP, false, "text", new byte[0]));
+    }
+
+    @Test
+    void roundTripGroupMessage() {
+        assertRoundTrip(new Message("ana", "grupo", "reunión a las 5", TIMESTAMP, true, "text", new byte[0]));
+    }
+
+    @Test
+    void roundTripAudio() {
+        assertRoundTrip(new Message("ana", "beto", "[Nota de voz]", TIMESTAMP, false, "audio", audio(16384)));
+    }
+
+    @Test
+    void roundTripCall() {
+        assertRoundTrip(new Message("ana", "beto", "[Llamada iniciada]", TIMESTAMP, false, "call", new byte[0]));
+    }
+
+    @Test
+    void roundTripCustomType() {
+        Message msg = new Message("ana", "beto", "{\"lat\": -34.6}", TIMESTAMP, false, "ubicación", new byte[] {1, 2});
+        assertEquals(MessageCodec.TYPE_CUSTOM, MessageCodec.typeCode(msg.type));
+        assertRoundTrip(msg);
+    }
+
+    @Test
+    void roundTripEmpty() {
+        assertRoundTrip(new Message("", "", "", 0, false, "text", new byte[0]));
+    }
+
+    @Test
+    void nullFieldsDecodeAsEmpty() {
+        Message decoded = roundTrip(new Message("ana", "beto", null, TIMESTAMP, false, null, null));
+        assertEquals("", decoded.content);
+        assertEquals("text", decoded.type);
+        assertArrayEquals(new byte[0], decoded.data);
+    }
+
+    @Test
+    void roundTripUtf8() {
+        // Dos, tres y cuatro bytes (fuera del plano básico, con surrogates en Java)
+        assertRoundTrip(new Message("zoë", "東京", "ñandú → 𝄞 y 😀😀, \"citas\"\n\\", TIMESTAMP, false, "text",
+                new byte[0]));
+    }
+
+    @Test
+    void loneSurrogateIsReplaced() {
+        Message decoded = roundTrip(new Message("ana", "beto", "a\uD83Db", TIMESTAMP, false, "text", new byte[0]));
+        assertEquals("a�b", decoded.content);
+    }
+
+    @Test
+    void largeFieldsUseMultiByteLengths() {
+        String content = "x".repeat(200_000);
+        assertRoundTrip(new Message("ana", "beto", content, TIMESTAMP, false, "audio", audio(300_000)));
+    }
+
+    @Test
+    void audioStoredAsBlobReference(@TempDir Path dir) throws IOException {
+        BlobStore blobs = new BlobStore(dir, false);
+        Message msg = new Message("ana", "beto", "[Nota de voz]", TIMESTAMP, true, "audio", audio(16384));
+        BlobStore.BlobRef ref = blobs.put(msg.data);
+
+        ByteBuffer out = ByteBuffer.allocate(MessageCodec.encodedSize(msg, ref));
+        MessageCodec.encode(msg, ref, out);
+        assertFalse(out.hasRemaining(), "encodedSize no coincide con lo escrito");
+        assertTrue(out.capacity() < 100, "la referencia no debería llevar el audio");
+
+        out.flip();
+        assertEquals(msg, MessageCodec.decode(out, blobs));
+        assertFalse(out.hasRemaining());
+    }
+
+    @Test
+    void peekReadsHeaderWithoutDecoding() {
+        Message msg = new Message("ñoño", "beto", "hola", TIMESTAMP, false, "ubicación", new byte[0]);
+        ByteBuffer in = ByteBuffer.wrap(MessageCodec.encode(msg));
+        assertEquals(TIMESTAMP, MessageCodec.peekTimestamp(in));
+        assertEquals(MessageCodec.TYPE_CUSTOM, MessageCodec.peekType(in));
+        assertEquals("ñoño", MessageCodec.peekSender(in));
+        assertEquals(0, in.position());
+    }
+
+    @Test
+    void unknownVersionIsRejected() {
+        byte[] encoded = MessageCodec.encode(new Message("ana", "beto", "hola", TIMESTAMP, false, "text", new byte[0]));
+        encoded[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decode(ByteBuffer.wrap(encoded)));
+    }
+
+    @Test
+    void legacyJsonDecodesToSameMessage() throws IOException {
+        Message text = new Message("ana", "beto", "dijo \"ya voy\"\n\tñandú 😀", TIMESTAMP, false, "text", new byte[0]);
+        assertEquals(text, JsonHistoryReader.parseMessage(legacyJson(text)));
+        Message voice = new Message("ana", "beto", "[Nota de voz]", TIMESTAMP, true, "audio", audio(4096));
+        assertEquals(voice, JsonHistoryReader.parseMessage(legacyJson(voice)));
+        assertEquals(roundTrip(voice), JsonHistoryReader.parseMessage(legacyJson(voice)));
+    }
+
+    /**
+     * Tamaño de una conversación típica en los dos formatos. El formato v1 no
+     * repite los nombres de los campos ni pasa el audio por Base64; con el
+     * audio en el almacén de blobs el registro solo lleva la referencia.
+     */
+    @Test
+    void smallerThanLegacyJson(@TempDir Path dir) throws IOException {
+        BlobStore blobs = new BlobStore(dir, false);
+        long textJson = 0, textV1 = 0, audioJson = 0, audioV1 = 0, audioRef = 0;
+        for (int i = 0; i < 1000; i++) {
+            String content = i % 10 == 0 ? "dijo \"ya voy\"\ny salió ñandú " + i : "mensaje número " + i;
+            Message msg = new Message(i % 2 == 0 ? "ana" : "beto", i % 2 == 0 ? "beto" : "ana", content,
+                    TIMESTAMP + i * 1000L, false, "text", new byte[0]);
+            textJson += legacySize(msg);
+            textV1 += MessageCodec.encodedSize(msg);
+        }
+        for (int i = 0; i < 20; i++) {
+            byte[] data = audio(16384);
+            data[0] = (byte) i;
+            Message msg = new Message("ana", "beto", "[Nota de voz]", TIMESTAMP + i, false, "audio", data);
+            audioJson += legacySize(msg);
+            audioV1 += MessageCodec.encodedSize(msg);
+            audioRef += MessageCodec.encodedSize(msg, blobs.put(data));
+        }
+
+        System.out.printf("Texto (1000 mensajes): JSON %d bytes, v1 %d bytes (%.0f%%)%n",
+                textJson, textV1, 100.0 * textV1 / textJson);
+        System.out.printf("Audio (20 notas de 16 KiB): JSON %d bytes, v1 %d bytes (%.0f%%), v1 con blob %d bytes%n",
+                audioJson, audioV1, 100.0 * audioV1 / audioJson, audioRef);
+
+        assertTrue(textV1 < textJson / 2, "el texto en v1 debería ocupar menos de la mitad");
+        // Base64 agrega un tercio; v1 guarda los bytes tal cual
+        assertTrue(audioV1 < audioJson * 4 / 5, "el audio en v1 no debería pagar Base64");
+        assertTrue(audioRef < 20 * 100, "con blob el registro solo lleva la referencia");
+    }
+
+    private static void assertRoundTrip(Message msg) {
+        Message decoded = roundTrip(msg);
+        assertEquals(msg, decoded);
+        assertArrayEquals(msg.data, decoded.data);
+    }
+
+    private static Message roundTrip(Message msg) {
+        byte[] encoded = MessageCodec.encode(msg);
+        assertEquals(MessageCodec.encodedSize(msg), encoded.length, "encodedSize no coincide con lo escrito");
+        assertEquals(MessageCodec.VERSION, encoded[0]);
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        Message decoded = MessageCodec.decode(in);
+        assertFalse(in.hasRemaining(), "quedaron bytes sin leer");
+        return decoded;
+    }
+
+    private static byte[] audio(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    // Lo que ocupaba el mensaje en la lista de su conversación del history.json
+    private static long legacySize(Message msg) {
+        return "      ".length() + legacyJson(msg).getBytes(StandardCharsets.UTF_8).length + ",\n".length();
+    }
+
+    // Como lo armaban sendMessage y sendAudio antes del log binario
+    private static String legacyJson(Message msg) {
+        String json = "{\"from\":\"" + escapeJson(msg.from) + "\",\"to\":\"" + escapeJson(msg.to) +
+                "\",\"message\":\"" + escapeJson(msg.content) + "\",\"timestamp\":\"" + msg.timestamp +
+                "\",\"isGroup\":" + msg.isGroup;
+        if ("audio".equals(msg.type)) {
+            return json + ",\"type\":\"audio\",\"audioData\":\"" + Base64.getEncoder().encodeToString(msg.data) + "\"}";
+        }
+        return json + "}";
+    }
+
+    private static String escapeJson(String str) {
+        return str.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t");
+    }
+}
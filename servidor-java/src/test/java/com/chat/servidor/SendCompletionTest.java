@@ -0,0 +1,83 @@
+package com.chat.servidor;
+
+import Chat.ChatException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Respuesta de {@code sendMessage}/{@code sendAudio} tras el fsync: siempre
+ * se completa, aunque falle la notificación o el servant se esté deteniendo,
+ * y la entrega siguiente de la conversación no queda esperando.
+ */
+class SendCompletionTest {
+
+    private IceChatServer.ChatServiceI service;
+
+    @BeforeEach
+    void createService() {
+        System.setProperty("chat.log.level", "WARN");
+        service = new IceChatServer.ChatServiceI();
+    }
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void failingDeliveryStillConfirmsPersistedMessage() throws Exception {
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        service.completeWhenPersisted("ana_beto", CompletableFuture.completedFuture(null), null, delivered, result,
+                () -> {
+                    throw new IllegalStateException("callback roto");
+                });
+
+        assertNull(result.get(5, TimeUnit.SECONDS));
+        assertTrue(delivered.isDone());
+
+        // La siguiente entrega de la conversación no queda bloqueada
+        CompletableFuture<Void> next = new CompletableFuture<>();
+        boolean[] ran = new boolean[1];
+        service.completeWhenPersisted("ana_beto", CompletableFuture.completedFuture(null), delivered,
+                new CompletableFuture<>(), next, () -> ran[0] = true);
+        next.get(5, TimeUnit.SECONDS);
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    void persistenceErrorFailsTheSend() {
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        service.completeWhenPersisted("ana_beto", CompletableFuture.failedFuture(new java.io.IOException("disco")),
+                null, delivered, result, () -> fail("no se notifica lo que no se guardó"));
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(ChatException.class, error.getCause());
+        assertTrue(delivered.isDone());
+    }
+
+    @Test
+    void rejectedAfterShutdownFailsTheSend() {
+        CompletableFuture<Void> persisted = new CompletableFuture<>();
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        service.completeWhenPersisted("ana_beto", persisted, null, delivered, result,
+                () -> fail("el servant ya se detuvo"));
+
+        service.shutdown();
+        persisted.complete(null);
+
+        assertTrue(result.isCompletedExceptionally());
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(ChatException.class, error.getCause());
+        assertTrue(delivered.isDone());
+    }
+}
@@ -0,0 +1,262 @@
+package com.chat.servidor;
+
+import Chat.ChatException;
+import Chat.Delivery;
+import Chat.Message;
+import Chat.MessageCallback;
+import Chat.MessageCallbackPrx;
+import com.zeroc.Ice.Communicator;
+import com.zeroc.Ice.Current;
+import com.zeroc.Ice.ObjectAdapter;
+import com.zeroc.Ice.OperationNotExistException;
+import com.zeroc.Ice.Util;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Envíos concurrentes a una misma conversación: el historial queda en el
+ * orden del log, los timestamps crecen en ese mismo orden, que es lo que
+ * suponen las búsquedas por timestamp de {@code getHistoryPage}, y los
+ * suscriptores reciben los mensajes también en ese orden.
+ */
+class SendOrderTest {
+
+    private static final int SENDERS = 8;
+    private static final int MESSAGES_PER_SENDER = 250;
+
+    private static IceChatServer.ChatServiceI service;
+
+    @BeforeAll
+    static void openStore() throws IOException {
+        System.setProperty("chat.snapshot.intervalSeconds", "0");
+        System.setProperty("chat.log.level", "WARN");
+        deleteDirectory(Paths.get("data"));
+        HistoryManager.init(ChatServer.getHistorial(), ChatServer.getGrupos(), ChatServer.getUsuariosRegistrados());
+        service = new IceChatServer.ChatServiceI();
+    }
+
+    @AfterAll
+    static void closeStore() {
+        service.shutdown();
+        HistoryManager.close();
+    }
+
+    @Test
+    void concurrentSendsKeepTimestampsInLogOrder() {
+        sendConcurrently("ana", "beto");
+
+        ConversationLog index = ChatServer.getHistorial().get(IceChatServer.ChatServiceI.historyKey("beto", "ana", false));
+        Message[] messages = HistoryManager.readMessages(index);
+        assertEquals(SENDERS * MESSAGES_PER_SENDER, messages.length);
+        for (int i = 1; i < messages.length; i++) {
+            assertTrue(messages[i - 1].timestamp <= messages[i].timestamp,
+                    "timestamp hacia atrás en la secuencia " + i);
+        }
+
+        // Cada milisegundo, buscado por timestamp, trae exactamente sus mensajes
+        ConversationLog.Entries entries = index.entries(HistoryManager.CHAIN);
+        for (int i = 0; i < messages.length; i++) {
+            long timestamp = messages[i].timestamp;
+            ConversationLog.Entries sameMillis = entries.rangeByTime(timestamp, timestamp + 1);
+            long expected = Arrays.stream(messages).filter(m -> m.timestamp == timestamp).count();
+            assertEquals(expected, sameMillis.size(), "mensajes con timestamp " + timestamp);
+        }
+    }
+
+    @Test
+    void concurrentSendsAreDeliveredInLogOrder() throws Exception {
+        assertDeliveredInLogOrder("elena", "fede", false);
+    }
+
+    // El cliente no implementa deliver ni onMessages: la primera entrega falla y
+    // vuelve a la cola; lo que sigue no debe adelantarse
+    @Test
+    void deliveryOrderSurvivesFallbackToOnMessage() throws Exception {
+        assertDeliveredInLogOrder("gala", "hugo", true);
+    }
+
+    // Envía desde varios hilos a una conversación con un solo usuario suscrito (recibe
+    // cada mensaje una vez, como remitente o destinatario) y compara con el log
+    private static void assertDeliveredInLogOrder(String from, String to, boolean legacy) throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        Communicator communicator = Util.initialize();
+        try {
+            // Callback colocado: Ice lo despacha en el mismo proceso, sin red
+            ObjectAdapter adapter = communicator.createObjectAdapterWithEndpoints("Callbacks", "tcp -h 127.0.0.1 -p 0");
+            adapter.addDefaultServant(new RecordingCallback(received, legacy), "");
+            adapter.activate();
+            service.subscribe(MessageCallbackPrx.uncheckedCast(adapter.createProxy(Util.stringToIdentity(to))),
+                    to, null);
+
+            sendConcurrently(from, to);
+
+            int total = SENDERS * MESSAGES_PER_SENDER;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (received.size() < total && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Message[] messages = HistoryManager.readMessages(
+                    ChatServer.getHistorial().get(IceChatServer.ChatServiceI.historyKey(to, from, false)));
+            List<String> logOrder = new ArrayList<>();
+            for (Message msg : messages) {
+                logOrder.add(msg.content);
+            }
+            synchronized (received) {
+                assertEquals(logOrder, received);
+            }
+        } finally {
+            communicator.destroy();
+        }
+    }
+
+    // Anota el contenido de cada mensaje en el orden en que llega. Con legacy solo
+    // implementa onMessage/onGroupMessage, como los clientes anteriores a deliver
+    private static final class RecordingCallback implements MessageCallback {
+        private final List<String> received;
+        private final boolean legacy;
+
+        RecordingCallback(List<String> received, boolean legacy) {
+            this.received = received;
+            this.legacy = legacy;
+        }
+
+        @Override
+        public void onMessage(Message msg, Current current) {
+            received.add(msg.content);
+        }
+
+        @Override
+        public void onGroupMessage(Message msg, String groupName, Current current) {
+            received.add(msg.content);
+        }
+
+        @Override
+        public void onMessages(Message[] msgs, Current current) {
+            unsupported(current);
+            for (Message msg : msgs) {
+                received.add(msg.content);
+            }
+        }
+
+        @Override
+        public void deliver(Message msg, String[] recipients, Current current) {
+            unsupported(current);
+            received.add(msg.content);
+        }
+
+        @Override
+        public void deliverBatch(Delivery[] deliveries, Current current) {
+            unsupported(current);
+            for (Delivery delivery : deliveries) {
+                received.add(delivery.msg.content);
+            }
+        }
+
+        private void unsupported(Current current) {
+            if (legacy) {
+                throw new OperationNotExistException(current.id, current.facet, current.operation);
+            }
+        }
+    }
+
+    @Test
+    void timestampNeverGoesBehindLastMessage() {
+        // Como si el reloj hubiera retrocedido desde el último mensaje
+        String key = IceChatServer.ChatServiceI.historyKey("dario", "carla", false);
+        ConversationLog index = ChatServer.getHistorial().computeIfAbsent(key, k -> new ConversationLog());
+        long future = System.currentTimeMillis() + 3_600_000;
+        HistoryManager.appendMessage(index, key,
+                new Message("carla", "dario", "desde el futuro", future, false, "text", new byte[0])).join();
+
+        service.sendMessageAsync("dario", "carla", "respuesta", false, null).toCompletableFuture().join();
+
+        Message[] messages = HistoryManager.readMessages(index);
+        assertEquals(2, messages.length);
+        assertEquals("respuesta", messages[1].content);
+        assertTrue(messages[1].timestamp >= future);
+    }
+
+    @Test
+    void groupMessageToUnknownGroupFails() {
+        CompletableFuture<Void> text = service.sendMessageAsync("ana", "inexistente", "hola", true, null)
+                .toCompletableFuture();
+        CompletableFuture<Void> audio = service.sendAudioAsync("ana", "inexistente", new byte[] {1, 2, 3}, true, null)
+                .toCompletableFuture();
+
+        for (CompletableFuture<Void> sent : List.of(text, audio)) {
+            Exception error = assertThrows(Exception.class, sent::join);
+            assertInstanceOf(ChatException.class, error.getCause());
+        }
+        assertNull(ChatServer.getHistorial().get("inexistente"));
+        assertFalse(ChatServer.getGrupos().exists("inexistente"));
+    }
+
+    @Test
+    void coldLogReadsLastTimestampFromChain() {
+        ConversationLog cold = ConversationLog.cold(42, 3);
+        long timestamp = cold.lastTimestamp(new ConversationLog.Chain() {
+            @Override
+            public long previous(long position) {
+                throw new AssertionError("solo se lee el último registro");
+            }
+
+            @Override
+            public long read(long position, ConversationLog.Row row) {
+                assertEquals(42, position);
+                row.timestamp = 1234;
+                return 41;
+            }
+        });
+        assertEquals(1234, timestamp);
+        assertEquals(Long.MIN_VALUE, new ConversationLog().lastTimestamp(null));
+    }
+
+    // Varios hilos enviando a la vez a la misma conversación, cada mensaje con contenido único
+    private static void sendConcurrently(String from, String to) {
+        ExecutorService senders = Executors.newFixedThreadPool(SENDERS);
+        List<CompletableFuture<Void>> sent = new ArrayList<>();
+        try {
+            for (int s = 0; s < SENDERS; s++) {
+                int sender = s;
+                sent.add(CompletableFuture.runAsync(() -> {
+                    List<CompletableFuture<Void>> own = new ArrayList<>();
+                    for (int i = 0; i < MESSAGES_PER_SENDER; i++) {
+                        boolean forward = (sender + i) % 2 == 0;
+                        own.add(service.sendMessageAsync(forward ? from : to, forward ? to : from,
+                                sender + "-" + i, false, null).toCompletableFuture());
+                    }
+                    own.forEach(CompletableFuture::join);
+                }, senders));
+            }
+            sent.forEach(CompletableFuture::join);
+        } finally {
+            senders.shutdown();
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) return;
+        try (var paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}